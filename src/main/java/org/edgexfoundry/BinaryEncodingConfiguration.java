@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry;
+
+import java.util.List;
+
+import org.edgexfoundry.domain.serializer.BinaryJacksonHttpMessageConverter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * CBOR (application/cbor) and Smile (application/x-jackson-smile) alongside JSON for clients that
+ * ask for them with the Accept header. The mappers are configured by the same builder as the JSON
+ * mapper, so the serializers see the same configuration (and Spring injected values). The
+ * converters are added after the defaults so that JSON stays the choice for clients that accept
+ * anything.
+ */
+@Configuration
+public class BinaryEncodingConfiguration extends WebMvcConfigurerAdapter {
+
+  @Autowired
+  Jackson2ObjectMapperBuilder builder;
+
+  @Override
+  public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+    converters.add(new BinaryJacksonHttpMessageConverter(mapper(new CBORFactory()),
+        BinaryJacksonHttpMessageConverter.APPLICATION_CBOR));
+    converters.add(new BinaryJacksonHttpMessageConverter(mapper(new SmileFactory()),
+        BinaryJacksonHttpMessageConverter.APPLICATION_SMILE));
+  }
+
+  private ObjectMapper mapper(JsonFactory factory) {
+    ObjectMapper mapper = new ObjectMapper(factory);
+    builder.configure(mapper);
+    return mapper;
+  }
+
+}
@@ -0,0 +1,79 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry;
+
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.coyote.AbstractProtocol;
+import org.apache.coyote.ProtocolHandler;
+import org.edgexfoundry.handler.VirtualThreads;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.embedded.ConfigurableEmbeddedServletContainer;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Opt-in virtual thread execution. With server.virtualthreads=true and a Java 21+ runtime, Tomcat
+ * hands each request to a new virtual thread instead of its bounded platform thread pool, so the
+ * blocking metadata and device service calls made while serving a command no longer tie up a
+ * platform thread (and its stack) each. On older runtimes the setting is logged and ignored.
+ */
+@Component
+public class VirtualThreadCustomizer implements EmbeddedServletContainerCustomizer {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(VirtualThreadCustomizer.class);
+
+  @Value("${server.virtualthreads:false}")
+  private boolean enabled;
+
+  private ExecutorService executor;
+
+  @Override
+  public void customize(ConfigurableEmbeddedServletContainer container) {
+    if (!enabled || !(container instanceof TomcatEmbeddedServletContainerFactory)) {
+      return;
+    }
+    if (!VirtualThreads.isAvailable()) {
+      logger.error("Virtual threads requested but not supported by this Java runtime ("
+          + System.getProperty("java.version") + "); using platform request threads");
+      return;
+    }
+    ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+      ProtocolHandler handler = connector.getProtocolHandler();
+      if (handler instanceof AbstractProtocol) {
+        executor = VirtualThreads.newExecutor();
+        ((AbstractProtocol<?>) handler).setExecutor(executor);
+        logger.info("Serving requests on virtual threads");
+      }
+    });
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    if (executor != null) {
+      executor.shutdown();
+    }
+  }
+
+}
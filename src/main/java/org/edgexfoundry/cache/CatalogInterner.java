@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.edgexfoundry.domain.meta.Action;
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.domain.meta.DeviceService;
+import org.edgexfoundry.domain.meta.Response;
+
+/**
+ * Shares what the devices of a catalog have in common. Devices read from metadata each come with
+ * their own copy of their profile (with its commands, responses and parameter names) and of their
+ * service; here every device with the same profile (or service) id and modification time is
+ * given one shared instance, and the labels, command names, expected values and parameter names
+ * of shared profiles and of devices are interned, so a large catalog holds each of them once.
+ * The index of a shared profile's commands by name is shared likewise. Profiles, services and
+ * strings no longer used by the catalog are forgotten when it is refreshed. Not thread safe; the
+ * DeviceCache guards it.
+ */
+public class CatalogInterner {
+
+  private final Map<String, DeviceProfile> profiles = new HashMap<>();
+  private final Map<String, Map<String, Command>> commands = new HashMap<>();
+  private final Map<String, DeviceService> services = new HashMap<>();
+  private final Map<String, String> strings = new ConcurrentHashMap<>();
+
+  /**
+   * Replace the device's profile and service by the shared instances, and intern its labels.
+   */
+  public void share(Device device) {
+    DeviceProfile profile = device.getProfile();
+    if (profile != null && profile.getId() != null) {
+      DeviceProfile shared = profiles.get(key(profile.getId(), profile.getModified()));
+      if (shared == null) {
+        shared = profile;
+        intern(shared);
+        profiles.put(key(profile.getId(), profile.getModified()), shared);
+      }
+      device.setProfile(shared);
+    }
+    DeviceService service = device.getService();
+    if (service != null && service.getId() != null) {
+      DeviceService shared = services.putIfAbsent(key(service.getId(), service.getModified()),
+          service);
+      if (shared != null) {
+        device.setService(shared);
+      }
+    }
+    device.setName(intern(device.getName()));
+    internAll(device.getLabels());
+  }
+
+  /**
+   * @return the commands of the device's profile by name, shared by the devices of the profile
+   */
+  public Map<String, Command> commands(Device device) {
+    DeviceProfile profile = device.getProfile();
+    String key = profile == null || profile.getId() == null ? null
+        : key(profile.getId(), profile.getModified());
+    if (key == null || profiles.get(key) != profile) {
+      return index(profile);
+    }
+    return commands.computeIfAbsent(key, k -> index(profile));
+  }
+
+  /**
+   * @return the commands of the profile by name, first of a name wins
+   */
+  public static Map<String, Command> index(DeviceProfile profile) {
+    if (profile == null || profile.getCommands() == null) {
+      return Collections.emptyMap();
+    }
+    Map<String, Command> byName = new HashMap<>();
+    for (Command command : profile.getCommands()) {
+      if (command.getName() != null) {
+        byName.putIfAbsent(command.getName(), command);
+      }
+    }
+    return byName;
+  }
+
+  /**
+   * Forget the profiles, services and strings no longer used by any of the given devices.
+   */
+  public void retain(Collection<Device> devices) {
+    Set<String> usedProfiles = new HashSet<>();
+    Set<String> usedServices = new HashSet<>();
+    Set<String> usedStrings = new HashSet<>();
+    for (Device device : devices) {
+      usedStrings.add(device.getName());
+      addAll(usedStrings, device.getLabels());
+      if (device.getProfile() != null && device.getProfile().getId() != null) {
+        usedProfiles.add(key(device.getProfile().getId(), device.getProfile().getModified()));
+      }
+      if (device.getService() != null && device.getService().getId() != null) {
+        usedServices.add(key(device.getService().getId(), device.getService().getModified()));
+      }
+    }
+    profiles.keySet().retainAll(usedProfiles);
+    commands.keySet().retainAll(usedProfiles);
+    services.keySet().retainAll(usedServices);
+    for (DeviceProfile profile : profiles.values()) {
+      used(profile, usedStrings);
+    }
+    strings.keySet().retainAll(usedStrings);
+  }
+
+  public int profiles() {
+    return profiles.size();
+  }
+
+  public int services() {
+    return services.size();
+  }
+
+  public int strings() {
+    return strings.size();
+  }
+
+  /**
+   * @return the shared instance of the string
+   */
+  public String intern(String value) {
+    if (value == null) {
+      return null;
+    }
+    String shared = strings.putIfAbsent(value, value);
+    return shared == null ? value : shared;
+  }
+
+  private void intern(DeviceProfile profile) {
+    profile.setName(intern(profile.getName()));
+    internAll(profile.getLabels());
+    if (profile.getCommands() == null) {
+      return;
+    }
+    for (Command command : profile.getCommands()) {
+      command.setName(intern(command.getName()));
+      intern(command.getGet());
+      intern(command.getPut());
+      if (command.getPut() != null) {
+        internAll(command.getPut().getParameterNames());
+      }
+    }
+  }
+
+  private void intern(Action action) {
+    if (action == null || action.getResponses() == null) {
+      return;
+    }
+    for (Response response : action.getResponses()) {
+      response.setCode(intern(response.getCode()));
+      response.setDescription(intern(response.getDescription()));
+      internAll(response.getExpectedValues());
+    }
+  }
+
+  // the strings of a shared profile, as interned by intern(DeviceProfile)
+  private static void used(DeviceProfile profile, Set<String> used) {
+    used.add(profile.getName());
+    addAll(used, profile.getLabels());
+    if (profile.getCommands() == null) {
+      return;
+    }
+    for (Command command : profile.getCommands()) {
+      used.add(command.getName());
+      used(command.getGet(), used);
+      used(command.getPut(), used);
+      if (command.getPut() != null) {
+        addAll(used, command.getPut().getParameterNames());
+      }
+    }
+  }
+
+  private static void used(Action action, Set<String> used) {
+    if (action == null || action.getResponses() == null) {
+      return;
+    }
+    for (Response response : action.getResponses()) {
+      used.add(response.getCode());
+      used.add(response.getDescription());
+      addAll(used, response.getExpectedValues());
+    }
+  }
+
+  private static void addAll(Set<String> used, String[] values) {
+    if (values != null) {
+      Collections.addAll(used, values);
+    }
+  }
+
+  private static void addAll(Set<String> used, List<String> values) {
+    if (values != null) {
+      used.addAll(values);
+    }
+  }
+
+  private void internAll(String[] values) {
+    if (values != null) {
+      for (int i = 0; i < values.length; i++) {
+        values[i] = intern(values[i]);
+      }
+    }
+  }
+
+  private void internAll(List<String> values) {
+    if (values == null) {
+      return;
+    }
+    try {
+      values.replaceAll(this::intern);
+    } catch (UnsupportedOperationException e) {
+      // left as is
+    }
+  }
+
+  private static String key(String id, long modified) {
+    return id + "@" + modified;
+  }
+
+}
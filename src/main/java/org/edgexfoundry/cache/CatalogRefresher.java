@@ -0,0 +1,60 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import org.edgexfoundry.controller.DeviceClient;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically reloads the device catalog from metadata into the DeviceCache, picking up device,
+ * profile and state changes made without going through this service, and writes the catalog
+ * snapshot if anything changed.
+ */
+@EnableScheduling
+@Component
+public class CatalogRefresher {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(CatalogRefresher.class);
+
+  @Autowired
+  DeviceClient deviceClient;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  @Autowired
+  CatalogSnapshot catalogSnapshot;
+
+  @Scheduled(fixedRateString = "${cache.refresh.time}")
+  public void refresh() {
+    try {
+      long asOf = System.nanoTime();
+      deviceCache.refresh(deviceClient.devices(), asOf);
+      catalogSnapshot.save();
+    } catch (Exception e) {
+      logger.error("Error refreshing device catalog from metadata:  " + e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+
+/**
+ * Local snapshot of the device catalog (devices with their profiles, commands and services, plus
+ * the admin and op state tracked by the DeviceCache) in the file named by cache.snapshot.file, as
+ * Smile with shared names and values written once. At startup the snapshot is memory mapped and
+ * loaded into the DeviceCache, so commands can be resolved before metadata answers; the catalog
+ * refresh then reconciles it against metadata. The snapshot is written again after a catalog
+ * refresh that changed the catalog or an admin or op state, and at shutdown. An empty file name
+ * turns it off.
+ */
+@Component
+public class CatalogSnapshot {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(CatalogSnapshot.class);
+
+  private static final int FORMAT = 1;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  private String file = "";
+
+  private final ObjectMapper mapper = new ObjectMapper(
+      new SmileFactory().enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES))
+          .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+  // guarded by this; catalog version and states last written
+  private long savedVersion = -1;
+  private Map<String, AdminState> savedAdminStates = new HashMap<>();
+  private Map<String, OperatingState> savedOpStates = new HashMap<>();
+
+  @Value("${cache.snapshot.file:}")
+  public void setFile(String file) {
+    this.file = file == null ? "" : file.trim();
+  }
+
+  @PostConstruct
+  public void init() {
+    load();
+  }
+
+  /**
+   * Load the snapshot into the DeviceCache, unless the catalog has already been read from
+   * metadata or there is no snapshot.
+   *
+   * @return true if a snapshot was loaded
+   */
+  public synchronized boolean load() {
+    if (file.isEmpty() || deviceCache.isLoaded() || !Files.isReadable(Paths.get(file))) {
+      return false;
+    }
+    long start = System.nanoTime();
+    Snapshot snapshot;
+    try (FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      snapshot = mapper.readValue(new ByteBufferBackedInputStream(buffer), Snapshot.class);
+    } catch (Exception e) {
+      logger.error("Error reading catalog snapshot " + file + ":  " + e.getMessage());
+      return false;
+    }
+    if (snapshot.format != FORMAT || snapshot.devices == null) {
+      logger.info("Ignoring catalog snapshot " + file + " of unknown format");
+      return false;
+    }
+    restoreStates(snapshot);
+    deviceCache.refresh(snapshot.devices, System.nanoTime());
+    savedVersion = deviceCache.catalogVersion();
+    savedAdminStates = snapshot.adminStates;
+    savedOpStates = snapshot.operatingStates;
+    logger.info("Loaded " + snapshot.devices.size() + " devices from catalog snapshot " + file
+        + " in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    return true;
+  }
+
+  /**
+   * Write the snapshot if the catalog or the tracked admin or op states changed since it was
+   * last written.
+   */
+  public synchronized void save() {
+    if (file.isEmpty() || !deviceCache.isLoaded()) {
+      return;
+    }
+    long version = deviceCache.catalogVersion();
+    Snapshot snapshot = new Snapshot();
+    snapshot.format = FORMAT;
+    snapshot.written = System.currentTimeMillis();
+    snapshot.devices = new ArrayList<>(deviceCache.devices());
+    for (Device device : snapshot.devices) {
+      snapshot.adminStates.put(device.getId(), deviceCache.adminState(device));
+      snapshot.operatingStates.put(device.getId(), deviceCache.operatingState(device));
+    }
+    if (version == savedVersion && snapshot.adminStates.equals(savedAdminStates)
+        && snapshot.operatingStates.equals(savedOpStates)) {
+      return;
+    }
+    Path path = Paths.get(file);
+    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+    try {
+      mapper.writeValue(temp.toFile(), snapshot);
+      move(temp, path);
+      savedVersion = version;
+      savedAdminStates = snapshot.adminStates;
+      savedOpStates = snapshot.operatingStates;
+    } catch (IOException e) {
+      logger.error("Error writing catalog snapshot " + file + ":  " + e.getMessage());
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    save();
+  }
+
+  // readers never see a partly written snapshot where the file system allows it
+  private static void move(Path temp, Path path) throws IOException {
+    try {
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  // the states set through this service since the devices were read from metadata; loaded with
+  // the devices as if read from metadata, so no state change is reported for them at startup
+  private static void restoreStates(Snapshot snapshot) {
+    for (Device device : snapshot.devices) {
+      AdminState adminState = snapshot.adminStates.get(device.getId());
+      if (adminState != null) {
+        device.setAdminState(adminState);
+      }
+      OperatingState operatingState = snapshot.operatingStates.get(device.getId());
+      if (operatingState != null) {
+        device.setOperatingState(operatingState);
+      }
+    }
+  }
+
+  static class Snapshot {
+    public int format;
+    public long written;
+    public List<Device> devices;
+    public Map<String, AdminState> adminStates = new HashMap<>();
+    public Map<String, OperatingState> operatingStates = new HashMap<>();
+  }
+
+}
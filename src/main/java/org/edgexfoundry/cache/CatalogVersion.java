@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+
+import org.edgexfoundry.domain.meta.Device;
+
+/**
+ * Fingerprint of a device catalog as written by the command endpoints. Two catalogs with the same
+ * version produce the same documents, so encoded documents can be reused while it holds. The
+ * version covers each device's modification time and the fields that change without one (states
+ * and connection times), plus the modification times of its profile and service.
+ */
+public final class CatalogVersion {
+
+  private CatalogVersion() {}
+
+  public static String of(Collection<Device> devices) {
+    MessageDigest digest = newDigest();
+    StringBuilder fields = new StringBuilder(128);
+    for (Device device : devices) {
+      fields.setLength(0);
+      fields.append(device.getId()).append('|').append(device.getName()).append('|')
+          .append(device.getModified()).append('|').append(device.getAdminState()).append('|')
+          .append(device.getOperatingState()).append('|').append(device.getLastConnected())
+          .append('|').append(device.getLastReported()).append('|')
+          .append(device.getProfile() == null ? -1 : device.getProfile().getModified())
+          .append('|')
+          .append(device.getService() == null ? -1 : device.getService().getModified())
+          .append('\n');
+      digest.update(fields.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    StringBuilder version = new StringBuilder(40);
+    for (byte b : digest.digest()) {
+      version.append(Character.forDigit((b >> 4) & 0xf, 16))
+          .append(Character.forDigit(b & 0xf, 16));
+    }
+    return version.toString();
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support SHA-1
+      throw new IllegalStateException(e);
+    }
+  }
+
+}
@@ -0,0 +1,587 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.edgexfoundry.domain.StateChange;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.BaseObject;
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.springframework.stereotype.Component;
+
+/**
+ * Local copy of the devices known to metadata, filled as devices are read and by the periodic
+ * catalog refresh. Admin and op state are tracked separately in a DeviceStateTable, which is kept
+ * current by the state change requests passing through this service and is authoritative over
+ * the state held in the cached Device objects. A catalog version is advanced whenever the cached
+ * devices change, and the version at which each device last changed is kept so that changes since
+ * a version can be reported. Changes of admin state, op state, last connected and last reported
+ * time of cached devices, whether made through this service or picked up from metadata, are kept
+ * in a StateChangeLog and passed to the state listeners.
+ */
+@Component
+public class DeviceCache {
+
+  private static final int MAX_REMOVED = 1024;
+  private static final int MAX_STATE_CHANGES = 1024;
+
+  private final DeviceStateTable states = new DeviceStateTable();
+
+  private final Map<String, Device> devices = new ConcurrentHashMap<>();
+  private final Map<String, Device> devicesByName = new ConcurrentHashMap<>();
+  // ids of devices to be read again from metadata on next use
+  private final Set<String> stale = ConcurrentHashMap.newKeySet();
+  // device id to the commands of its profile by command name, shared by devices of a profile
+  private final Map<String, Map<String, Command>> commandsByName = new ConcurrentHashMap<>();
+  // guarded by this
+  private final CatalogInterner interner = new CatalogInterner();
+  // guarded by this; ids of the cached devices by label, service and profile name, and state
+  private final InvertedIndex byLabel = new InvertedIndex();
+  private final InvertedIndex byService = new InvertedIndex();
+  private final InvertedIndex byProfile = new InvertedIndex();
+  private final InvertedIndex byAdminState = new InvertedIndex();
+  private final InvertedIndex byOpState = new InvertedIndex();
+
+  // guarded by this; catalog version at which each device id last changed, and of removed names
+  private final Map<String, Long> changed = new HashMap<>();
+  private final Map<String, Long> removed = new LinkedHashMap<>();
+  private volatile long version;
+  // guarded by this; the oldest version changes can be reported since
+  private long floor;
+  private volatile boolean loaded;
+
+  // guarded by this
+  private final StateChangeLog stateChanges = new StateChangeLog(MAX_STATE_CHANGES);
+  private final List<Consumer<List<StateChange>>> stateListeners = new CopyOnWriteArrayList<>();
+  private final List<Consumer<String>> removalListeners = new CopyOnWriteArrayList<>();
+  // System.nanoTime the oldest local state change not yet in metadata was made at, or null
+  private volatile Supplier<Long> unwrittenSince = () -> null;
+
+  public Device device(String id) {
+    return id == null || stale.contains(id) ? null : devices.get(id);
+  }
+
+  public Device deviceForName(String name) {
+    Device device = name == null ? null : devicesByName.get(name);
+    return device == null || stale.contains(device.getId()) ? null : device;
+  }
+
+  /**
+   * @return every cached device, including those to be read again on next use
+   */
+  public Collection<Device> devices() {
+    return Collections.unmodifiableCollection(devices.values());
+  }
+
+  /**
+   * @return true once the full catalog has been read from metadata
+   */
+  public boolean isLoaded() {
+    return loaded;
+  }
+
+  /**
+   * @return the catalog version, advanced whenever a device is added, removed, renamed or
+   *         modified (including its profile and service)
+   */
+  public long catalogVersion() {
+    return version;
+  }
+
+  /**
+   * Cache a device freshly read from metadata. Devices without an id are ignored.
+   */
+  public synchronized void put(Device device) {
+    if (device == null || device.getId() == null) {
+      return;
+    }
+    Map<String, Observed> before = observe(Collections.singleton(device.getId()));
+    long next = version + 1;
+    if (store(device, next)) {
+      version = next;
+    }
+    states.updateAll(Collections.singletonList(device), asOf(System.nanoTime()));
+    indexStates(Collections.singleton(device.getId()));
+    changed(before);
+  }
+
+  /**
+   * Tell the cache where to learn since when local state changes have been waiting to be written
+   * to metadata. Devices read from metadata meanwhile may not show those changes yet, so their
+   * state does not override what was changed locally since then.
+   */
+  public void setUnwrittenStates(Supplier<Long> since) {
+    unwrittenSince = since == null ? () -> null : since;
+  }
+
+  /**
+   * Drop a device so that it is read again from metadata on next use. The device stays in the
+   * catalog until metadata says otherwise.
+   */
+  public void evict(String id) {
+    if (id != null && devices.containsKey(id)) {
+      stale.add(id);
+    }
+  }
+
+  /**
+   * Replace the cached devices with the full list read from metadata.
+   *
+   * @param all - every device known to metadata
+   * @param asOf - System.nanoTime taken before the list was read from metadata
+   */
+  public synchronized void refresh(List<Device> all, long asOf) {
+    Map<String, Observed> before = observe(devices.keySet());
+    long next = version + 1;
+    boolean modified = false;
+    Set<String> current = new HashSet<>();
+    for (Device device : all) {
+      if (device.getId() == null) {
+        continue;
+      }
+      current.add(device.getId());
+      modified |= store(device, next);
+    }
+    for (Device device : new ArrayList<>(devices.values())) {
+      if (!current.contains(device.getId())) {
+        devices.remove(device.getId());
+        commandsByName.remove(device.getId());
+        unindex(device.getId());
+        stale.remove(device.getId());
+        changed.remove(device.getId());
+        if (device.getName() != null) {
+          devicesByName.remove(device.getName(), device);
+          markRemoved(device.getName(), next);
+        }
+        removalListeners.forEach(listener -> listener.accept(device.getId()));
+        modified = true;
+      }
+    }
+    interner.retain(devices.values());
+    states.updateAll(all, asOf(asOf));
+    indexStates(current);
+    loaded = true;
+    if (modified) {
+      version = next;
+    }
+    changed(before);
+  }
+
+  /**
+   * Register a listener to be given each batch of state changes, in order, as they are seen. The
+   * listener is called with the cache locked and must not block.
+   */
+  public void addStateListener(Consumer<List<StateChange>> listener) {
+    stateListeners.add(listener);
+  }
+
+  /**
+   * Register a listener to be given the id of each device removed from the catalog. The listener
+   * is called with the cache locked and must not block.
+   */
+  public void addRemovalListener(Consumer<String> listener) {
+    removalListeners.add(listener);
+  }
+
+  /**
+   * @return the sequence of the last state change seen, 0 if none
+   */
+  public synchronized long stateSequence() {
+    return stateChanges.lastSequence();
+  }
+
+  /**
+   * @return the state changes after the given sequence, or null if they are no longer known
+   */
+  public synchronized List<StateChange> stateChangesSince(long sequence) {
+    return stateChanges.since(sequence);
+  }
+
+  /**
+   * @return the devices changed after the given catalog version, or null if changes are no
+   *         longer known that far back or the version is ahead of the catalog, as one handed out
+   *         before a restart may be (the full catalog must then be used)
+   */
+  public synchronized List<Device> changedSince(long since) {
+    if (since < floor || since > version) {
+      return null;
+    }
+    List<Device> result = new ArrayList<>();
+    for (Map.Entry<String, Long> entry : changed.entrySet()) {
+      Device device = entry.getValue() > since ? devices.get(entry.getKey()) : null;
+      if (device != null) {
+        result.add(device);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * @return the names of the devices removed (or renamed) after the given catalog version
+   */
+  public synchronized List<String> removedSince(long since) {
+    List<String> result = new ArrayList<>();
+    removed.forEach((name, at) -> {
+      if (at > since && !devicesByName.containsKey(name)) {
+        result.add(name);
+      }
+    });
+    return result;
+  }
+
+  // guarded by this; returns true if the device is new or differs from the cached one
+  private boolean store(Device device, long next) {
+    stale.remove(device.getId());
+    interner.share(device);
+    Device previous = devices.put(device.getId(), device);
+    if (previous != null && previous.getName() != null
+        && !previous.getName().equals(device.getName())) {
+      devicesByName.remove(previous.getName(), previous);
+      markRemoved(previous.getName(), next);
+    }
+    if (device.getName() != null) {
+      devicesByName.put(device.getName(), device);
+    }
+    commandsByName.put(device.getId(), interner.commands(device));
+    byLabel.put(device.getId(),
+        device.getLabels() == null ? null : Arrays.asList(device.getLabels()));
+    byService.put(device.getId(), device.getService() == null ? null
+        : device.getService().getName());
+    byProfile.put(device.getId(), device.getProfile() == null ? null
+        : device.getProfile().getName());
+    if (previous != null && sameEntry(previous, device)) {
+      return false;
+    }
+    changed.put(device.getId(), next);
+    return true;
+  }
+
+  private void markRemoved(String name, long at) {
+    removed.remove(name);
+    removed.put(name, at);
+    if (removed.size() > MAX_REMOVED) {
+      // forget the oldest removal; deltas from before it can no longer be given
+      Map.Entry<String, Long> oldest = removed.entrySet().iterator().next();
+      floor = Math.max(floor, oldest.getValue());
+      removed.remove(oldest.getKey());
+    }
+  }
+
+  private static boolean sameEntry(Device previous, Device device) {
+    return Objects.equals(previous.getName(), device.getName())
+        && previous.getModified() == device.getModified()
+        && modified(previous.getProfile()) == modified(device.getProfile())
+        && modified(previous.getService()) == modified(device.getService());
+  }
+
+  private static long modified(BaseObject object) {
+    return object == null ? -1 : object.getModified();
+  }
+
+  /**
+   * Find a command offered by the device's profile.
+   *
+   * @return the command with the given id or null if the profile does not offer it
+   */
+  public Command command(Device device, String commandId) {
+    if (commandId == null || device.getProfile() == null
+        || device.getProfile().getCommands() == null) {
+      return null;
+    }
+    for (Command command : device.getProfile().getCommands()) {
+      if (commandId.equals(command.getId())) {
+        return command;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Find a command offered by the device's profile by name, through the name index kept for cached
+   * devices.
+   *
+   * @return the command with the given name or null if the profile does not offer it
+   */
+  public Command commandForName(Device device, String commandName) {
+    if (commandName == null) {
+      return null;
+    }
+    Map<String, Command> commands =
+        device.getId() == null ? null : commandsByName.get(device.getId());
+    if (commands == null || devices.get(device.getId()) != device) {
+      commands = CatalogInterner.index(device.getProfile());
+    }
+    return commands.get(commandName);
+  }
+
+  /**
+   * @return the current admin state of the device, falling back to the state the device was read
+   *         with when the device is not tracked
+   */
+  public AdminState adminState(Device device) {
+    AdminState state = states.adminState(states.slot(device.getId()));
+    return state == null ? device.getAdminState() : state;
+  }
+
+  /**
+   * @return the current op state of the device, falling back to the state the device was read
+   *         with when the device is not tracked
+   */
+  public OperatingState operatingState(Device device) {
+    OperatingState state = states.operatingState(states.slot(device.getId()));
+    return state == null ? device.getOperatingState() : state;
+  }
+
+  public void setAdminState(String id, String state) {
+    setAdminStates(Collections.singleton(id), null, parseAdminState(state));
+  }
+
+  public void setAdminStateForName(String name, String state) {
+    setAdminStates(null, Collections.singleton(name), parseAdminState(state));
+  }
+
+  public synchronized void setAdminStates(Collection<String> ids, Collection<String> names,
+      AdminState state) {
+    Set<String> resolved = resolve(ids, names);
+    Map<String, Observed> before = observe(resolved);
+    states.setAdminState(ids, names, state);
+    indexStates(resolved);
+    changed(before);
+  }
+
+  public void setOpState(String id, String state) {
+    setOpStates(Collections.singleton(id), null, parseOpState(state));
+  }
+
+  public void setOpStateForName(String name, String state) {
+    setOpStates(null, Collections.singleton(name), parseOpState(state));
+  }
+
+  public synchronized void setOpStates(Collection<String> ids, Collection<String> names,
+      OperatingState state) {
+    Set<String> resolved = resolve(ids, names);
+    Map<String, Observed> before = observe(resolved);
+    states.setOperatingState(ids, names, state);
+    indexStates(resolved);
+    changed(before);
+  }
+
+  /**
+   * Find the cached devices matching every given criterion through the attribute and state
+   * indexes, so that the cost follows the size of the smallest matching set rather than the
+   * catalog's.
+   *
+   * @param label - a label of the devices, or null for any
+   * @param service - the name of the devices' service, or null for any
+   * @param profile - the name of the devices' profile, or null for any
+   * @param adminState - the current admin state of the devices, or null for any
+   * @param operatingState - the current op state of the devices, or null for any
+   * @return the matching devices, every cached device if no criterion is given
+   */
+  public synchronized List<Device> select(String label, String service, String profile,
+      AdminState adminState, OperatingState operatingState) {
+    List<Set<String>> matches = new ArrayList<>();
+    if (label != null) {
+      matches.add(byLabel.get(label));
+    }
+    if (service != null) {
+      matches.add(byService.get(service));
+    }
+    if (profile != null) {
+      matches.add(byProfile.get(profile));
+    }
+    if (adminState != null) {
+      matches.add(byAdminState.get(adminState.toString()));
+    }
+    if (operatingState != null) {
+      matches.add(byOpState.get(operatingState.toString()));
+    }
+    if (matches.isEmpty()) {
+      return new ArrayList<>(devices.values());
+    }
+    matches.sort(Comparator.comparingInt(Set::size));
+    List<Device> selected = new ArrayList<>();
+    for (String id : matches.get(0)) {
+      boolean all = true;
+      for (int i = 1; all && i < matches.size(); i++) {
+        all = matches.get(i).contains(id);
+      }
+      Device device = all ? devices.get(id) : null;
+      if (device != null) {
+        selected.add(device);
+      }
+    }
+    return selected;
+  }
+
+  // guarded by this; index the current state of the cached devices with the given ids
+  private void indexStates(Collection<String> ids) {
+    for (String id : ids) {
+      Device device = devices.get(id);
+      if (device != null) {
+        AdminState adminState = adminState(device);
+        OperatingState operatingState = operatingState(device);
+        byAdminState.put(id, adminState == null ? null : adminState.toString());
+        byOpState.put(id, operatingState == null ? null : operatingState.toString());
+      }
+    }
+  }
+
+  // guarded by this
+  private void unindex(String id) {
+    byLabel.remove(id);
+    byService.remove(id);
+    byProfile.remove(id);
+    byAdminState.remove(id);
+    byOpState.remove(id);
+  }
+
+  // ids of the cached devices among the given ids and names
+  private Set<String> resolve(Collection<String> ids, Collection<String> names) {
+    Set<String> resolved = new HashSet<>();
+    if (ids != null) {
+      for (String id : ids) {
+        if (id != null && devices.containsKey(id)) {
+          resolved.add(id);
+        }
+      }
+    }
+    if (names != null) {
+      for (String name : names) {
+        Device device = name == null ? null : devicesByName.get(name);
+        if (device != null) {
+          resolved.add(device.getId());
+        }
+      }
+    }
+    return resolved;
+  }
+
+  // guarded by this; the observable state of the cached devices with the given ids
+  private Map<String, Observed> observe(Collection<String> ids) {
+    Map<String, Observed> observed = new HashMap<>();
+    for (String id : ids) {
+      Device device = devices.get(id);
+      if (device != null) {
+        observed.put(id, new Observed(device));
+      }
+    }
+    return observed;
+  }
+
+  // the time states read from metadata are taken to be current at, given when the read started
+  private long asOf(long readAt) {
+    Long since = unwrittenSince.get();
+    return since != null && since - readAt < 0 ? since - 1 : readAt;
+  }
+
+  // guarded by this; log and pass on the changes of the devices observed before
+  private void changed(Map<String, Observed> before) {
+    List<StateChange> found = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (Map.Entry<String, Observed> entry : before.entrySet()) {
+      Device device = devices.get(entry.getKey());
+      if (device != null) {
+        entry.getValue().diff(new Observed(device), device, now, found);
+      }
+    }
+    if (found.isEmpty()) {
+      return;
+    }
+    stateChanges.append(found);
+    for (Consumer<List<StateChange>> listener : stateListeners) {
+      listener.accept(found);
+    }
+  }
+
+  private class Observed {
+    private final AdminState adminState;
+    private final OperatingState operatingState;
+    private final long lastConnected;
+    private final long lastReported;
+
+    Observed(Device device) {
+      adminState = adminState(device);
+      operatingState = operatingState(device);
+      lastConnected = device.getLastConnected();
+      lastReported = device.getLastReported();
+    }
+
+    void diff(Observed after, Device device, long now, List<StateChange> found) {
+      if (adminState != after.adminState) {
+        found.add(change(device, StateChange.ADMIN_STATE, after.adminState, now));
+      }
+      if (operatingState != after.operatingState) {
+        found.add(change(device, StateChange.OPERATING_STATE, after.operatingState, now));
+      }
+      if (lastConnected != after.lastConnected) {
+        found.add(change(device, StateChange.LAST_CONNECTED, after.lastConnected, now));
+      }
+      if (lastReported != after.lastReported) {
+        found.add(change(device, StateChange.LAST_REPORTED, after.lastReported, now));
+      }
+    }
+
+    private StateChange change(Device device, String field, Object value, long now) {
+      return new StateChange(device.getId(), device.getName(), field, String.valueOf(value), now);
+    }
+  }
+
+  // an unparsable state clears the tracked state, falling back to the cached device's
+  private static AdminState parseAdminState(String state) {
+    if (state == null) {
+      return null;
+    }
+    try {
+      return AdminState.valueOf(state.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static OperatingState parseOpState(String state) {
+    if (state == null) {
+      return null;
+    }
+    try {
+      return OperatingState.valueOf(state.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+}
@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+
+/**
+ * Admin and op state of every known device, held as byte columns indexed by an interned device
+ * key. Each device id (and name) is interned to a slot once; state is stored as enum ordinal + 1
+ * so that 0 means unknown. Writers replace the columns copy-on-write under the table lock, so
+ * readers never lock and always see a complete column.
+ */
+public class DeviceStateTable {
+
+  private static final byte UNKNOWN = 0;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private static final AdminState[] ADMIN_STATES = AdminState.values();
+  private static final OperatingState[] OP_STATES = OperatingState.values();
+
+  private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+  private final Map<String, Integer> names = new ConcurrentHashMap<>();
+
+  private volatile byte[] adminStates = new byte[INITIAL_CAPACITY];
+  private volatile byte[] opStates = new byte[INITIAL_CAPACITY];
+
+  // guarded by this; System.nanoTime of the last local state change per slot, 0 if none
+  private long[] localUpdates = new long[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * @return the slot of the device with the given id, or -1 if the device is not known
+   */
+  public int slot(String id) {
+    Integer slot = id == null ? null : ids.get(id);
+    return slot == null ? -1 : slot;
+  }
+
+  /**
+   * @return the slot of the device with the given name, or -1 if the device is not known
+   */
+  public int slotForName(String name) {
+    Integer slot = name == null ? null : names.get(name);
+    return slot == null ? -1 : slot;
+  }
+
+  public int size() {
+    return ids.size();
+  }
+
+  public AdminState adminState(int slot) {
+    if (slot < 0) {
+      return null;
+    }
+    byte state = adminStates[slot];
+    return state == UNKNOWN ? null : ADMIN_STATES[state - 1];
+  }
+
+  public OperatingState operatingState(int slot) {
+    if (slot < 0) {
+      return null;
+    }
+    byte state = opStates[slot];
+    return state == UNKNOWN ? null : OP_STATES[state - 1];
+  }
+
+  /**
+   * Intern the device's id and name, returning its slot. Devices without an id are not interned.
+   */
+  public synchronized int intern(String id, String name) {
+    if (id == null) {
+      return -1;
+    }
+    Integer slot = ids.get(id);
+    if (slot == null) {
+      slot = size++;
+      if (slot >= adminStates.length) {
+        int capacity = adminStates.length * 2;
+        // publish the grown columns before the slot so readers never index past the end
+        adminStates = Arrays.copyOf(adminStates, capacity);
+        opStates = Arrays.copyOf(opStates, capacity);
+        localUpdates = Arrays.copyOf(localUpdates, capacity);
+      }
+      ids.put(id, slot);
+    }
+    if (name != null) {
+      names.put(name, slot);
+    }
+    return slot;
+  }
+
+  /**
+   * Record the state of a device as reported by metadata.
+   */
+  public synchronized void update(Device device) {
+    updateAll(Collections.singletonList(device), System.nanoTime());
+  }
+
+  /**
+   * Record the state of the devices as reported by metadata, in one pass over the columns. Slots
+   * changed locally after asOf (a System.nanoTime value taken before metadata was read) keep
+   * their local state, so an in flight refresh can't undo a newer lock or disable.
+   */
+  public synchronized void updateAll(Collection<Device> devices, long asOf) {
+    for (Device device : devices) {
+      intern(device.getId(), device.getName());
+    }
+    byte[] admin = adminStates.clone();
+    byte[] op = opStates.clone();
+    for (Device device : devices) {
+      int slot = slot(device.getId());
+      if (slot < 0 || (localUpdates[slot] != 0 && localUpdates[slot] - asOf > 0)) {
+        continue;
+      }
+      admin[slot] = encode(device.getAdminState());
+      op[slot] = encode(device.getOperatingState());
+    }
+    adminStates = admin;
+    opStates = op;
+  }
+
+  /**
+   * Set the admin state of the devices known by the given ids and names, in one pass. Devices not
+   * yet in the table are skipped; their state is picked up when they are first read.
+   */
+  public synchronized void setAdminState(Collection<String> deviceIds,
+      Collection<String> deviceNames, AdminState state) {
+    adminStates = set(adminStates, deviceIds, deviceNames, encode(state));
+  }
+
+  /**
+   * Set the op state of the devices known by the given ids and names, in one pass. Devices not
+   * yet in the table are skipped; their state is picked up when they are first read.
+   */
+  public synchronized void setOperatingState(Collection<String> deviceIds,
+      Collection<String> deviceNames, OperatingState state) {
+    opStates = set(opStates, deviceIds, deviceNames, encode(state));
+  }
+
+  private byte[] set(byte[] column, Collection<String> deviceIds, Collection<String> deviceNames,
+      byte value) {
+    byte[] next = column.clone();
+    long now = System.nanoTime();
+    if (deviceIds != null) {
+      for (String id : deviceIds) {
+        setSlot(next, slot(id), value, now);
+      }
+    }
+    if (deviceNames != null) {
+      for (String name : deviceNames) {
+        setSlot(next, slotForName(name), value, now);
+      }
+    }
+    return next;
+  }
+
+  private void setSlot(byte[] column, int slot, byte value, long now) {
+    if (slot >= 0) {
+      column[slot] = value;
+      localUpdates[slot] = now;
+    }
+  }
+
+  private static byte encode(Enum<?> state) {
+    return state == null ? UNKNOWN : (byte) (state.ordinal() + 1);
+  }
+
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Maps a device attribute value (a label, a service name, a state) to the ids of the devices
+ * having it. Each device's values are remembered so that an update only touches the entries the
+ * device enters or leaves. A device indexed under a single value (its service, profile or a
+ * state) is remembered by that value alone; only devices indexed under several values (labels)
+ * get a set of their own. Not thread safe; the DeviceCache guards it.
+ */
+public class InvertedIndex {
+
+  private final Map<String, Set<String>> ids = new HashMap<>();
+  // id to the value of a device indexed under a single value
+  private final Map<String, String> singleValues = new HashMap<>();
+  // id to the values of a device indexed under several values
+  private final Map<String, Set<String>> values = new HashMap<>();
+
+  /**
+   * Index the device under the given values, replacing the values it was indexed under.
+   */
+  public void put(String id, Collection<String> deviceValues) {
+    String single = singleValues.remove(id);
+    if (single != null) {
+      drop(single, id);
+    }
+    Set<String> next = new HashSet<>();
+    if (deviceValues != null) {
+      for (String value : deviceValues) {
+        if (value != null) {
+          next.add(value);
+        }
+      }
+    }
+    Set<String> previous = values.get(id);
+    if (previous != null) {
+      for (String value : previous) {
+        if (!next.contains(value)) {
+          drop(value, id);
+        }
+      }
+    }
+    for (String value : next) {
+      if (previous == null || !previous.contains(value)) {
+        ids.computeIfAbsent(value, v -> new HashSet<>()).add(id);
+      }
+    }
+    if (next.isEmpty()) {
+      values.remove(id);
+    } else {
+      values.put(id, next);
+    }
+  }
+
+  /**
+   * Index the device under the given value alone, replacing the values it was indexed under.
+   */
+  public void put(String id, String deviceValue) {
+    Set<String> several = values.remove(id);
+    if (several != null) {
+      several.forEach(previous -> drop(previous, id));
+    }
+    String previous = deviceValue == null
+        ? singleValues.remove(id) : singleValues.put(id, deviceValue);
+    if (Objects.equals(previous, deviceValue)) {
+      return;
+    }
+    if (previous != null) {
+      drop(previous, id);
+    }
+    if (deviceValue != null) {
+      ids.computeIfAbsent(deviceValue, v -> new HashSet<>()).add(id);
+    }
+  }
+
+  public void remove(String id) {
+    String single = singleValues.remove(id);
+    if (single != null) {
+      drop(single, id);
+    }
+    Set<String> several = values.remove(id);
+    if (several != null) {
+      several.forEach(previous -> drop(previous, id));
+    }
+  }
+
+  /**
+   * @return the ids of the devices indexed under the value; the set is owned by the index
+   */
+  public Set<String> get(String value) {
+    Set<String> found = ids.get(value);
+    return found == null ? Collections.emptySet() : found;
+  }
+
+  private void drop(String value, String id) {
+    Set<String> found = ids.get(value);
+    if (found != null && found.remove(id) && found.isEmpty()) {
+      ids.remove(value);
+    }
+  }
+
+}
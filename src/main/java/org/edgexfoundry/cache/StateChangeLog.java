@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.edgexfoundry.domain.StateChange;
+
+/**
+ * The most recent device state changes, in a ring of fixed capacity. Each appended change is given
+ * the next sequence number. Not thread safe; the DeviceCache guards it.
+ */
+public class StateChangeLog {
+
+  private final StateChange[] ring;
+  // sequence of the last appended change; the first change is 1
+  private long last;
+
+  public StateChangeLog(int capacity) {
+    ring = new StateChange[Math.max(1, capacity)];
+  }
+
+  public void append(List<StateChange> changes) {
+    for (StateChange change : changes) {
+      change.setSequence(++last);
+      ring[(int) (last % ring.length)] = change;
+    }
+  }
+
+  public long lastSequence() {
+    return last;
+  }
+
+  /**
+   * @return the changes after the given sequence, oldest first, or null if some of them have
+   *         been overwritten or the sequence was never given out
+   */
+  public List<StateChange> since(long sequence) {
+    long oldest = Math.max(1, last - ring.length + 1);
+    if (sequence < oldest - 1 || sequence > last) {
+      return null;
+    }
+    List<StateChange> changes = new ArrayList<>((int) (last - sequence));
+    for (long next = sequence + 1; next <= last; next++) {
+      changes.add(ring[(int) (next % ring.length)]);
+    }
+    return changes;
+  }
+
+}
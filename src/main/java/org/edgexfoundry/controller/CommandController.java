@@ -20,78 +20,326 @@ package org.edgexfoundry.controller;
 
 import java.util.List;
 
+import org.edgexfoundry.domain.CommandReading;
 import org.edgexfoundry.domain.CommandResponse;
+import org.edgexfoundry.domain.DeviceFilter;
+import org.edgexfoundry.domain.DeviceSelector;
+import org.edgexfoundry.domain.StateUpdateResult;
+import org.edgexfoundry.handler.ShardRouter;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 public interface CommandController {
 
   /**
-   * Retrieve a list of (all) devices and their command offerings. Throws ServiceException (HTTP
-   * 503) for unanticipated or unknown issues encountered.
+   * Retrieve a list of (all) devices and their command offerings, or of the devices matching a
+   * filter. Filtered listings are answered from the indexes of the device cache. Throws
+   * ServiceException (HTTP 503) for unanticipated or unknown issues encountered. Throws
+   * ClientException (HTTP 400) if a requested field, view or filtered state is unknown.
    * 
    * @param host - provided by the Spring runtime via the request header, the host address.
-   * @return List of CommandResponse (containing the devices and their commands)
+   * @param fields - optional, comma separated fields to write (for example
+   *        name,commands.name,commands.get.url); unrequested fields are left out.
+   * @param view - optional, urls for the compact view of device name and id and command names, ids
+   *        and URLs.
+   * @param filter - bound from the optional label, service, profile, adminState and
+   *        operatingState query parameters; only devices matching all given are listed. The
+   *        optional comma separated ids and names parameters pick the devices to list, served
+   *        from the device cache and read from metadata when missing.
+   * @return List of CommandResponse (containing the devices and their commands), as JSON or, if
+   *         the client asks for it with the Accept header, CBOR or Smile
    */
-  List<CommandResponse> devices(@RequestHeader("host") String host);
+  List<CommandResponse> devices(@RequestHeader("host") String host,
+      @RequestParam(required = false) String fields,
+      @RequestParam(required = false) String view, DeviceFilter filter);
+
+  /**
+   * Retrieve a list of (all) devices and their command offerings, or of the devices matching a
+   * filter, for clients that negotiate a content coding. The list is returned gzip or deflate
+   * compressed when the client accepts either; the encoded full catalog is served without reading
+   * metadata for as long as the device cache is unchanged. Filtered listings are answered from
+   * the indexes of the device cache. Throws ServiceException (HTTP 503) for unanticipated or
+   * unknown issues encountered. Throws ClientException (HTTP 400) if a requested field, view or
+   * filtered state is unknown.
+   * 
+   * @param host - provided by the Spring runtime via the request header, the host address.
+   * @param acceptEncoding - provided by the Spring runtime via the request header, the content
+   *        codings the client accepts.
+   * @param fields - optional, comma separated fields to write (for example
+   *        name,commands.name,commands.get.url); unrequested fields are left out.
+   * @param view - optional, urls for the compact view of device name and id and command names, ids
+   *        and URLs.
+   * @param filter - bound from the optional label, service, profile, adminState and
+   *        operatingState query parameters; only devices matching all given are listed. The
+   *        optional comma separated ids and names parameters pick the devices to list, served
+   *        from the device cache and read from metadata when missing.
+   * @return the JSON encoded list of CommandResponse, compressed if the client accepts it
+   */
+  ResponseEntity<byte[]> encodedDevices(@RequestHeader("host") String host,
+      @RequestHeader(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+      @RequestParam(required = false) String fields,
+      @RequestParam(required = false) String view, DeviceFilter filter);
+
+  /**
+   * Retrieve the command index: for every device name, the get and put URLs of each of its
+   * commands by command name. The index carries the catalog version it was built at (also sent as
+   * the ETag), and is encoded once per catalog version. With since, only the devices changed and
+   * the names removed after that version are returned, or the full index if changes are not known
+   * that far back. Throws ServiceException (HTTP 503) for unanticipated or unknown issues
+   * encountered.
+   * 
+   * @param host - provided by the Spring runtime via the request header, the host address.
+   * @param since - optional, the catalog version of the index the client already holds
+   * @param headers - provided by the Spring runtime, the request headers. If-None-Match with the
+   *        current ETag returns HTTP 304; Accept-Encoding selects gzip or deflate for the full
+   *        index.
+   * @return the JSON encoded index, or the changes to it
+   */
+  ResponseEntity<byte[]> index(@RequestHeader("host") String host,
+      @RequestParam(required = false) Long since, @RequestHeader HttpHeaders headers);
 
   /**
    * Retrieve a device (by database generated id) and its command offerings. Throws ServiceException
    * (HTTP 503) for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404)
-   * if no device exists by the id provided.
+   * if no device exists by the id provided. Throws ClientException (HTTP 400) if a requested field
+   * or view is unknown.
    * 
    * @param id - the database generated id for the device
    * @param host - provided by the Spring runtime via the request header, the host address.
-   * @return CommandResponse containing the device and its commands
+   * @param fields - optional, comma separated fields to write (for example
+   *        name,commands.name,commands.get.url); unrequested fields are left out.
+   * @param view - optional, urls for the compact view of device name and id and command names, ids
+   *        and URLs.
+   * @return CommandResponse containing the device and its commands, as JSON or, if the client
+   *         asks for it with the Accept header, CBOR or Smile
    */
-  CommandResponse device(@PathVariable String id, @RequestHeader("host") String host);
+  CommandResponse device(@PathVariable String id, @RequestHeader("host") String host,
+      @RequestParam(required = false) String fields,
+      @RequestParam(required = false) String view);
 
   /**
    * Retrieve a device (by name) and its command offerings. Throws ServiceException (HTTP 503) for
    * unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404) if no device
-   * exists by the name provided.
+   * exists by the name provided. Throws ClientException (HTTP 400) if a requested field or view is
+   * unknown.
    * 
    * @param name - the name of the device
    * @param host - provided by the Spring runtime via the request header, the host address.
-   * @return CommandResponse containing the device and its commands
+   * @param fields - optional, comma separated fields to write (for example
+   *        name,commands.name,commands.get.url); unrequested fields are left out.
+   * @param view - optional, urls for the compact view of device name and id and command names, ids
+   *        and URLs.
+   * @return CommandResponse containing the device and its commands, as JSON or, if the client
+   *         asks for it with the Accept header, CBOR or Smile
    */
-  CommandResponse deviceByName(@PathVariable String name, @RequestHeader("host") String host);
+  CommandResponse deviceByName(@PathVariable String name, @RequestHeader("host") String host,
+      @RequestParam(required = false) String fields,
+      @RequestParam(required = false) String view);
 
   /**
    * Issue the put command referenced by the command id to the device/sensor (also referenced by
    * database generated id) it is associated to via the device service. ServiceException (HTTP 503)
    * for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404) if no
    * device exists by the id provided. Throws LockedException (HTTP 423) if the device is locked
-   * (admin state).
+   * (admin state). Throws RateLimitedException (HTTP 429) if the device or its device service is
+   * over its command rate limit, or the command's execution lane is full. Throws ClientException
+   * (HTTP 400), without contacting the device, if the body is not a JSON object of the put's
+   * parameters. For commands configured for coalescing, a put superseded by a newer put to the
+   * same device and command before it is sent returns HTTP 202 instead.
    * 
    * @param id - the database generated id for the device to receive the put command request
    * @param commandid - the id (database generated id) of the command to issue to the device
    * @param body - JSON data to send with the command request
-   * @return String as returned by the device/sensor via the device service.
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the put lane. A put repeating the
+   *        Idempotency-Key of an earlier put to the device and command is not sent again; it gets
+   *        the earlier put's response (HTTP 400 if its body differs). For commands named in
+   *        command.dedupe.commands, a put of the body last applied is answered without contacting
+   *        the device unless X-Command-Force is true.
+   * @return the response as returned by the device/sensor via the device service. If the device
+   *         service compressed it and the client accepts that coding (Accept-Encoding), it is
+   *         passed through compressed. A JSON response is transcoded to CBOR or Smile if the
+   *         client asks for either ahead of JSON (Accept).
    */
-  ResponseEntity<String> put(@PathVariable String id, @PathVariable String commandid,
-      @RequestBody String body);
+  ResponseEntity<byte[]> put(@PathVariable String id, @PathVariable String commandid,
+      @RequestBody String body, @RequestHeader HttpHeaders headers);
 
   /**
    * Issue the get command referenced by the command id to the device/sensor (also referenced by
    * database generated id) it is associated to via the device service. ServiceException (HTTP 503)
    * for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404) if no
    * device exists by the id provided. Throws LockedException (HTTP 423) if the device is locked
-   * (admin state).
+   * (admin state). Throws RateLimitedException (HTTP 429) if the device or its device service is
+   * over its command rate limit, or the command's execution lane is full, and no last known
+   * value may be served instead.
    * 
    * @param id - the database generated id for the device to receive the put command request
    * @param commandid - the id (database generated id) of the command to issue to the device
-   * @return String as returned by the device/sensor via the device service.
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the get lane. Cache-Control
+   *        max-stale=N serves the last known value if no older than N seconds without calling the
+   *        device; stale-if-error=N serves it if the device can't be read.
+   * @return the response as returned by the device/sensor via the device service. If the device
+   *         service compressed it and the client accepts that coding (Accept-Encoding), it is
+   *         passed through compressed. A JSON response is transcoded to CBOR or Smile if the
+   *         client asks for either ahead of JSON (Accept).
+   */
+  ResponseEntity<byte[]> get(@PathVariable String id, @PathVariable String commandid,
+      @RequestHeader HttpHeaders headers);
+
+  /**
+   * Issue the put command with the given name to the device with the given name, via its device
+   * service. Both names are resolved against the cached devices and their profiles' commands, so
+   * no metadata call is made when the device is cached. Locks, op state, rate limits, lanes and
+   * coalescing apply as for put by ids. ServiceException (HTTP 503) for unanticipated or unknown
+   * issues encountered. Throws NotFoundException (HTTP 404) if no device exists by the name
+   * provided or its profile offers no command by the command name. Throws LockedException (HTTP
+   * 423) if the device is locked (admin state) or disabled (op state). Throws RateLimitedException
+   * (HTTP 429) if the device or its device service is over its command rate limit, or the put lane
+   * is full. Throws ClientException (HTTP 400) if the body is not a JSON object of the put's
+   * parameters.
+   * 
+   * @param name - the name of the device to receive the put command request
+   * @param commandName - the name of the command to issue to the device
+   * @param body - JSON data to send with the command request
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the put lane. A put repeating the
+   *        Idempotency-Key of an earlier put to the device and command is not sent again; it gets
+   *        the earlier put's response (HTTP 400 if its body differs). For commands named in
+   *        command.dedupe.commands, a put of the body last applied is answered without contacting
+   *        the device unless X-Command-Force is true.
+   * @return the response as returned by the device/sensor via the device service, as for put by
+   *         ids
    */
-  ResponseEntity<String> get(@PathVariable String id, @PathVariable String commandid);
+  ResponseEntity<byte[]> putByName(@PathVariable String name, @PathVariable String commandName,
+      @RequestBody String body, @RequestHeader HttpHeaders headers);
+
+  /**
+   * Issue the get command with the given name to the device with the given name, via its device
+   * service. Both names are resolved against the cached devices and their profiles' commands, so
+   * no metadata call is made when the device is cached. Locks, rate limits and lanes apply as for
+   * get by ids. ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
+   * Throws NotFoundException (HTTP 404) if no device exists by the name provided or its profile
+   * offers no command by the command name. Throws LockedException (HTTP 423) if the device is
+   * locked (admin state). Throws RateLimitedException (HTTP 429) if the device or its device
+   * service is over its command rate limit, or the get lane is full.
+   * 
+   * @param name - the name of the device to receive the get command request
+   * @param commandName - the name of the command to issue to the device
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the get lane.
+   * @return the response as returned by the device/sensor via the device service, as for get by
+   *         ids
+   */
+  ResponseEntity<byte[]> getByName(@PathVariable String name, @PathVariable String commandName,
+      @RequestHeader HttpHeaders headers);
+
+  /**
+   * Issue several get commands (by id or name) to the device (referenced by database generated id)
+   * via its device service, concurrently. The device is looked up and its admin state checked once
+   * for the whole request; rate limits and the get lane apply to each command. ServiceException
+   * (HTTP 503) for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404)
+   * if no device exists by the id provided or its profile offers no command by one of the ids or
+   * names. Throws LockedException (HTTP 423) if the device is locked (admin state). Throws
+   * ClientException (HTTP 400) if no commands are given.
+   * 
+   * @param id - the database generated id for the device to read
+   * @param commands - comma separated ids or names of the commands to issue to the device
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the get lane.
+   * @return List of CommandReading, one per command in the order given, with the status and
+   *         response of its get
+   */
+  List<CommandReading> getAll(@PathVariable String id, @RequestParam String commands,
+      @RequestHeader HttpHeaders headers);
+
+  /**
+   * Issue several get commands (by id or name) to the device (by name of the device) via its
+   * device service, concurrently. The device is looked up and its admin state checked once for the
+   * whole request; rate limits and the get lane apply to each command. ServiceException (HTTP 503)
+   * for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404) if no
+   * device exists by the name provided or its profile offers no command by one of the ids or
+   * names. Throws LockedException (HTTP 423) if the device is locked (admin state). Throws
+   * ClientException (HTTP 400) if no commands are given.
+   * 
+   * @param name - the name of the device to read
+   * @param commands - comma separated ids or names of the commands to issue to the device
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the get lane.
+   * @return List of CommandReading, one per command in the order given, with the status and
+   *         response of its get
+   */
+  List<CommandReading> getAllByName(@PathVariable String name, @RequestParam String commands,
+      @RequestHeader HttpHeaders headers);
+
+  /**
+   * Subscribe to the results of the get command referenced by the command id, issued to the device
+   * (referenced by database generated id) every interval milliseconds, as Server-Sent Events named
+   * after the command. Subscribers to the same device, command and interval share one poll, which
+   * goes through the regular get path (locks, rate limits and the get lane) and stops when its last
+   * subscriber disconnects. ServiceException (HTTP 503) for unanticipated or unknown issues
+   * encountered. Throws NotFoundException (HTTP 404) if no device exists by the id provided.
+   * Throws LockedException (HTTP 423) if the device is locked (admin state). Throws
+   * ClientException (HTTP 400) if the interval is below command.subscription.minInterval.
+   * 
+   * @param id - the database generated id for the device to poll
+   * @param commandid - the id (database generated id) of the command to poll
+   * @param interval - milliseconds between polls
+   * @return the event stream
+   */
+  SseEmitter subscribe(@PathVariable String id, @PathVariable String commandid,
+      @RequestParam long interval);
+
+  /**
+   * Subscribe to the results of the get command with the given name, issued to the device with the
+   * given name every interval milliseconds, as Server-Sent Events named after the command.
+   * Subscribers to the same device, command and interval share one poll, which goes through the
+   * regular get path (locks, rate limits and the get lane) and stops when its last subscriber
+   * disconnects. ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
+   * Throws NotFoundException (HTTP 404) if no device exists by the name provided or its profile
+   * offers no command by the command name. Throws LockedException (HTTP 423) if the device is
+   * locked (admin state). Throws ClientException (HTTP 400) if the interval is below
+   * command.subscription.minInterval.
+   * 
+   * @param name - the name of the device to poll
+   * @param commandName - the name of the command to poll
+   * @param interval - milliseconds between polls
+   * @return the event stream
+   */
+  SseEmitter subscribeByName(@PathVariable String name, @PathVariable String commandName,
+      @RequestParam long interval);
+
+  /**
+   * Stream the changes of device admin state, op state, last connected and last reported time as
+   * Server-Sent Events, fed by the state changes made through this service and by the periodic
+   * catalog refresh from metadata. Each change is a state event with the change as JSON and its
+   * sequence as event id. A client reconnecting with Last-Event-ID (or since) is first sent the
+   * changes it missed, or a reset event if they are no longer known, after which it should read
+   * the catalog again. ServiceException (HTTP 503) for unanticipated or unknown issues
+   * encountered. Throws ClientException (HTTP 400) if the resume token is not a sequence.
+   * 
+   * @param lastEventId - provided by the Spring runtime via the request header, the id of the
+   *        last event the client saw
+   * @param since - optional, the sequence of the last change the client saw, for clients that
+   *        can't set Last-Event-ID
+   * @return the event stream
+   */
+  SseEmitter stateChanges(
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+      @RequestParam(required = false) Long since);
 
   /**
    * Set the op state of the device (as referenced by the database generated id of the device) to
    * the state provided (either enabled or disabled). ServiceException (HTTP 503) for unanticipated
    * or unknown issues encountered. Throws NotFoundException (HTTP 404) if no device exists by the
    * id provided.
+   * With state.writebehind.enabled, the state of a cached device is applied at once and written
+   * to metadata in the next batch.
    * 
    * @param id - the database generated id for the device to receive the put command request
    * 
@@ -104,6 +352,8 @@ public interface CommandController {
    * Set the op state of the device (by name of the device) to the state provided (either enabled or
    * disabled). ServiceException (HTTP 503) for unanticipated or unknown issues encountered. Throws
    * NotFoundException (HTTP 404) if no device exists by the name provided.
+   * With state.writebehind.enabled, the state of a cached device is applied at once and written
+   * to metadata in the next batch.
    * 
    * @param name - the name of the device
    * 
@@ -117,6 +367,8 @@ public interface CommandController {
    * the state provided (either locked or unlocked). ServiceException (HTTP 503) for unanticipated
    * or unknown issues encountered. Throws NotFoundException (HTTP 404) if no device exists by the
    * id provided.
+   * With state.writebehind.enabled, the state of a cached device is applied at once and written
+   * to metadata in the next batch.
    * 
    * @param id - the database generated id for the device to receive the put command request
    * 
@@ -129,6 +381,8 @@ public interface CommandController {
    * Set the admin state of the device (by name of the device) to the state provided (either locked
    * or unlocked). ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
    * Throws NotFoundException (HTTP 404) if no device exists by the name provided.
+   * With state.writebehind.enabled, the state of a cached device is applied at once and written
+   * to metadata in the next batch.
    * 
    * @param name - the name of the device
    * 
@@ -137,4 +391,38 @@ public interface CommandController {
    */
   void putAdminStateByName(@PathVariable String name, @PathVariable String adminState);
 
+  /**
+   * Set the op state of a selection of devices (by database generated ids, names and/or label) to
+   * the state provided (either enabled or disabled). The metadata updates are issued in parallel.
+   * Throws ClientException (HTTP 400) if the op state is unknown or no devices are selected.
+   * ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
+   * With sharding on, the devices owned by peer instances are sent on to their owners to update.
+   * 
+   * @param opState - either enabled or disabled as a String
+   * @param forwardedBy - provided by the Spring runtime via the request header, the peer instance
+   *        that sent the update on to this owner of its devices, if any
+   * @param selector - the ids, names and/or label of the devices to update
+   * @return List of StateUpdateResult, one per selected device, with the outcome of its update
+   */
+  List<StateUpdateResult> putOpStates(@PathVariable String opState,
+      @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+      @RequestBody DeviceSelector selector);
+
+  /**
+   * Set the admin state of a selection of devices (by database generated ids, names and/or label)
+   * to the state provided (either locked or unlocked). The metadata updates are issued in parallel.
+   * Throws ClientException (HTTP 400) if the admin state is unknown or no devices are selected.
+   * ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
+   * With sharding on, the devices owned by peer instances are sent on to their owners to update.
+   * 
+   * @param adminState - either locked or unlocked as a String
+   * @param forwardedBy - provided by the Spring runtime via the request header, the peer instance
+   *        that sent the update on to this owner of its devices, if any
+   * @param selector - the ids, names and/or label of the devices to update
+   * @return List of StateUpdateResult, one per selected device, with the outcome of its update
+   */
+  List<StateUpdateResult> putAdminStates(@PathVariable String adminState,
+      @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+      @RequestBody DeviceSelector selector);
+
 }
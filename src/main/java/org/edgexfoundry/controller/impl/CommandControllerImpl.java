@@ -18,19 +18,32 @@
 
 package org.edgexfoundry.controller.impl;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import org.edgexfoundry.cache.DeviceCache;
 import org.edgexfoundry.controller.CommandClient;
 import org.edgexfoundry.controller.CommandController;
 import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.CommandReading;
 import org.edgexfoundry.domain.CommandResponse;
+import org.edgexfoundry.domain.DeviceFilter;
+import org.edgexfoundry.domain.DeviceSelector;
+import org.edgexfoundry.domain.FieldSet;
+import org.edgexfoundry.domain.StateUpdateResult;
 import org.edgexfoundry.domain.meta.AdminState;
 import org.edgexfoundry.domain.meta.Command;
 import org.edgexfoundry.domain.meta.Device;
@@ -41,16 +54,42 @@ import org.edgexfoundry.exception.controller.ClientException;
 import org.edgexfoundry.exception.controller.LockedException;
 import org.edgexfoundry.exception.controller.NotFoundException;
 import org.edgexfoundry.exception.controller.ServiceException;
+import org.edgexfoundry.handler.AppliedValues;
+import org.edgexfoundry.handler.CatalogEncoder;
+import org.edgexfoundry.handler.CommandIndex;
+import org.edgexfoundry.handler.CommandLanes;
+import org.edgexfoundry.handler.CommandSubscriptions;
+import org.edgexfoundry.handler.Compression;
+import org.edgexfoundry.handler.IdempotencyKeyReusedException;
+import org.edgexfoundry.handler.IdempotencyTable;
+import org.edgexfoundry.handler.LastValueStore;
+import org.edgexfoundry.handler.MultiCommandReader;
+import org.edgexfoundry.handler.MultiDeviceReader;
+import org.edgexfoundry.handler.PayloadTranscoder;
+import org.edgexfoundry.handler.Priority;
+import org.edgexfoundry.handler.PutCoalescer;
+import org.edgexfoundry.handler.PutValidator;
+import org.edgexfoundry.handler.RateLimitedException;
+import org.edgexfoundry.handler.RateLimiter;
+import org.edgexfoundry.handler.ShardRouter;
+import org.edgexfoundry.handler.StateFeed;
+import org.edgexfoundry.handler.StateUpdateHandler;
+import org.edgexfoundry.handler.StateWriteBehind;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/v1/device")
@@ -63,6 +102,9 @@ public class CommandControllerImpl implements CommandController {
 
   private static final String ERR_DEVICE_MSG = "Device ";
   private static final String LOG_SETMSG_STR = " be set to ";
+  private static final String ERR_NO_SELECTION_MSG = "No devices selected";
+  private static final String ERR_NO_COMMANDS_MSG = "No commands selected";
+  private static final String TEXT_EVENT_STREAM = "text/event-stream";
 
   @Value("${device.service.protocol}")
   private String protocol;
@@ -70,49 +112,222 @@ public class CommandControllerImpl implements CommandController {
   @Value("${meta.db.device.url}")
   private String url;
 
+  // connect and read timeout (ms) of commands sent to device services, 0 for none
+  @Value("${command.timeout:10000}")
+  private int commandTimeout = 10000;
+
   @Autowired
   DeviceClient deviceClient;
 
   @Autowired
   CommandClient commandClient;
 
-  // TODO - possibly cache some responses so they can be more quickly
-  // returned.
+  @Autowired
+  StateUpdateHandler stateUpdateHandler;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  @Autowired
+  RateLimiter rateLimiter;
+
+  @Autowired
+  PutCoalescer putCoalescer;
+
+  @Autowired
+  CommandLanes commandLanes;
+
+  @Autowired
+  CatalogEncoder catalogEncoder;
+
+  @Autowired
+  PayloadTranscoder payloadTranscoder;
+
+  @Autowired
+  CommandIndex commandIndex;
+
+  @Autowired
+  MultiCommandReader multiCommandReader;
+
+  @Autowired
+  LastValueStore lastValueStore;
+
+  @Autowired
+  CommandSubscriptions commandSubscriptions;
+
+  @Autowired
+  StateFeed stateFeed;
+
+  @Autowired
+  MultiDeviceReader multiDeviceReader;
+
+  @Autowired
+  PutValidator putValidator;
+
+  @Autowired
+  IdempotencyTable idempotencyTable;
+
+  @Autowired
+  StateWriteBehind stateWriteBehind;
+
+  @Autowired
+  AppliedValues appliedValues;
 
   /**
-   * Retrieve a list of (all) devices and their command offerings. Throws ServiceException (HTTP
-   * 503) for unanticipated or unknown issues encountered.
+   * Retrieve a list of (all) devices and their command offerings, or of the devices matching a
+   * filter. Filtered listings are answered from the indexes of the device cache. Throws
+   * ServiceException (HTTP 503) for unanticipated or unknown issues encountered. Throws
+   * ClientException (HTTP 400) if a requested field, view or filtered state is unknown.
    * 
    * @param host - provided by the Spring runtime via the request header, the host address.
-   * @return List of CommandResponse (containing the devices and their commands)
+   * @param fields - optional, comma separated fields to write (for example
+   *        name,commands.name,commands.get.url); unrequested fields are left out.
+   * @param view - optional, urls for the compact view of device name and id and command names, ids
+   *        and URLs.
+   * @param filter - bound from the optional label, service, profile, adminState and
+   *        operatingState query parameters; only devices matching all given are listed. The
+   *        optional comma separated ids and names parameters pick the devices to list, served
+   *        from the device cache and read from metadata when missing.
+   * @return List of CommandResponse (containing the devices and their commands), as JSON or, if
+   *         the client asks for it with the Accept header, CBOR or Smile
    */
   @RequestMapping(method = RequestMethod.GET)
   @Override
-  public List<CommandResponse> devices(@RequestHeader("host") String host) {
+  public List<CommandResponse> devices(@RequestHeader("host") String host,
+      @RequestParam(required = false) String fields,
+      @RequestParam(required = false) String view, DeviceFilter filter) {
+    FieldSet fieldSet = fieldSet(fields, view);
     try {
-      return deviceClient.devices().stream().map(d -> new CommandResponse(d, host))
+      return listDevices(filter).stream().map(d -> response(d, host, fieldSet))
           .collect(Collectors.toList());
+    } catch (ClientException eC) {
+      throw eC;
     } catch (Exception e) {
       logger.error("Error getting command responses:  " + e.getMessage());
       throw new ServiceException(e);
     }
   }
 
+  /**
+   * Retrieve a list of (all) devices and their command offerings, or of the devices matching a
+   * filter, for clients that negotiate a content coding. The list is returned gzip or deflate
+   * compressed when the client accepts either; the encoded full catalog is served without reading
+   * metadata for as long as the device cache is unchanged. Filtered listings are answered from
+   * the indexes of the device cache. Throws ServiceException (HTTP 503) for unanticipated or
+   * unknown issues encountered. Throws ClientException (HTTP 400) if a requested field, view or
+   * filtered state is unknown.
+   * 
+   * @param host - provided by the Spring runtime via the request header, the host address.
+   * @param acceptEncoding - provided by the Spring runtime via the request header, the content
+   *        codings the client accepts.
+   * @param fields - optional, comma separated fields to write (for example
+   *        name,commands.name,commands.get.url); unrequested fields are left out.
+   * @param view - optional, urls for the compact view of device name and id and command names, ids
+   *        and URLs.
+   * @param filter - bound from the optional label, service, profile, adminState and
+   *        operatingState query parameters; only devices matching all given are listed. The
+   *        optional comma separated ids and names parameters pick the devices to list, served
+   *        from the device cache and read from metadata when missing.
+   * @return the JSON encoded list of CommandResponse, compressed if the client accepts it
+   */
+  @RequestMapping(method = RequestMethod.GET, headers = HttpHeaders.ACCEPT_ENCODING,
+      produces = MediaType.APPLICATION_JSON_VALUE)
+  @Override
+  public ResponseEntity<byte[]> encodedDevices(@RequestHeader("host") String host,
+      @RequestHeader(HttpHeaders.ACCEPT_ENCODING) String acceptEncoding,
+      @RequestParam(required = false) String fields,
+      @RequestParam(required = false) String view, DeviceFilter filter) {
+    FieldSet fieldSet = fieldSet(fields, view);
+    try {
+      String coding = Compression.negotiate(acceptEncoding);
+      HttpHeaders headers = new HttpHeaders();
+      headers.setContentType(MediaType.APPLICATION_JSON_UTF8);
+      headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (coding != null) {
+        headers.set(HttpHeaders.CONTENT_ENCODING, coding);
+      }
+      byte[] body = filter == null || filter.isEmpty()
+          ? catalogEncoder.encodeCatalog(host, coding, fieldSet)
+          : catalogEncoder.encodeOnce(listDevices(filter), host, coding, fieldSet);
+      return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    } catch (ClientException eC) {
+      throw eC;
+    } catch (Exception e) {
+      logger.error("Error getting command responses:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Retrieve the command index: for every device name, the get and put URLs of each of its
+   * commands by command name. The index carries the catalog version it was built at (also sent as
+   * the ETag), and is encoded once per catalog version. With since, only the devices changed and
+   * the names removed after that version are returned, or the full index if changes are not known
+   * that far back. Throws ServiceException (HTTP 503) for unanticipated or unknown issues
+   * encountered.
+   * 
+   * @param host - provided by the Spring runtime via the request header, the host address.
+   * @param since - optional, the catalog version of the index the client already holds
+   * @param headers - provided by the Spring runtime, the request headers. If-None-Match with the
+   *        current ETag returns HTTP 304; Accept-Encoding selects gzip or deflate for the full
+   *        index.
+   * @return the JSON encoded index, or the changes to it
+   */
+  @RequestMapping(value = "/index", method = RequestMethod.GET)
+  @Override
+  public ResponseEntity<byte[]> index(@RequestHeader("host") String host,
+      @RequestParam(required = false) Long since, @RequestHeader HttpHeaders headers) {
+    try {
+      String etag = "\"" + commandIndex.version() + "\"";
+      HttpHeaders response = new HttpHeaders();
+      response.setETag(etag);
+      if (etag.equals(headers.getFirst(HttpHeaders.IF_NONE_MATCH))) {
+        return new ResponseEntity<>(response, HttpStatus.NOT_MODIFIED);
+      }
+      response.setContentType(MediaType.APPLICATION_JSON_UTF8);
+      response.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      byte[] body;
+      if (since != null) {
+        body = commandIndex.since(host, since);
+      } else {
+        String coding = Compression.negotiate(headers.getFirst(HttpHeaders.ACCEPT_ENCODING));
+        if (coding != null) {
+          response.set(HttpHeaders.CONTENT_ENCODING, coding);
+        }
+        body = commandIndex.full(host, coding);
+      }
+      return new ResponseEntity<>(body, response, HttpStatus.OK);
+    } catch (Exception e) {
+      logger.error("Error getting command index:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
   /**
    * Retrieve a device (by database generated id) and its command offerings. Throws ServiceException
    * (HTTP 503) for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404)
-   * if no device exists by the id provided.
+   * if no device exists by the id provided. Throws ClientException (HTTP 400) if a requested field
+   * or view is unknown.
    * 
    * @param id - the database generated id for the device
    * @param host - provided by the Spring runtime via the request header, the host address.
-   * @return CommandResponse containing the device and its commands
+   * @param fields - optional, comma separated fields to write (for example
+   *        name,commands.name,commands.get.url); unrequested fields are left out.
+   * @param view - optional, urls for the compact view of device name and id and command names, ids
+   *        and URLs.
+   * @return CommandResponse containing the device and its commands, as JSON or, if the client
+   *         asks for it with the Accept header, CBOR or Smile
    */
   @RequestMapping(value = "/{id}", method = RequestMethod.GET)
   @Override
-  public CommandResponse device(@PathVariable String id, @RequestHeader("host") String host) {
+  public CommandResponse device(@PathVariable String id, @RequestHeader("host") String host,
+      @RequestParam(required = false) String fields,
+      @RequestParam(required = false) String view) {
+    FieldSet fieldSet = fieldSet(fields, view);
     try {
       Device device = deviceClient.device(id);
-      return new CommandResponse(device, host);
+      deviceCache.put(device);
+      return response(device, host, fieldSet);
     } catch (javax.ws.rs.NotFoundException expNotFound) {
       throw new NotFoundException(Device.class.toString(), id);
     } catch (Exception e) {
@@ -124,19 +339,28 @@ public class CommandControllerImpl implements CommandController {
   /**
    * Retrieve a device (by name) and its command offerings. Throws ServiceException (HTTP 503) for
    * unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404) if no device
-   * exists by the name provided.
+   * exists by the name provided. Throws ClientException (HTTP 400) if a requested field or view is
+   * unknown.
    * 
    * @param name - the name of the device
    * @param host - provided by the Spring runtime via the request header, the host address.
-   * @return CommandResponse containing the device and its commands
+   * @param fields - optional, comma separated fields to write (for example
+   *        name,commands.name,commands.get.url); unrequested fields are left out.
+   * @param view - optional, urls for the compact view of device name and id and command names, ids
+   *        and URLs.
+   * @return CommandResponse containing the device and its commands, as JSON or, if the client
+   *         asks for it with the Accept header, CBOR or Smile
    */
   @RequestMapping(value = "/name/{name:.+}", method = RequestMethod.GET)
   @Override
   public CommandResponse deviceByName(@PathVariable String name,
-      @RequestHeader("host") String host) {
+      @RequestHeader("host") String host, @RequestParam(required = false) String fields,
+      @RequestParam(required = false) String view) {
+    FieldSet fieldSet = fieldSet(fields, view);
     try {
       Device device = deviceClient.deviceForName(name);
-      return new CommandResponse(device, host);
+      deviceCache.put(device);
+      return response(device, host, fieldSet);
     } catch (javax.ws.rs.NotFoundException expNotFound) {
       throw new NotFoundException(Device.class.toString(), name);
     } catch (Exception e) {
@@ -150,43 +374,48 @@ public class CommandControllerImpl implements CommandController {
    * database generated id) it is associated to via the device service. ServiceException (HTTP 503)
    * for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404) if no
    * device exists by the id provided. Throws LockedException (HTTP 423) if the device is locked
-   * (admin state).
+   * (admin state). Throws RateLimitedException (HTTP 429) if the device or its device service is
+   * over its command rate limit, or the command's execution lane is full. Throws ClientException
+   * (HTTP 400), without contacting the device, if the body is not a JSON object of the put's
+   * parameters. For commands configured for coalescing, a put superseded by a newer put to the
+   * same device and command before it is sent returns HTTP 202 instead.
    * 
    * @param id - the database generated id for the device to receive the put command request
    * @param commandid - the id (database generated id) of the command to issue to the device
    * @param host - provided by the Spring runtime via the request header, the host address.
    * @param body - JSON data to send with the command request
-   * @return String as returned by the device/sensor via the device service.
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the put lane. A put repeating the
+   *        Idempotency-Key of an earlier put to the device and command is not sent again; it gets
+   *        the earlier put's response (HTTP 400 if its body differs). For commands named in
+   *        command.dedupe.commands, a put of the body last applied is answered without contacting
+   *        the device unless X-Command-Force is true.
+   * @return the response as returned by the device/sensor via the device service. If the device
+   *         service compressed it and the client accepts that coding (Accept-Encoding), it is
+   *         passed through compressed. A JSON response is transcoded to CBOR or Smile if the
+   *         client asks for either ahead of JSON (Accept).
    */
   @RequestMapping(value = "/{id}/command/{commandid}", method = RequestMethod.PUT)
   @Override
-  public ResponseEntity<String> put(@PathVariable String id, @PathVariable String commandid,
-      @RequestBody String body) {
+  public ResponseEntity<byte[]> put(@PathVariable String id, @PathVariable String commandid,
+      @RequestBody String body, @RequestHeader HttpHeaders headers) {
     try {
-      Device device = deviceClient.device(id);
-      Command command = commandClient.command(commandid);
+      Device device = lookupDevice(id);
+      Command command = lookupCommand(device, commandid);
       if (command == null) {
         throw new NotFoundException(Command.class.toString(), commandid);
       }
-      if (device.getAdminState() == AdminState.LOCKED) {
-        logger.info("Request to device:  " + device.getName() + " blocked because it is locked");
-        throw new LockedException(ERR_DEVICE_MSG + device.getName() + " is in admin locked state");
-      }
-      if (device.getOperatingState() == OperatingState.DISABLED) {
-        logger
-            .info("Put request to device:  " + device.getName() + " blocked because it is disable");
-        throw new LockedException(ERR_DEVICE_MSG + device.getName() + " is in disabled op state");
-      }
-      String putURL = getUrl(device, id, command, false);
-      logger.info("Issuing put command to: " + putURL);
-      logger.info("Command message body is:  " + body);
-      return issueCommand(putURL, body, true);
+      return issuePut(device, id, command, body, headers);
     } catch (NotFoundException cmdNF) {
       throw cmdNF;
     } catch (javax.ws.rs.NotFoundException expNotFound) {
       throw new NotFoundException(Device.class.toString(), id);
     } catch (LockedException eL) {
       throw eL;
+    } catch (RateLimitedException eR) {
+      throw eR;
+    } catch (ClientException eC) {
+      throw eC;
     } catch (Exception e) {
       logger.error("Error calling put command:  " + e.getMessage());
       throw new ServiceException(e);
@@ -198,46 +427,333 @@ public class CommandControllerImpl implements CommandController {
    * database generated id) it is associated to via the device service. ServiceException (HTTP 503)
    * for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404) if no
    * device exists by the id provided. Throws LockedException (HTTP 423) if the device is locked
-   * (admin state).
+   * (admin state). Throws RateLimitedException (HTTP 429) if the device or its device service is
+   * over its command rate limit, or the command's execution lane is full, and no last known
+   * value may be served instead.
    * 
    * @param id - the database generated id for the device to receive the put command request
    * @param commandid - the id (database generated id) of the command to issue to the device
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the get lane. Cache-Control
+   *        max-stale=N serves the last known value if no older than N seconds without calling the
+   *        device; stale-if-error=N serves it if the device can't be read.
    * @param host - provided by the Spring runtime via the request header, the host address.
-   * @return String as returned by the device/sensor via the device service.
+   * @return the response as returned by the device/sensor via the device service. If the device
+   *         service compressed it and the client accepts that coding (Accept-Encoding), it is
+   *         passed through compressed. A JSON response is transcoded to CBOR or Smile if the
+   *         client asks for either ahead of JSON (Accept).
    */
   @RequestMapping(value = "/{id}/command/{commandid}", method = RequestMethod.GET)
   @Override
-  public ResponseEntity<String> get(@PathVariable String id, @PathVariable String commandid) {
+  public ResponseEntity<byte[]> get(@PathVariable String id, @PathVariable String commandid,
+      @RequestHeader HttpHeaders headers) {
     try {
-      Device device = deviceClient.device(id);
-      Command command = commandClient.command(commandid);
+      Device device = lookupDevice(id);
+      Command command = lookupCommand(device, commandid);
       if (command == null) {
         throw new NotFoundException(Command.class.toString(), commandid);
       }
-      if (device.getAdminState() == AdminState.LOCKED) {
-        logger.info("Request to device:  " + device.getName() + " blocked because it is locked");
-        throw new LockedException(ERR_DEVICE_MSG + device.getName() + " is in admin locked state");
-      }
-      String getUrl = getUrl(device, id, command, true);
-      logger.info("Issuing get command to: " + getUrl);
-      return issueCommand(getUrl, null, false);
+      return issueGet(device, id, command, headers);
     } catch (NotFoundException cmdNF) {
       throw cmdNF;
     } catch (javax.ws.rs.NotFoundException expNotFound) {
       throw new NotFoundException(Device.class.toString(), id);
     } catch (LockedException eL) {
       throw eL;
+    } catch (RateLimitedException eR) {
+      throw eR;
     } catch (Exception e) {
       logger.error("Error calling get command:  " + e.getMessage());
       throw new ServiceException(e);
     }
   }
 
+  /**
+   * Issue the put command with the given name to the device with the given name, via its device
+   * service. Both names are resolved against the cached devices and their profiles' commands, so
+   * no metadata call is made when the device is cached. Locks, op state, rate limits, lanes and
+   * coalescing apply as for put by ids. ServiceException (HTTP 503) for unanticipated or unknown
+   * issues encountered. Throws NotFoundException (HTTP 404) if no device exists by the name
+   * provided or its profile offers no command by the command name. Throws LockedException (HTTP
+   * 423) if the device is locked (admin state) or disabled (op state). Throws RateLimitedException
+   * (HTTP 429) if the device or its device service is over its command rate limit, or the put lane
+   * is full. Throws ClientException (HTTP 400) if the body is not a JSON object of the put's
+   * parameters.
+   * 
+   * @param name - the name of the device to receive the put command request
+   * @param commandName - the name of the command to issue to the device
+   * @param body - JSON data to send with the command request
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the put lane. A put repeating the
+   *        Idempotency-Key of an earlier put to the device and command is not sent again; it gets
+   *        the earlier put's response (HTTP 400 if its body differs). For commands named in
+   *        command.dedupe.commands, a put of the body last applied is answered without contacting
+   *        the device unless X-Command-Force is true.
+   * @return the response as returned by the device/sensor via the device service, as for put by
+   *         ids
+   */
+  @RequestMapping(value = "/name/{name:.+}/command/{commandName:.+}", method = RequestMethod.PUT)
+  @Override
+  public ResponseEntity<byte[]> putByName(@PathVariable String name,
+      @PathVariable String commandName, @RequestBody String body,
+      @RequestHeader HttpHeaders headers) {
+    try {
+      Device device = lookupDeviceByName(name);
+      Command command = lookupCommandByName(device, commandName);
+      return issuePut(device, device.getId(), command, body, headers);
+    } catch (NotFoundException cmdNF) {
+      throw cmdNF;
+    } catch (javax.ws.rs.NotFoundException expNotFound) {
+      throw new NotFoundException(Device.class.toString(), name);
+    } catch (LockedException eL) {
+      throw eL;
+    } catch (RateLimitedException eR) {
+      throw eR;
+    } catch (ClientException eC) {
+      throw eC;
+    } catch (Exception e) {
+      logger.error("Error calling put command:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Issue the get command with the given name to the device with the given name, via its device
+   * service. Both names are resolved against the cached devices and their profiles' commands, so
+   * no metadata call is made when the device is cached. Locks, rate limits and lanes apply as for
+   * get by ids. ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
+   * Throws NotFoundException (HTTP 404) if no device exists by the name provided or its profile
+   * offers no command by the command name. Throws LockedException (HTTP 423) if the device is
+   * locked (admin state). Throws RateLimitedException (HTTP 429) if the device or its device
+   * service is over its command rate limit, or the get lane is full.
+   * 
+   * @param name - the name of the device to receive the get command request
+   * @param commandName - the name of the command to issue to the device
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the get lane.
+   * @return the response as returned by the device/sensor via the device service, as for get by
+   *         ids
+   */
+  @RequestMapping(value = "/name/{name:.+}/command/{commandName:.+}", method = RequestMethod.GET)
+  @Override
+  public ResponseEntity<byte[]> getByName(@PathVariable String name,
+      @PathVariable String commandName, @RequestHeader HttpHeaders headers) {
+    try {
+      Device device = lookupDeviceByName(name);
+      Command command = lookupCommandByName(device, commandName);
+      return issueGet(device, device.getId(), command, headers);
+    } catch (NotFoundException cmdNF) {
+      throw cmdNF;
+    } catch (javax.ws.rs.NotFoundException expNotFound) {
+      throw new NotFoundException(Device.class.toString(), name);
+    } catch (LockedException eL) {
+      throw eL;
+    } catch (RateLimitedException eR) {
+      throw eR;
+    } catch (Exception e) {
+      logger.error("Error calling get command:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Issue several get commands (by id or name) to the device (referenced by database generated id)
+   * via its device service, concurrently. The device is looked up and its admin state checked once
+   * for the whole request; rate limits and the get lane apply to each command. ServiceException
+   * (HTTP 503) for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404)
+   * if no device exists by the id provided or its profile offers no command by one of the ids or
+   * names. Throws LockedException (HTTP 423) if the device is locked (admin state). Throws
+   * ClientException (HTTP 400) if no commands are given.
+   * 
+   * @param id - the database generated id for the device to read
+   * @param commands - comma separated ids or names of the commands to issue to the device
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the get lane.
+   * @return List of CommandReading, one per command in the order given, with the status and
+   *         response of its get
+   */
+  @RequestMapping(value = "/{id}/command", method = RequestMethod.GET)
+  @Override
+  public List<CommandReading> getAll(@PathVariable String id, @RequestParam String commands,
+      @RequestHeader HttpHeaders headers) {
+    try {
+      Device device = lookupDevice(id);
+      return readCommands(device, id, commands, headers);
+    } catch (NotFoundException cmdNF) {
+      throw cmdNF;
+    } catch (javax.ws.rs.NotFoundException expNotFound) {
+      throw new NotFoundException(Device.class.toString(), id);
+    } catch (LockedException eL) {
+      throw eL;
+    } catch (ClientException eC) {
+      throw eC;
+    } catch (Exception e) {
+      logger.error("Error calling get commands:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Issue several get commands (by id or name) to the device (by name of the device) via its
+   * device service, concurrently. The device is looked up and its admin state checked once for the
+   * whole request; rate limits and the get lane apply to each command. ServiceException (HTTP 503)
+   * for unanticipated or unknown issues encountered. Throws NotFoundException (HTTP 404) if no
+   * device exists by the name provided or its profile offers no command by one of the ids or
+   * names. Throws LockedException (HTTP 423) if the device is locked (admin state). Throws
+   * ClientException (HTTP 400) if no commands are given.
+   * 
+   * @param name - the name of the device to read
+   * @param commands - comma separated ids or names of the commands to issue to the device
+   * @param headers - provided by the Spring runtime, the request headers. X-Command-Priority (high,
+   *        normal or low) selects the priority class within the get lane.
+   * @return List of CommandReading, one per command in the order given, with the status and
+   *         response of its get
+   */
+  @RequestMapping(value = "/name/{name:.+}/command", method = RequestMethod.GET)
+  @Override
+  public List<CommandReading> getAllByName(@PathVariable String name,
+      @RequestParam String commands, @RequestHeader HttpHeaders headers) {
+    try {
+      Device device = lookupDeviceByName(name);
+      return readCommands(device, device.getId(), commands, headers);
+    } catch (NotFoundException cmdNF) {
+      throw cmdNF;
+    } catch (javax.ws.rs.NotFoundException expNotFound) {
+      throw new NotFoundException(Device.class.toString(), name);
+    } catch (LockedException eL) {
+      throw eL;
+    } catch (ClientException eC) {
+      throw eC;
+    } catch (Exception e) {
+      logger.error("Error calling get commands:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Subscribe to the results of the get command referenced by the command id, issued to the device
+   * (referenced by database generated id) every interval milliseconds, as Server-Sent Events named
+   * after the command. Subscribers to the same device, command and interval share one poll, which
+   * goes through the regular get path (locks, rate limits and the get lane) and stops when its last
+   * subscriber disconnects. ServiceException (HTTP 503) for unanticipated or unknown issues
+   * encountered. Throws NotFoundException (HTTP 404) if no device exists by the id provided.
+   * Throws LockedException (HTTP 423) if the device is locked (admin state). Throws
+   * ClientException (HTTP 400) if the interval is below command.subscription.minInterval.
+   * 
+   * @param id - the database generated id for the device to poll
+   * @param commandid - the id (database generated id) of the command to poll
+   * @param interval - milliseconds between polls
+   * @return the event stream
+   */
+  @RequestMapping(value = "/{id}/command/{commandid}/subscription", method = RequestMethod.GET,
+      produces = TEXT_EVENT_STREAM)
+  @Override
+  public SseEmitter subscribe(@PathVariable String id, @PathVariable String commandid,
+      @RequestParam long interval) {
+    try {
+      Device device = lookupDevice(id);
+      Command command = lookupCommand(device, commandid);
+      if (command == null) {
+        throw new NotFoundException(Command.class.toString(), commandid);
+      }
+      return subscribe(device, id, command, interval);
+    } catch (NotFoundException cmdNF) {
+      throw cmdNF;
+    } catch (javax.ws.rs.NotFoundException expNotFound) {
+      throw new NotFoundException(Device.class.toString(), id);
+    } catch (LockedException eL) {
+      throw eL;
+    } catch (ClientException eC) {
+      throw eC;
+    } catch (Exception e) {
+      logger.error("Error subscribing to get command:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Subscribe to the results of the get command with the given name, issued to the device with the
+   * given name every interval milliseconds, as Server-Sent Events named after the command.
+   * Subscribers to the same device, command and interval share one poll, which goes through the
+   * regular get path (locks, rate limits and the get lane) and stops when its last subscriber
+   * disconnects. ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
+   * Throws NotFoundException (HTTP 404) if no device exists by the name provided or its profile
+   * offers no command by the command name. Throws LockedException (HTTP 423) if the device is
+   * locked (admin state). Throws ClientException (HTTP 400) if the interval is below
+   * command.subscription.minInterval.
+   * 
+   * @param name - the name of the device to poll
+   * @param commandName - the name of the command to poll
+   * @param interval - milliseconds between polls
+   * @return the event stream
+   */
+  @RequestMapping(value = "/name/{name:.+}/command/{commandName:.+}/subscription",
+      method = RequestMethod.GET, produces = TEXT_EVENT_STREAM)
+  @Override
+  public SseEmitter subscribeByName(@PathVariable String name, @PathVariable String commandName,
+      @RequestParam long interval) {
+    try {
+      Device device = lookupDeviceByName(name);
+      Command command = lookupCommandByName(device, commandName);
+      return subscribe(device, device.getId(), command, interval);
+    } catch (NotFoundException cmdNF) {
+      throw cmdNF;
+    } catch (javax.ws.rs.NotFoundException expNotFound) {
+      throw new NotFoundException(Device.class.toString(), name);
+    } catch (LockedException eL) {
+      throw eL;
+    } catch (ClientException eC) {
+      throw eC;
+    } catch (Exception e) {
+      logger.error("Error subscribing to get command:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Stream the changes of device admin state, op state, last connected and last reported time as
+   * Server-Sent Events, fed by the state changes made through this service and by the periodic
+   * catalog refresh from metadata. Each change is a state event with the change as JSON and its
+   * sequence as event id. A client reconnecting with Last-Event-ID (or since) is first sent the
+   * changes it missed, or a reset event if they are no longer known, after which it should read
+   * the catalog again. ServiceException (HTTP 503) for unanticipated or unknown issues
+   * encountered. Throws ClientException (HTTP 400) if the resume token is not a sequence.
+   * 
+   * @param lastEventId - provided by the Spring runtime via the request header, the id of the
+   *        last event the client saw
+   * @param since - optional, the sequence of the last change the client saw, for clients that
+   *        can't set Last-Event-ID
+   * @return the event stream
+   */
+  @RequestMapping(value = "/state/feed", method = RequestMethod.GET,
+      produces = TEXT_EVENT_STREAM)
+  @Override
+  public SseEmitter stateChanges(
+      @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+      @RequestParam(required = false) Long since) {
+    Long resumeAfter = since;
+    if (lastEventId != null && !lastEventId.trim().isEmpty()) {
+      try {
+        resumeAfter = Long.valueOf(lastEventId.trim());
+      } catch (NumberFormatException e) {
+        throw new ClientException("Unknown resume token:  " + lastEventId);
+      }
+    }
+    try {
+      return stateFeed.subscribe(resumeAfter);
+    } catch (Exception e) {
+      logger.error("Error subscribing to state changes:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
   /**
    * Set the op state of the device (as referenced by the database generated id of the device) to
    * the state provided (either enabled or disabled). ServiceException (HTTP 503) for unanticipated
    * or unknown issues encountered. Throws NotFoundException (HTTP 404) if no device exists by the
    * id provided.
+   * With state.writebehind.enabled, the state of a cached device is applied at once and written
+   * to metadata in the next batch.
    * 
    * @param id - the database generated id for the device to receive the put command request
    * 
@@ -248,7 +764,12 @@ public class CommandControllerImpl implements CommandController {
   @Override
   public void putOpState(@PathVariable String id, @PathVariable String opState) {
     try {
+      if (writeBehindOpState(id, false, opState)) {
+        logger.info("Queued op state for device: " + id + LOG_SETMSG_STR + opState);
+        return;
+      }
       deviceClient.updateOpState(id, opState);
+      deviceCache.setOpState(id, opState);
       logger.info("Requesting op state for device: " + id + LOG_SETMSG_STR + opState);
     } catch (javax.ws.rs.NotFoundException expNotFound) {
       throw new NotFoundException(Device.class.toString(), id);
@@ -262,6 +783,8 @@ public class CommandControllerImpl implements CommandController {
    * Set the op state of the device (by name of the device) to the state provided (either enabled or
    * disabled). ServiceException (HTTP 503) for unanticipated or unknown issues encountered. Throws
    * NotFoundException (HTTP 404) if no device exists by the name provided.
+   * With state.writebehind.enabled, the state of a cached device is applied at once and written
+   * to metadata in the next batch.
    * 
    * @param name - the name of the device
    * 
@@ -272,7 +795,12 @@ public class CommandControllerImpl implements CommandController {
   @Override
   public void putOpStateByName(@PathVariable String name, @PathVariable String opState) {
     try {
+      if (writeBehindOpState(name, true, opState)) {
+        logger.info("Queued op state for device: " + name + LOG_SETMSG_STR + opState);
+        return;
+      }
       deviceClient.updateOpStateByName(name, opState);
+      deviceCache.setOpStateForName(name, opState);
       logger.info("Requesting op state for device: " + name + LOG_SETMSG_STR + opState);
     } catch (javax.ws.rs.NotFoundException expNotFound) {
       throw new NotFoundException(Device.class.toString(), name);
@@ -287,6 +815,8 @@ public class CommandControllerImpl implements CommandController {
    * the state provided (either locked or unlocked). ServiceException (HTTP 503) for unanticipated
    * or unknown issues encountered. Throws NotFoundException (HTTP 404) if no device exists by the
    * id provided.
+   * With state.writebehind.enabled, the state of a cached device is applied at once and written
+   * to metadata in the next batch.
    * 
    * @param id - the database generated id for the device to receive the put command request
    * 
@@ -297,7 +827,12 @@ public class CommandControllerImpl implements CommandController {
   @Override
   public void putAdminState(@PathVariable String id, @PathVariable String adminState) {
     try {
+      if (writeBehindAdminState(id, false, adminState)) {
+        logger.info("Queued admin state for device: " + id + LOG_SETMSG_STR + adminState);
+        return;
+      }
       deviceClient.updateAdminState(id, adminState);
+      deviceCache.setAdminState(id, adminState);
       logger.info("Requesting admin state for device: " + id + LOG_SETMSG_STR + adminState);
     } catch (javax.ws.rs.NotFoundException expNotFound) {
       throw new NotFoundException(Device.class.toString(), id);
@@ -311,6 +846,8 @@ public class CommandControllerImpl implements CommandController {
    * Set the admin state of the device (by name of the device) to the state provided (either locked
    * or unlocked). ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
    * Throws NotFoundException (HTTP 404) if no device exists by the name provided.
+   * With state.writebehind.enabled, the state of a cached device is applied at once and written
+   * to metadata in the next batch.
    * 
    * @param name - the name of the device
    * 
@@ -321,7 +858,12 @@ public class CommandControllerImpl implements CommandController {
   @Override
   public void putAdminStateByName(@PathVariable String name, @PathVariable String adminState) {
     try {
+      if (writeBehindAdminState(name, true, adminState)) {
+        logger.info("Queued admin state for device: " + name + LOG_SETMSG_STR + adminState);
+        return;
+      }
       deviceClient.updateAdminStateByName(name, adminState);
+      deviceCache.setAdminStateForName(name, adminState);
       logger.info("Requesting admin state for device: " + name + LOG_SETMSG_STR + adminState);
     } catch (javax.ws.rs.NotFoundException expNotFound) {
       throw new NotFoundException(Device.class.toString(), name);
@@ -331,6 +873,359 @@ public class CommandControllerImpl implements CommandController {
     }
   }
 
+  /**
+   * Set the op state of a selection of devices (by database generated ids, names and/or label) to
+   * the state provided (either enabled or disabled). The metadata updates are issued in parallel.
+   * Throws ClientException (HTTP 400) if the op state is unknown or no devices are selected.
+   * ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
+   * With sharding on, the devices owned by peer instances are sent on to their owners to update.
+   * 
+   * @param opState - either enabled or disabled as a String
+   * @param forwardedBy - provided by the Spring runtime via the request header, the peer instance
+   *        that sent the update on to this owner of its devices, if any
+   * @param selector - the ids, names and/or label of the devices to update
+   * @return List of StateUpdateResult, one per selected device, with the outcome of its update
+   */
+  @RequestMapping(value = "/opstate/{opState}", method = RequestMethod.PUT)
+  @Override
+  public List<StateUpdateResult> putOpStates(@PathVariable String opState,
+      @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+      @RequestBody DeviceSelector selector) {
+    if (selector == null || selector.isEmpty()) {
+      throw new ClientException(ERR_NO_SELECTION_MSG);
+    }
+    OperatingState state;
+    try {
+      state = OperatingState.valueOf(opState.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new ClientException("Unknown op state:  " + opState);
+    }
+    try {
+      logger.info("Requesting op state for selected devices" + LOG_SETMSG_STR + opState);
+      return stateUpdateHandler.updateOpStates(selector, state, forwardedBy != null);
+    } catch (Exception e) {
+      logger.error("Error calling bulk set of op state:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Set the admin state of a selection of devices (by database generated ids, names and/or label)
+   * to the state provided (either locked or unlocked). The metadata updates are issued in parallel.
+   * Throws ClientException (HTTP 400) if the admin state is unknown or no devices are selected.
+   * ServiceException (HTTP 503) for unanticipated or unknown issues encountered.
+   * With sharding on, the devices owned by peer instances are sent on to their owners to update.
+   * 
+   * @param adminState - either locked or unlocked as a String
+   * @param forwardedBy - provided by the Spring runtime via the request header, the peer instance
+   *        that sent the update on to this owner of its devices, if any
+   * @param selector - the ids, names and/or label of the devices to update
+   * @return List of StateUpdateResult, one per selected device, with the outcome of its update
+   */
+  @RequestMapping(value = "/adminstate/{adminState}", method = RequestMethod.PUT)
+  @Override
+  public List<StateUpdateResult> putAdminStates(@PathVariable String adminState,
+      @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+      @RequestBody DeviceSelector selector) {
+    if (selector == null || selector.isEmpty()) {
+      throw new ClientException(ERR_NO_SELECTION_MSG);
+    }
+    AdminState state;
+    try {
+      state = AdminState.valueOf(adminState.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      throw new ClientException("Unknown admin state:  " + adminState);
+    }
+    try {
+      logger.info("Requesting admin state for selected devices" + LOG_SETMSG_STR + adminState);
+      return stateUpdateHandler.updateAdminStates(selector, state, forwardedBy != null);
+    } catch (Exception e) {
+      logger.error("Error calling bulk set of admin state:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+
+  /**
+   * Report a command turned away by a rate limit as HTTP 429, telling the client when to retry.
+   */
+  @ExceptionHandler(RateLimitedException.class)
+  public ResponseEntity<String> rateLimited(RateLimitedException e) {
+    logger.info(e.getMessage());
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+        .header("Retry-After", Long.toString(e.getRetryAfter())).body(e.getMessage());
+  }
+
+  // true if the state was applied locally and queued to be written behind to metadata
+  private boolean writeBehindAdminState(String key, boolean byName, String adminState) {
+    AdminState state = writeBehindState(AdminState.class, key, byName, adminState);
+    if (state == null || !stateWriteBehind.offerAdminState(key, byName, state)) {
+      return false;
+    }
+    if (byName) {
+      deviceCache.setAdminStateForName(key, adminState);
+    } else {
+      deviceCache.setAdminState(key, adminState);
+    }
+    return true;
+  }
+
+  private boolean writeBehindOpState(String key, boolean byName, String opState) {
+    OperatingState state = writeBehindState(OperatingState.class, key, byName, opState);
+    if (state == null || !stateWriteBehind.offerOpState(key, byName, state)) {
+      return false;
+    }
+    if (byName) {
+      deviceCache.setOpStateForName(key, opState);
+    } else {
+      deviceCache.setOpState(key, opState);
+    }
+    return true;
+  }
+
+  // unknown devices and states are left to metadata to report
+  private <E extends Enum<E>> E writeBehindState(Class<E> type, String key, boolean byName,
+      String state) {
+    if (!stateWriteBehind.isEnabled()
+        || (byName ? deviceCache.deviceForName(key) : deviceCache.device(key)) == null) {
+      return null;
+    }
+    try {
+      return Enum.valueOf(type, state.toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  // every device from metadata, or the picked and/or matching devices
+  private List<Device> listDevices(DeviceFilter filter)
+      throws ExecutionException, InterruptedException {
+    if (filter == null || filter.isEmpty()) {
+      return deviceClient.devices();
+    }
+    AdminState adminState = null;
+    OperatingState operatingState = null;
+    try {
+      if (filter.getAdminState() != null && !filter.getAdminState().isEmpty()) {
+        adminState = AdminState.valueOf(filter.getAdminState().toUpperCase());
+      }
+      if (filter.getOperatingState() != null && !filter.getOperatingState().isEmpty()) {
+        operatingState = OperatingState.valueOf(filter.getOperatingState().toUpperCase());
+      }
+    } catch (IllegalArgumentException e) {
+      throw new ClientException("Unknown state:  " + e.getMessage());
+    }
+    String label = emptyToNull(filter.getLabel());
+    String service = emptyToNull(filter.getService());
+    String profile = emptyToNull(filter.getProfile());
+    if (filter.isSelection()) {
+      List<Device> picked = multiDeviceReader.read(filter.getIds(), filter.getNames());
+      if (label == null && service == null && profile == null && adminState == null
+          && operatingState == null) {
+        return picked;
+      }
+      Set<Device> matching = Collections.newSetFromMap(new IdentityHashMap<>());
+      matching.addAll(deviceCache.select(label, service, profile, adminState, operatingState));
+      return picked.stream().filter(matching::contains).collect(Collectors.toList());
+    }
+    if (!deviceCache.isLoaded()) {
+      long asOf = System.nanoTime();
+      deviceCache.refresh(deviceClient.devices(), asOf);
+    }
+    return deviceCache.select(label, service, profile, adminState, operatingState);
+  }
+
+  private static String emptyToNull(String value) {
+    return value == null || value.isEmpty() ? null : value;
+  }
+
+  // the device with the states tracked by the cache, which may be newer than those it holds
+  private CommandResponse response(Device device, String host, FieldSet fieldSet) {
+    return new CommandResponse(device, host, fieldSet, deviceCache.adminState(device),
+        deviceCache.operatingState(device));
+  }
+
+  private FieldSet fieldSet(String fields, String view) {
+    try {
+      return FieldSet.parse(fields, view);
+    } catch (IllegalArgumentException e) {
+      throw new ClientException(e.getMessage());
+    }
+  }
+
+  private Device lookupDevice(String id) {
+    Device device = deviceCache.device(id);
+    if (device == null) {
+      device = deviceClient.device(id);
+      deviceCache.put(device);
+    }
+    return device;
+  }
+
+  private Command lookupCommand(Device device, String commandid) {
+    Command command = deviceCache.command(device, commandid);
+    if (command == null) {
+      command = commandClient.command(commandid);
+    }
+    return command;
+  }
+
+  private Device lookupDeviceByName(String name) {
+    Device device = deviceCache.deviceForName(name);
+    if (device == null) {
+      device = deviceClient.deviceForName(name);
+      deviceCache.put(device);
+    }
+    return device;
+  }
+
+  private Command lookupCommandByName(Device device, String commandName) {
+    Command command = deviceCache.commandForName(device, commandName);
+    if (command == null) {
+      throw new NotFoundException(Command.class.toString(), commandName);
+    }
+    return command;
+  }
+
+  private Map<String, Command> lookupCommands(Device device, String commands) {
+    Map<String, Command> resolved = new LinkedHashMap<>();
+    for (String key : commands.split(",")) {
+      key = key.trim();
+      if (key.isEmpty() || resolved.containsKey(key)) {
+        continue;
+      }
+      Command command = deviceCache.commandForName(device, key);
+      if (command == null) {
+        command = deviceCache.command(device, key);
+      }
+      if (command == null) {
+        throw new NotFoundException(Command.class.toString(), key);
+      }
+      resolved.put(key, command);
+    }
+    if (resolved.isEmpty()) {
+      throw new ClientException(ERR_NO_COMMANDS_MSG);
+    }
+    return resolved;
+  }
+
+  private void checkUnlocked(Device device) {
+    if (deviceCache.adminState(device) == AdminState.LOCKED) {
+      logger.info("Request to device:  " + device.getName() + " blocked because it is locked");
+      throw new LockedException(ERR_DEVICE_MSG + device.getName() + " is in admin locked state");
+    }
+  }
+
+  private ResponseEntity<byte[]> issuePut(Device device, String id, Command command, String body,
+      HttpHeaders headers) throws IOException {
+    checkUnlocked(device);
+    if (deviceCache.operatingState(device) == OperatingState.DISABLED) {
+      logger.info("Put request to device:  " + device.getName() + " blocked because it is disable");
+      throw new LockedException(ERR_DEVICE_MSG + device.getName() + " is in disabled op state");
+    }
+    String invalid = putValidator.validate(command, body);
+    if (invalid != null) {
+      logger.info("Put request to device:  " + device.getName() + " rejected:  " + invalid);
+      throw new ClientException(invalid);
+    }
+    Priority priority = Priority.parse(headers.getFirst(Priority.HEADER));
+    String acceptEncoding = headers.getFirst(HttpHeaders.ACCEPT_ENCODING);
+    MediaType binary = payloadTranscoder.negotiate(headers.getFirst(HttpHeaders.ACCEPT));
+    ResponseEntity<byte[]> response = appliedValues.unchanged(id, command, body, headers);
+    if (response != null) {
+      logger.info("Put request to device:  " + device.getName() + " skipped, "
+          + command.getName() + " already set to the body");
+      return payloadTranscoder.transcode(response, binary);
+    }
+    String idempotencyKey = headers.getFirst(IdempotencyTable.HEADER);
+    try {
+      response = idempotencyTable.submit(idempotencyKey, id, command, body,
+          once -> sendPut(device, id, command, once, priority, acceptEncoding));
+    } catch (IdempotencyKeyReusedException e) {
+      throw new ClientException(e.getMessage());
+    }
+    return payloadTranscoder.transcode(response, binary);
+  }
+
+  // issue the put through the coalescer, rate limiter and put lane, recording what was applied
+  private ResponseEntity<byte[]> sendPut(Device device, String id, Command command, String body,
+      Priority priority, String acceptEncoding) throws IOException {
+    String putURL = getUrl(device, id, command, false);
+    try {
+      ResponseEntity<byte[]> response = putCoalescer.submit(id, command, body, latest -> {
+        rateLimiter.acquire(device);
+        return commandLanes.put().run(priority, lanedBody -> {
+          logger.info("Issuing put command to: " + putURL);
+          logger.info("Command message body is:  " + lanedBody);
+          return issueCommand(id, putURL, lanedBody, true, acceptEncoding);
+        }, latest);
+      });
+      appliedValues.record(id, command, body, response);
+      return response;
+    } catch (IOException | RuntimeException e) {
+      appliedValues.forget(id, command);
+      throw e;
+    }
+  }
+
+  private ResponseEntity<byte[]> issueGet(Device device, String id, Command command,
+      HttpHeaders headers) throws IOException {
+    checkUnlocked(device);
+    Priority priority = Priority.parse(headers.getFirst(Priority.HEADER));
+    String acceptEncoding = headers.getFirst(HttpHeaders.ACCEPT_ENCODING);
+    String cacheControl = headers.getFirst(HttpHeaders.CACHE_CONTROL);
+    MediaType binary = payloadTranscoder.negotiate(headers.getFirst(HttpHeaders.ACCEPT));
+    ResponseEntity<byte[]> response =
+        lastValueStore.fresh(id, command.getName(), cacheControl, acceptEncoding);
+    if (response == null) {
+      try {
+        response = sendGet(device, id, command, priority, acceptEncoding);
+      } catch (IOException | RateLimitedException e) {
+        response = lastValueStore.fallback(id, command.getName(), cacheControl, acceptEncoding);
+        if (response == null) {
+          throw e;
+        }
+        logger.info("Serving last known value of " + command.getName() + " for device:  "
+            + device.getName() + " after:  " + e.getMessage());
+      }
+    }
+    return payloadTranscoder.transcode(response, binary);
+  }
+
+  private List<CommandReading> readCommands(Device device, String id, String commands,
+      HttpHeaders headers) {
+    Map<String, Command> resolved = lookupCommands(device, commands);
+    checkUnlocked(device);
+    Priority priority = Priority.parse(headers.getFirst(Priority.HEADER));
+    return multiCommandReader.read(resolved,
+        command -> noBody -> sendGet(device, id, command, priority, null));
+  }
+
+  // issue the get through the rate limiter and get lane, recording a successful result
+  private ResponseEntity<byte[]> sendGet(Device device, String id, Command command,
+      Priority priority, String acceptEncoding) throws IOException {
+    String getUrl = getUrl(device, id, command, true);
+    rateLimiter.acquire(device);
+    return commandLanes.get().run(priority, noBody -> {
+      logger.info("Issuing get command to: " + getUrl);
+      long start = System.nanoTime();
+      ResponseEntity<byte[]> response = issueCommand(id, getUrl, null, false, acceptEncoding);
+      lastValueStore.record(id, command.getName(), response,
+          TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+      return response;
+    }, null);
+  }
+
+  private SseEmitter subscribe(Device device, String id, Command command, long interval) {
+    checkUnlocked(device);
+    try {
+      // each poll looks the device up again, picking up lock and service changes
+      return commandSubscriptions.subscribe(id, command.getName(), interval,
+          () -> issueGet(lookupDevice(id), id, command, new HttpHeaders()));
+    } catch (IllegalArgumentException e) {
+      throw new ClientException(e.getMessage());
+    }
+  }
+
   private String getUrl(Device device, String deviceId, Command command, boolean isGet) {
     DeviceService service = device.getService();
     if (service != null && service.getAddressable() != null) {
@@ -356,26 +1251,53 @@ public class CommandControllerImpl implements CommandController {
       throw new ClientException("Device Service is not properly addressable");
   }
 
-  private ResponseEntity<String> issueCommand(String url, String body, boolean isPut)
-      throws IOException {
+  private ResponseEntity<byte[]> issueCommand(String deviceId, String url, String body,
+      boolean isPut, String acceptEncoding) throws IOException {
+    try {
+      return issueCommand(url, body, isPut, acceptEncoding);
+    } catch (IOException e) {
+      // the device service may have moved; re-read the device on next use
+      deviceCache.evict(deviceId);
+      throw e;
+    }
+  }
+
+  private ResponseEntity<byte[]> issueCommand(String url, String body, boolean isPut,
+      String acceptEncoding) throws IOException {
     URL command = new URL(url);
     HttpURLConnection con = (HttpURLConnection) command.openConnection();
+    // a blocked read ignores interrupts, so a hung device must time out
+    con.setConnectTimeout(commandTimeout);
+    con.setReadTimeout(commandTimeout);
+    con.setRequestProperty(HttpHeaders.ACCEPT_ENCODING, Compression.ACCEPTED);
     if (isPut) {
+      byte[] data = body.getBytes(StandardCharsets.UTF_8);
       con.setRequestMethod("PUT");
       con.setDoOutput(true);
       con.setRequestProperty("Content-Type", "application/json");
-      con.setRequestProperty("Content-Length", Integer.toString(body.length()));
+      con.setRequestProperty("Content-Length", Integer.toString(data.length));
       OutputStream os = con.getOutputStream();
-      os.write(body.getBytes());
+      os.write(data);
+    }
+    byte[] response;
+    try (InputStream res = con.getInputStream()) {
+      response = Compression.readAll(res);
     }
-    BufferedReader res = new BufferedReader(new InputStreamReader(con.getInputStream()));
-    StringBuilder response = new StringBuilder();
-    for (String responseLine = res.readLine(); responseLine != null; responseLine =
-        res.readLine()) {
-      response.append(responseLine);
+    HttpHeaders headers = new HttpHeaders();
+    String contentType = con.getContentType();
+    headers.set(HttpHeaders.CONTENT_TYPE,
+        contentType == null ? MediaType.TEXT_PLAIN_VALUE : contentType);
+    String coding = con.getContentEncoding();
+    if (Compression.isSupported(coding)) {
+      headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (Compression.accepts(acceptEncoding, coding)) {
+        // forward as is; the client decompresses
+        headers.set(HttpHeaders.CONTENT_ENCODING, coding);
+      } else {
+        response = Compression.decompress(response, coding);
+      }
     }
-    res.close();
-    return new ResponseEntity<>(response.toString(), HttpStatus.OK);
+    return new ResponseEntity<>(response, headers, HttpStatus.OK);
   }
 
 }
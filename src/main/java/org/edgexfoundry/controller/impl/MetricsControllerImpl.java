@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.controller.impl;
+
+import java.util.Map;
+
+import org.edgexfoundry.controller.MetricsController;
+import org.edgexfoundry.exception.controller.ServiceException;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/metrics")
+public class MetricsControllerImpl implements MetricsController {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(MetricsControllerImpl.class);
+
+  @Autowired
+  CommandMetrics metrics;
+
+  /**
+   * Report the service's counters and gauges (rate limiting, queueing and the like).
+   * 
+   * @throws ServcieException (HTTP 503) for unknown or unanticipated issues
+   * @return map of metric name to its current value, sorted by name
+   */
+  @RequestMapping(method = RequestMethod.GET)
+  @Override
+  public Map<String, Number> metrics() {
+    try {
+      return metrics.snapshot();
+    } catch (Exception e) {
+      logger.error("Error getting metrics:  " + e.getMessage());
+      throw new ServiceException(e);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Outcome of a single get command within a multi-command read of a device. The status mirrors the
+ * HTTP status code the equivalent single command request would have returned. A JSON response of
+ * the device service is embedded as a tree in value, so that it is written in whichever format
+ * (JSON, CBOR or Smile) the result is; any other response is given as text.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CommandReading {
+
+  private String command;
+  private int status;
+  private JsonNode value;
+  private String text;
+  private String message;
+
+  public CommandReading() {}
+
+  public CommandReading(String command, int status) {
+    this.command = command;
+    this.status = status;
+  }
+
+  public String getCommand() {
+    return command;
+  }
+
+  public void setCommand(String command) {
+    this.command = command;
+  }
+
+  public int getStatus() {
+    return status;
+  }
+
+  public void setStatus(int status) {
+    this.status = status;
+  }
+
+  public JsonNode getValue() {
+    return value;
+  }
+
+  public void setValue(JsonNode value) {
+    this.value = value;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  public void setText(String text) {
+    this.text = text;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+}
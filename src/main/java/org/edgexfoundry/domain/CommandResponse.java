@@ -18,7 +18,9 @@
 
 package org.edgexfoundry.domain;
 
+import org.edgexfoundry.domain.meta.AdminState;
 import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
 import org.edgexfoundry.domain.serializer.CommandResponseSerializer;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
@@ -28,10 +30,26 @@ public class CommandResponse {
 
   private Device device;
   private String host;
+  private FieldSet fields;
+  // the current states where they differ from those held by the device, as tracked by the cache
+  private AdminState adminState;
+  private OperatingState operatingState;
 
   public CommandResponse(Device device, String host) {
+    this(device, host, FieldSet.ALL);
+  }
+
+  public CommandResponse(Device device, String host, FieldSet fields) {
     this.device = device;
     this.host = host;
+    this.fields = fields;
+  }
+
+  public CommandResponse(Device device, String host, FieldSet fields, AdminState adminState,
+      OperatingState operatingState) {
+    this(device, host, fields);
+    this.adminState = adminState;
+    this.operatingState = operatingState;
   }
 
   public Device getDevice() {
@@ -50,4 +68,35 @@ public class CommandResponse {
     this.host = host;
   }
 
+  public FieldSet getFields() {
+    return fields;
+  }
+
+  public void setFields(FieldSet fields) {
+    this.fields = fields;
+  }
+
+  /**
+   * @return the admin state to report, that of the device unless another was given
+   */
+  public AdminState getAdminState() {
+    return adminState != null || device == null ? adminState : device.getAdminState();
+  }
+
+  public void setAdminState(AdminState adminState) {
+    this.adminState = adminState;
+  }
+
+  /**
+   * @return the op state to report, that of the device unless another was given
+   */
+  public OperatingState getOperatingState() {
+    return operatingState != null || device == null ? operatingState
+        : device.getOperatingState();
+  }
+
+  public void setOperatingState(OperatingState operatingState) {
+    this.operatingState = operatingState;
+  }
+
 }
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.domain;
+
+import java.util.List;
+
+/**
+ * Narrows a device listing to the devices with the given label, device service name, device
+ * profile name, admin state and/or op state; a device must match every criterion given. Ids and
+ * names pick the devices to list by database generated id or name, further narrowed by the other
+ * criteria. Bound from the query parameters of the listing.
+ */
+public class DeviceFilter {
+
+  private String label;
+  private String service;
+  private String profile;
+  private String adminState;
+  private String operatingState;
+  private List<String> ids;
+  private List<String> names;
+
+  public DeviceFilter() {}
+
+  public DeviceFilter(String label, String service, String profile, String adminState,
+      String operatingState) {
+    this.label = label;
+    this.service = service;
+    this.profile = profile;
+    this.adminState = adminState;
+    this.operatingState = operatingState;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public void setLabel(String label) {
+    this.label = label;
+  }
+
+  public String getService() {
+    return service;
+  }
+
+  public void setService(String service) {
+    this.service = service;
+  }
+
+  public String getProfile() {
+    return profile;
+  }
+
+  public void setProfile(String profile) {
+    this.profile = profile;
+  }
+
+  public String getAdminState() {
+    return adminState;
+  }
+
+  public void setAdminState(String adminState) {
+    this.adminState = adminState;
+  }
+
+  public String getOperatingState() {
+    return operatingState;
+  }
+
+  public void setOperatingState(String operatingState) {
+    this.operatingState = operatingState;
+  }
+
+  public List<String> getIds() {
+    return ids;
+  }
+
+  public void setIds(List<String> ids) {
+    this.ids = ids;
+  }
+
+  public List<String> getNames() {
+    return names;
+  }
+
+  public void setNames(List<String> names) {
+    this.names = names;
+  }
+
+  /**
+   * @return true if devices are picked by id or name
+   */
+  public boolean isSelection() {
+    return (ids != null && !ids.isEmpty()) || (names != null && !names.isEmpty());
+  }
+
+  public boolean isEmpty() {
+    return !isSelection() && isBlank(label) && isBlank(service) && isBlank(profile)
+        && isBlank(adminState) && isBlank(operatingState);
+  }
+
+  private static boolean isBlank(String value) {
+    return value == null || value.isEmpty();
+  }
+
+}
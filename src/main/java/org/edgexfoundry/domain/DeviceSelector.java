@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.domain;
+
+import java.util.List;
+
+/**
+ * Selects a set of devices for bulk operations. Devices may be picked by database generated id,
+ * by name and/or by label; the union of all three is selected.
+ */
+public class DeviceSelector {
+
+  private List<String> ids;
+  private List<String> names;
+  private String label;
+
+  public DeviceSelector() {}
+
+  public DeviceSelector(List<String> ids, List<String> names, String label) {
+    this.ids = ids;
+    this.names = names;
+    this.label = label;
+  }
+
+  public List<String> getIds() {
+    return ids;
+  }
+
+  public void setIds(List<String> ids) {
+    this.ids = ids;
+  }
+
+  public List<String> getNames() {
+    return names;
+  }
+
+  public void setNames(List<String> names) {
+    this.names = names;
+  }
+
+  public String getLabel() {
+    return label;
+  }
+
+  public void setLabel(String label) {
+    this.label = label;
+  }
+
+  public boolean isEmpty() {
+    return (ids == null || ids.isEmpty()) && (names == null || names.isEmpty())
+        && (label == null || label.isEmpty());
+  }
+
+}
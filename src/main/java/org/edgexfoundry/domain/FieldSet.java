@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.domain;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The fields of a device/command document a client asked for, as dotted paths (for example
+ * name,commands.name,commands.get.url). Selecting a field selects everything below it. The
+ * serializer consults the set before writing each field, so unselected subtrees are never
+ * written.
+ */
+public final class FieldSet {
+
+  /** Every field; the document as written without a selection. */
+  public static final FieldSet ALL = new FieldSet(null);
+
+  /** The compact view: device name and id and, per command, its name, id and URLs. */
+  public static final String URLS_VIEW = "urls";
+
+  private static final Set<String> KNOWN = new HashSet<>(Arrays.asList("name", "id",
+      "description", "labels", "adminState", "operatingState", "lastConnected", "lastReported",
+      "location", "commands", "commands.id", "commands.name", "commands.get", "commands.put",
+      "commands.get.url", "commands.put.url", "commands.put.parameterNames",
+      "commands.get.responses", "commands.put.responses", "commands.get.responses.code",
+      "commands.put.responses.code", "commands.get.responses.description",
+      "commands.put.responses.description", "commands.get.responses.expectedValues",
+      "commands.put.responses.expectedValues"));
+
+  private static final Set<String> URLS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+      "name", "id", "commands.name", "commands.id", "commands.get.url", "commands.put.url")));
+
+  // null selects everything
+  private final Set<String> selected;
+
+  private FieldSet(Set<String> selected) {
+    this.selected = selected;
+  }
+
+  /**
+   * @param fields - comma separated field paths, or null/empty for no selection
+   * @param view - a named view (urls), or null
+   * @return the selected fields; ALL when neither fields nor view is given
+   * @throws IllegalArgumentException if a field or the view is unknown
+   */
+  public static FieldSet parse(String fields, String view) {
+    Set<String> selected = new HashSet<>();
+    if (view != null && !view.isEmpty()) {
+      if (!URLS_VIEW.equalsIgnoreCase(view)) {
+        throw new IllegalArgumentException("Unknown view:  " + view);
+      }
+      selected.addAll(URLS);
+    }
+    if (fields != null) {
+      for (String field : fields.split(",")) {
+        String path = field.trim();
+        if (path.isEmpty()) {
+          continue;
+        }
+        if (!KNOWN.contains(path)) {
+          throw new IllegalArgumentException("Unknown field:  " + path);
+        }
+        selected.add(path);
+      }
+    }
+    return selected.isEmpty() ? ALL : new FieldSet(selected);
+  }
+
+  public boolean isAll() {
+    return selected == null;
+  }
+
+  /**
+   * @return true if the field at the path, or anything below it, is to be written
+   */
+  public boolean wants(String path) {
+    if (selected == null || selected.contains(path)) {
+      return true;
+    }
+    for (int dot = path.lastIndexOf('.'); dot > 0; dot = path.lastIndexOf('.', dot - 1)) {
+      if (selected.contains(path.substring(0, dot))) {
+        return true;
+      }
+    }
+    String prefix = path + ".";
+    for (String field : selected) {
+      if (field.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return a canonical form of the selection, equal for equal selections
+   */
+  @Override
+  public String toString() {
+    return selected == null ? "*" : String.join(",", new TreeSet<>(selected));
+  }
+
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.domain;
+
+/**
+ * A change of a device's admin state, op state, last connected or last reported time, as seen by
+ * this service. Changes are numbered in the order they were seen; the sequence doubles as the
+ * resume token of the state change feed.
+ */
+public class StateChange {
+
+  public static final String ADMIN_STATE = "adminState";
+  public static final String OPERATING_STATE = "operatingState";
+  public static final String LAST_CONNECTED = "lastConnected";
+  public static final String LAST_REPORTED = "lastReported";
+
+  private long sequence;
+  private String id;
+  private String name;
+  private String field;
+  private String value;
+  private long timestamp;
+
+  public StateChange() {}
+
+  public StateChange(String id, String name, String field, String value, long timestamp) {
+    this.id = id;
+    this.name = name;
+    this.field = field;
+    this.value = value;
+    this.timestamp = timestamp;
+  }
+
+  public long getSequence() {
+    return sequence;
+  }
+
+  public void setSequence(long sequence) {
+    this.sequence = sequence;
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  public void setId(String id) {
+    this.id = id;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public String getField() {
+    return field;
+  }
+
+  public void setField(String field) {
+    this.field = field;
+  }
+
+  public String getValue() {
+    return value;
+  }
+
+  public void setValue(String value) {
+    this.value = value;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public void setTimestamp(long timestamp) {
+    this.timestamp = timestamp;
+  }
+
+}
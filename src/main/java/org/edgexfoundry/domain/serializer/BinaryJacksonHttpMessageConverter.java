@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.domain.serializer;
+
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Reads and writes a binary Jackson format (CBOR or Smile) through the same serializers as JSON,
+ * so a CommandResponse is produced by CommandResponseSerializer whatever the format.
+ */
+public class BinaryJacksonHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+  public static final MediaType APPLICATION_CBOR = new MediaType("application", "cbor");
+  public static final MediaType APPLICATION_SMILE =
+      new MediaType("application", "x-jackson-smile");
+
+  /**
+   * @param mapper - an ObjectMapper built on the binary format's JsonFactory
+   * @param mediaType - the media type of the format
+   */
+  public BinaryJacksonHttpMessageConverter(ObjectMapper mapper, MediaType mediaType) {
+    super(mapper, mediaType);
+  }
+
+}
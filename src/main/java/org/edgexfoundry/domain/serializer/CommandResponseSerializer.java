@@ -21,6 +21,7 @@ package org.edgexfoundry.domain.serializer;
 import java.io.IOException;
 
 import org.edgexfoundry.domain.CommandResponse;
+import org.edgexfoundry.domain.FieldSet;
 import org.edgexfoundry.domain.meta.Action;
 import org.edgexfoundry.domain.meta.Command;
 import org.edgexfoundry.domain.meta.Device;
@@ -50,104 +51,150 @@ public class CommandResponseSerializer extends JsonSerializer<CommandResponse> {
       throws IOException {
     Device device = cmdResp.getDevice();
     String host = cmdResp.getHost();
+    FieldSet fields = cmdResp.getFields();
     // write the device to Json
     jgen.writeStartObject();
-    jgen.writeStringField("name", device.getName());
-    jgen.writeStringField("id", device.getId());
-
-    if (device.getDescription() != null)
-      jgen.writeStringField(JSON_DESC_FLD, device.getDescription());
-    else
-      jgen.writeNullField(JSON_DESC_FLD);
-    if (device.getLabels() != null) {
-      jgen.writeArrayFieldStart("labels");
-      for (String label : device.getLabels()) {
-        jgen.writeString(label);
-      }
-      jgen.writeEndArray();
-    } else
-      jgen.writeNullField("labels");
-    jgen.writeStringField("adminState", device.getAdminState().toString());
-    jgen.writeStringField("operatingState", device.getOperatingState().toString());
-    jgen.writeNumberField("lastConnected", device.getLastConnected());
-    jgen.writeNumberField("lastReported", device.getLastReported());
-    if (device.getLocation() != null)
-      jgen.writeObjectField("location", device.getLocation());
-    else
-      jgen.writeNullField("location");
-    if (device.getProfile() != null && device.getProfile().getCommands() != null
-        && !device.getProfile().getCommands().isEmpty()) {
-      jgen.writeArrayFieldStart("commands");
-      for (Command command : device.getProfile().getCommands()) {
-        serializeCommand(command, jgen, host, device.getId());
+    if (fields.wants("name"))
+      jgen.writeStringField("name", device.getName());
+    if (fields.wants("id"))
+      jgen.writeStringField("id", device.getId());
+
+    if (fields.wants(JSON_DESC_FLD)) {
+      if (device.getDescription() != null)
+        jgen.writeStringField(JSON_DESC_FLD, device.getDescription());
+      else
+        jgen.writeNullField(JSON_DESC_FLD);
+    }
+    if (fields.wants("labels")) {
+      if (device.getLabels() != null) {
+        jgen.writeArrayFieldStart("labels");
+        for (String label : device.getLabels()) {
+          jgen.writeString(label);
+        }
+        jgen.writeEndArray();
+      } else
+        jgen.writeNullField("labels");
+    }
+    if (fields.wants("adminState"))
+      jgen.writeStringField("adminState", cmdResp.getAdminState().toString());
+    if (fields.wants("operatingState"))
+      jgen.writeStringField("operatingState", cmdResp.getOperatingState().toString());
+    if (fields.wants("lastConnected"))
+      jgen.writeNumberField("lastConnected", device.getLastConnected());
+    if (fields.wants("lastReported"))
+      jgen.writeNumberField("lastReported", device.getLastReported());
+    if (fields.wants("location")) {
+      if (device.getLocation() != null)
+        jgen.writeObjectField("location", device.getLocation());
+      else
+        jgen.writeNullField("location");
+    }
+    if (fields.wants("commands")) {
+      if (device.getProfile() != null && device.getProfile().getCommands() != null
+          && !device.getProfile().getCommands().isEmpty()) {
+        jgen.writeArrayFieldStart("commands");
+        for (Command command : device.getProfile().getCommands()) {
+          serializeCommand(command, jgen, host, device.getId(), fields);
+        }
+        jgen.writeEndArray();
+      } else {
+        jgen.writeNullField("commands");
       }
-      jgen.writeEndArray();
-    } else {
-      jgen.writeNullField("commands");
     }
     jgen.writeEndObject();
   }
 
   public void serializeCommand(Command command, JsonGenerator jgen, String host, String deviceId)
       throws IOException {
+    serializeCommand(command, jgen, host, deviceId, FieldSet.ALL);
+  }
+
+  public void serializeCommand(Command command, JsonGenerator jgen, String host, String deviceId,
+      FieldSet fields) throws IOException {
     jgen.writeStartObject();
-    jgen.writeStringField("id", command.getId());
-    jgen.writeStringField("name", command.getName());
-    if (command.getGet() != null) {
-      jgen.writeObjectFieldStart("get");
-      serializeAction(command.getGet(), jgen, host, deviceId, command.getId(), true);
-      jgen.writeEndObject();
-    } else
-      jgen.writeNullField("get");
-    if (command.getPut() != null) {
-      jgen.writeObjectFieldStart("put");
-      serializeAction(command.getPut(), jgen, host, deviceId, command.getId(), false);
-      jgen.writeEndObject();
-    } else
-      jgen.writeNullField("put");
+    if (fields.wants("commands.id"))
+      jgen.writeStringField("id", command.getId());
+    if (fields.wants("commands.name"))
+      jgen.writeStringField("name", command.getName());
+    if (fields.wants("commands.get")) {
+      if (command.getGet() != null) {
+        jgen.writeObjectFieldStart("get");
+        serializeAction(command.getGet(), jgen, host, deviceId, command.getId(), true, fields);
+        jgen.writeEndObject();
+      } else
+        jgen.writeNullField("get");
+    }
+    if (fields.wants("commands.put")) {
+      if (command.getPut() != null) {
+        jgen.writeObjectFieldStart("put");
+        serializeAction(command.getPut(), jgen, host, deviceId, command.getId(), false, fields);
+        jgen.writeEndObject();
+      } else
+        jgen.writeNullField("put");
+    }
     jgen.writeEndObject();
 
   }
 
   public void serializeAction(Action action, JsonGenerator jgen, String host, String deviceId,
       String cmdId, boolean isGet) throws IOException {
-    jgen.writeStringField("url",
-        urlProtocol + host + urlDevicePath + deviceId + urlCmdPath + cmdId);
-    if (action instanceof Put) {
+    serializeAction(action, jgen, host, deviceId, cmdId, isGet, FieldSet.ALL);
+  }
+
+  public void serializeAction(Action action, JsonGenerator jgen, String host, String deviceId,
+      String cmdId, boolean isGet, FieldSet fields) throws IOException {
+    String path = isGet ? "commands.get." : "commands.put.";
+    if (fields.wants(path + "url"))
+      jgen.writeStringField("url",
+          urlProtocol + host + urlDevicePath + deviceId + urlCmdPath + cmdId);
+    if (action instanceof Put && fields.wants(path + "parameterNames")) {
       jgen.writeArrayFieldStart("parameterNames");
       for (String param : ((Put) action).getParameterNames()) {
         jgen.writeString(param);
       }
       jgen.writeEndArray();
     }
-    if (action.getResponses() != null) {
-      jgen.writeArrayFieldStart("responses");
-      for (Response resp : action.getResponses()) {
-        serializeResponse(resp, jgen);
-      }
-      jgen.writeEndArray();
-    } else
-      jgen.writeNullField("responses");
+    if (fields.wants(path + "responses")) {
+      if (action.getResponses() != null) {
+        jgen.writeArrayFieldStart("responses");
+        for (Response resp : action.getResponses()) {
+          serializeResponse(resp, jgen, fields, path + "responses.");
+        }
+        jgen.writeEndArray();
+      } else
+        jgen.writeNullField("responses");
+    }
   }
 
   public void serializeResponse(Response resp, JsonGenerator jgen) throws IOException {
+    serializeResponse(resp, jgen, FieldSet.ALL, "");
+  }
+
+  private void serializeResponse(Response resp, JsonGenerator jgen, FieldSet fields, String path)
+      throws IOException {
     jgen.writeStartObject();
-    if (resp.getCode() != null)
-      jgen.writeStringField("code", resp.getCode());
-    else
-      jgen.writeNullField("code");
-    if (resp.getDescription() != null)
-      jgen.writeStringField(JSON_DESC_FLD, resp.getDescription());
-    else
-      jgen.writeNullField(JSON_DESC_FLD);
-    if (resp.getExpectedValues() != null) {
-      jgen.writeArrayFieldStart("expectedValues");
-      for (String expected : resp.getExpectedValues()) {
-        jgen.writeString(expected);
-      }
-      jgen.writeEndArray();
-    } else
-      jgen.writeNullField("expectedValues");
+    if (fields.wants(path + "code")) {
+      if (resp.getCode() != null)
+        jgen.writeStringField("code", resp.getCode());
+      else
+        jgen.writeNullField("code");
+    }
+    if (fields.wants(path + JSON_DESC_FLD)) {
+      if (resp.getDescription() != null)
+        jgen.writeStringField(JSON_DESC_FLD, resp.getDescription());
+      else
+        jgen.writeNullField(JSON_DESC_FLD);
+    }
+    if (fields.wants(path + "expectedValues")) {
+      if (resp.getExpectedValues() != null) {
+        jgen.writeArrayFieldStart("expectedValues");
+        for (String expected : resp.getExpectedValues()) {
+          jgen.writeString(expected);
+        }
+        jgen.writeEndArray();
+      } else
+        jgen.writeNullField("expectedValues");
+    }
     jgen.writeEndObject();
   }
 }
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.edgexfoundry.domain.meta.Command;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * The last put body applied to each device by the commands named in command.dedupe.commands,
+ * kept as a hash with the device service's response. A put repeating the last applied body is
+ * answered with that response (marked X-Command-Unchanged: true) without contacting the device,
+ * until command.dedupe.maxAge milliseconds after the body was applied; then it is applied again.
+ * A response body kept compressed is decompressed for clients that don't accept its coding.
+ * Clients can force a put through with X-Command-Force: true.
+ */
+@Component
+public class AppliedValues {
+
+  public static final String FORCE_HEADER = "X-Command-Force";
+  public static final String UNCHANGED_HEADER = "X-Command-Unchanged";
+
+  private static final long DEFAULT_MAX_AGE = 300000;
+
+  private Set<String> commands = Collections.emptySet();
+  private volatile long maxAge = DEFAULT_MAX_AGE;
+
+  // device id/command name to the last applied body
+  private final Map<String, Applied> applied = new ConcurrentHashMap<>();
+
+  @Value("${command.dedupe.commands:}")
+  public void setCommands(String[] names) {
+    commands = new HashSet<>(Arrays.asList(names));
+  }
+
+  @Value("${command.dedupe.maxAge:300000}")
+  public void setMaxAge(long maxAge) {
+    this.maxAge = maxAge;
+  }
+
+  /**
+   * @return the response to the last application of the same body, if the put need not be sent
+   *         again, otherwise null
+   */
+  public ResponseEntity<byte[]> unchanged(String deviceId, Command command, String body,
+      HttpHeaders headers) throws IOException {
+    if (!commands.contains(command.getName())
+        || Boolean.parseBoolean(headers.getFirst(FORCE_HEADER))) {
+      return null;
+    }
+    Applied last = applied.get(key(deviceId, command));
+    if (last == null || System.nanoTime() - last.at > TimeUnit.MILLISECONDS.toNanos(maxAge)
+        || !Arrays.equals(last.hash, hash(body))) {
+      return null;
+    }
+    HttpHeaders replayed = new HttpHeaders();
+    replayed.putAll(last.response.getHeaders());
+    replayed.set(UNCHANGED_HEADER, "true");
+    byte[] replayedBody = last.response.getBody();
+    String coding = replayed.getFirst(HttpHeaders.CONTENT_ENCODING);
+    if (Compression.isSupported(coding) && replayedBody != null
+        && !Compression.accepts(headers.getFirst(HttpHeaders.ACCEPT_ENCODING), coding)) {
+      replayed.remove(HttpHeaders.CONTENT_ENCODING);
+      replayedBody = Compression.decompress(replayedBody, coding);
+    }
+    return new ResponseEntity<>(replayedBody, replayed, last.response.getStatusCode());
+  }
+
+  /**
+   * Record the outcome of a put sent to the device. Only puts the device service applied (2xx,
+   * other than a put the PutCoalescer superseded) are kept; a failed put forgets the last applied
+   * body.
+   */
+  public void record(String deviceId, Command command, String body,
+      ResponseEntity<byte[]> response) {
+    if (!commands.contains(command.getName())) {
+      return;
+    }
+    if (Boolean.parseBoolean(response.getHeaders().getFirst(PutCoalescer.COALESCED_HEADER))) {
+      // superseded by a coalesced put, which records its own outcome
+      return;
+    }
+    String key = key(deviceId, command);
+    if (response.getStatusCode().is2xxSuccessful()) {
+      applied.put(key, new Applied(hash(body), System.nanoTime(), response));
+    } else {
+      // the device may have been left in any state
+      applied.remove(key);
+    }
+  }
+
+  /**
+   * Forget what was applied to the device by the command, so the next put is sent.
+   */
+  public void forget(String deviceId, Command command) {
+    applied.remove(key(deviceId, command));
+  }
+
+  private static String key(String deviceId, Command command) {
+    return deviceId + "/" + command.getName();
+  }
+
+  private static byte[] hash(String body) {
+    try {
+      return MessageDigest.getInstance("SHA-256")
+          .digest((body == null ? "" : body).getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform supports SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static class Applied {
+    private final byte[] hash;
+    private final long at;
+    private final ResponseEntity<byte[]> response;
+
+    Applied(byte[] hash, long at, ResponseEntity<byte[]> response) {
+      this.hash = hash;
+      this.at = at;
+      this.response = response;
+    }
+  }
+
+}
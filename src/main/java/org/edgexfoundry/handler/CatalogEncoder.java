@@ -0,0 +1,280 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.cache.CatalogVersion;
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.CommandResponse;
+import org.edgexfoundry.domain.FieldSet;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Encodes the device catalog (all devices and their commands) to JSON, optionally compressed,
+ * keeping the encoded bodies per host, content coding and field selection. A body is reused for
+ * as long as the catalog read from metadata has the same CatalogVersion, so an unchanged catalog
+ * is neither serialized nor compressed again. Admin and op states are written as tracked by the
+ * DeviceCache, so a body is also encoded again after a state change there. The full catalog is
+ * served from its encoded body while the DeviceCache's catalog version and state are unchanged,
+ * and read from metadata only when they changed since it was encoded. Catalogs of at least
+ * catalog.parallel.threshold devices are cut into chunks of catalog.parallel.chunkSize devices
+ * that are serialized in parallel on a ForkJoinPool, into pooled buffers, and then joined in
+ * order.
+ */
+@Component
+public class CatalogEncoder {
+
+  private static final String IDENTITY = "identity";
+  private static final int MAX_POOLED_BUFFERS = 2 * Runtime.getRuntime().availableProcessors();
+
+  @Autowired
+  ObjectMapper mapper;
+
+  @Autowired
+  CommandMetrics metrics;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  @Autowired
+  DeviceClient deviceClient;
+
+  @Value("${catalog.encoded.cacheSize:8}")
+  private int cacheSize;
+
+  private int threshold = 2048;
+  private int chunkSize = 512;
+
+  private final Map<String, Encoded> encoded = new ConcurrentHashMap<>();
+  private final Queue<ChunkBuffer> buffers = new ConcurrentLinkedQueue<>();
+  private ForkJoinPool pool;
+
+  @Value("${catalog.parallel.threshold:2048}")
+  public void setThreshold(int threshold) {
+    this.threshold = threshold;
+  }
+
+  @Value("${catalog.parallel.chunkSize:512}")
+  public void setChunkSize(int chunkSize) {
+    this.chunkSize = Math.max(1, chunkSize);
+  }
+
+  @PreDestroy
+  public synchronized void shutdown() {
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Encode the full catalog, reading it from metadata (and refreshing the DeviceCache with it)
+   * only if the DeviceCache changed since the body was encoded, or was not loaded yet.
+   *
+   * @param host - the host address the command URLs are written for
+   * @param coding - gzip, deflate or null for an uncompressed body
+   * @param fields - the fields of each device to write
+   * @return the encoded catalog
+   */
+  public byte[] encodeCatalog(String host, String coding, FieldSet fields) throws IOException {
+    String key = key(host, coding, fields);
+    Encoded cached = encoded.get(key);
+    if (cached != null && deviceCache.isLoaded() && cached.version.equals(cacheVersion())) {
+      metrics.increment("catalog.encoded.hit");
+      return cached.body;
+    }
+    metrics.increment("catalog.encoded.miss");
+    long asOf = System.nanoTime();
+    List<Device> devices = deviceClient.devices();
+    deviceCache.refresh(devices, asOf);
+    // read before encoding, so a change made meanwhile only causes another encoding
+    String version = cacheVersion();
+    return keep(key, cached, version, encodeOnce(devices, host, coding, fields));
+  }
+
+  /**
+   * @param devices - the catalog as just read from metadata
+   * @param host - the host address the command URLs are written for
+   * @param coding - gzip, deflate or null for an uncompressed body
+   * @param fields - the fields of each device to write
+   * @return the encoded catalog
+   */
+  public byte[] encode(List<Device> devices, String host, String coding, FieldSet fields)
+      throws IOException {
+    // read before encoding, so a state change made meanwhile only causes another encoding
+    String version = CatalogVersion.of(devices) + "@" + deviceCache.stateSequence();
+    String key = key(host, coding, fields);
+    Encoded cached = encoded.get(key);
+    if (cached != null && cached.version.equals(version)) {
+      metrics.increment("catalog.encoded.hit");
+      return cached.body;
+    }
+    metrics.increment("catalog.encoded.miss");
+    return keep(key, cached, version, encodeOnce(devices, host, coding, fields));
+  }
+
+  /**
+   * Encode a device list that is not kept for reuse, such as a filtered listing.
+   *
+   * @param devices - the devices to encode
+   * @param host - the host address the command URLs are written for
+   * @param coding - gzip, deflate or null for an uncompressed body
+   * @param fields - the fields of each device to write
+   * @return the encoded list
+   */
+  public byte[] encodeOnce(List<Device> devices, String host, String coding, FieldSet fields)
+      throws IOException {
+    byte[] json = threshold > 0 && devices.size() >= threshold
+        ? serializeInChunks(devices, host, fields)
+        : mapper.writeValueAsBytes(responses(devices, host, fields));
+    return coding == null ? json : Compression.compress(json, coding);
+  }
+
+  private static String key(String host, String coding, FieldSet fields) {
+    return (coding == null ? IDENTITY : coding) + " " + host + " " + fields;
+  }
+
+  // versions of bodies encoded from the DeviceCache are told apart from those of device lists
+  private String cacheVersion() {
+    return "cache " + deviceCache.catalogVersion() + "@" + deviceCache.stateSequence();
+  }
+
+  private byte[] keep(String key, Encoded cached, String version, byte[] body) {
+    if (cached == null && encoded.size() >= cacheSize) {
+      // host headers are client supplied; don't let them grow the cache without bound
+      encoded.clear();
+    }
+    encoded.put(key, new Encoded(version, body));
+    return body;
+  }
+
+  // each chunk is written as a JSON array; its elements are copied into the joined array
+  private byte[] serializeInChunks(List<Device> devices, String host, FieldSet fields)
+      throws IOException {
+    List<ForkJoinTask<ChunkBuffer>> chunks = new ArrayList<>();
+    for (int from = 0; from < devices.size(); from += chunkSize) {
+      List<Device> chunk = devices.subList(from, Math.min(devices.size(), from + chunkSize));
+      chunks.add(pool().submit(() -> serialize(chunk, host, fields)));
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    out.write('[');
+    for (int i = 0; i < chunks.size(); i++) {
+      ChunkBuffer buffer;
+      try {
+        buffer = chunks.get(i).join();
+      } catch (UncheckedIOException e) {
+        chunks.forEach(chunk -> chunk.cancel(false));
+        throw e.getCause();
+      }
+      if (i > 0) {
+        out.write(',');
+      }
+      buffer.writeElementsTo(out);
+      release(buffer);
+    }
+    out.write(']');
+    return out.toByteArray();
+  }
+
+  private ChunkBuffer serialize(List<Device> chunk, String host, FieldSet fields) {
+    ChunkBuffer buffer = buffers.poll();
+    if (buffer == null) {
+      buffer = new ChunkBuffer();
+    }
+    try {
+      mapper.writeValue(buffer, responses(chunk, host, fields));
+      return buffer;
+    } catch (IOException e) {
+      release(buffer);
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private void release(ChunkBuffer buffer) {
+    if (buffers.size() < MAX_POOLED_BUFFERS) {
+      buffer.reset();
+      buffers.offer(buffer);
+    }
+  }
+
+  private List<CommandResponse> responses(List<Device> devices, String host, FieldSet fields) {
+    return devices.stream().map(d -> new CommandResponse(d, host, fields,
+        deviceCache.adminState(d), deviceCache.operatingState(d))).collect(Collectors.toList());
+  }
+
+  private synchronized ForkJoinPool pool() {
+    if (pool == null) {
+      pool = new ForkJoinPool();
+    }
+    return pool;
+  }
+
+  // a reusable buffer holding one serialized chunk
+  private static class ChunkBuffer extends ByteArrayOutputStream {
+
+    ChunkBuffer() {
+      super(64 * 1024);
+    }
+
+    // write the array's elements, without its enclosing brackets
+    void writeElementsTo(OutputStream out) throws IOException {
+      int start = 0;
+      int end = count;
+      while (start < end && buf[start] != '[') {
+        start++;
+      }
+      while (end > start && buf[end - 1] != ']') {
+        end--;
+      }
+      out.write(buf, start + 1, end - start - 2);
+    }
+  }
+
+  private static class Encoded {
+    private final String version;
+    private final byte[] body;
+
+    Encoded(String version, byte[] body) {
+      this.version = version;
+      this.body = body;
+    }
+  }
+
+}
@@ -0,0 +1,184 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * The command index: for every device name, the get and put URLs of each of its commands by
+ * command name. Built from the DeviceCache and kept encoded per host and content coding; an
+ * encoded index is reused until the catalog version changes. Clients holding an index at some
+ * version can ask for just the changes since then.
+ *
+ * <pre>
+ * {"version":7,"full":true,"devices":{"thermostat":{"setTemp":{"get":"...","put":"..."}}},
+ *  "removed":[]}
+ * </pre>
+ */
+@Component
+public class CommandIndex {
+
+  @Value("${url.protocol}")
+  private String urlProtocol;
+
+  @Value("${url.cmd.path}")
+  private String urlCmdPath;
+
+  @Value("${url.device.path}")
+  private String urlDevicePath;
+
+  @Value("${catalog.encoded.cacheSize:8}")
+  private int cacheSize;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  @Autowired
+  DeviceClient deviceClient;
+
+  @Autowired
+  CommandMetrics metrics;
+
+  private final JsonFactory json = new JsonFactory();
+
+  private final Map<String, Encoded> encoded = new ConcurrentHashMap<>();
+
+  /**
+   * @return the current catalog version, reading the catalog from metadata if not yet loaded
+   */
+  public long version() {
+    if (!deviceCache.isLoaded()) {
+      deviceCache.refresh(deviceClient.devices(), System.nanoTime());
+    }
+    return deviceCache.catalogVersion();
+  }
+
+  /**
+   * @param host - the host address the command URLs are written for
+   * @param coding - gzip, deflate or null for an uncompressed body
+   * @return the encoded full index
+   */
+  public byte[] full(String host, String coding) throws IOException {
+    long version = version();
+    String key = (coding == null ? "identity" : coding) + " " + host;
+    Encoded cached = encoded.get(key);
+    if (cached != null && cached.version == version) {
+      return cached.body;
+    }
+    metrics.increment("index.rebuilt");
+    byte[] body = encode(version, true, deviceCache.devices(), Collections.emptyList(), host);
+    if (coding != null) {
+      body = Compression.compress(body, coding);
+    }
+    if (cached == null && encoded.size() >= cacheSize) {
+      encoded.clear();
+    }
+    encoded.put(key, new Encoded(version, body));
+    return body;
+  }
+
+  /**
+   * @param host - the host address the command URLs are written for
+   * @param since - the catalog version the client's index is at
+   * @return the changes to the index since the given version, or the full index if changes are
+   *         not known that far back
+   */
+  public byte[] since(String host, long since) throws IOException {
+    long version = version();
+    List<Device> changed = deviceCache.changedSince(since);
+    if (changed == null) {
+      return full(host, null);
+    }
+    return encode(version, false, changed, deviceCache.removedSince(since), host);
+  }
+
+  private byte[] encode(long version, boolean full, Collection<Device> devices,
+      List<String> removed, String host) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(256 + devices.size() * 256);
+    try (JsonGenerator gen = json.createGenerator(out)) {
+      gen.writeStartObject();
+      gen.writeNumberField("version", version);
+      gen.writeBooleanField("full", full);
+      gen.writeObjectFieldStart("devices");
+      for (Device device : devices) {
+        if (device.getName() != null) {
+          writeDevice(gen, device, host);
+        }
+      }
+      gen.writeEndObject();
+      gen.writeArrayFieldStart("removed");
+      for (String name : removed) {
+        gen.writeString(name);
+      }
+      gen.writeEndArray();
+      gen.writeEndObject();
+    }
+    return out.toByteArray();
+  }
+
+  private void writeDevice(JsonGenerator gen, Device device, String host) throws IOException {
+    gen.writeObjectFieldStart(device.getName());
+    if (device.getProfile() != null && device.getProfile().getCommands() != null) {
+      String base = urlProtocol + host + urlDevicePath + device.getId() + urlCmdPath;
+      for (Command command : device.getProfile().getCommands()) {
+        if (command.getName() == null) {
+          continue;
+        }
+        gen.writeObjectFieldStart(command.getName());
+        if (command.getGet() != null) {
+          gen.writeStringField("get", base + command.getId());
+        }
+        if (command.getPut() != null) {
+          gen.writeStringField("put", base + command.getId());
+        }
+        gen.writeEndObject();
+      }
+    }
+    gen.writeEndObject();
+  }
+
+  private static class Encoded {
+    private final long version;
+    private final byte[] body;
+
+    Encoded(long version, byte[] body) {
+      this.version = version;
+      this.body = body;
+    }
+  }
+
+}
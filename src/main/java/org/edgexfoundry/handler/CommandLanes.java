@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import javax.annotation.PostConstruct;
+
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Separate execution lanes for put (actuation) and get (read) commands, so that a flood of reads
+ * can only fill the get lane and never delays puts. Each lane has its own concurrency limit and
+ * wait line, and reports its active, queued and rejected counts to the metrics.
+ */
+@Component
+public class CommandLanes {
+
+  private static final int DEFAULT_CONCURRENCY = 16;
+  private static final int DEFAULT_QUEUE_SIZE = 64;
+  private static final long DEFAULT_MAX_WAIT = 5000;
+
+  @Value("${lane.get.concurrency:32}")
+  private int getConcurrency;
+
+  @Value("${lane.get.queueSize:64}")
+  private int getQueueSize;
+
+  @Value("${lane.put.concurrency:16}")
+  private int putConcurrency;
+
+  @Value("${lane.put.queueSize:64}")
+  private int putQueueSize;
+
+  @Value("${lane.maxWait:5000}")
+  private long maxWait;
+
+  @Autowired
+  CommandMetrics metrics;
+
+  private ExecutionLane getLane =
+      new ExecutionLane("get", DEFAULT_CONCURRENCY, DEFAULT_QUEUE_SIZE, DEFAULT_MAX_WAIT);
+  private ExecutionLane putLane =
+      new ExecutionLane("put", DEFAULT_CONCURRENCY, DEFAULT_QUEUE_SIZE, DEFAULT_MAX_WAIT);
+
+  @PostConstruct
+  public void init() {
+    getLane = new ExecutionLane("get", getConcurrency, getQueueSize, maxWait);
+    putLane = new ExecutionLane("put", putConcurrency, putQueueSize, maxWait);
+    register("get", getLane);
+    register("put", putLane);
+  }
+
+  public ExecutionLane get() {
+    return getLane;
+  }
+
+  public ExecutionLane put() {
+    return putLane;
+  }
+
+  private void register(String name, ExecutionLane lane) {
+    metrics.gauge("lane." + name + ".active", lane::active);
+    metrics.gauge("lane." + name + ".queued", lane::queued);
+    metrics.gauge("lane." + name + ".rejected", lane::rejected);
+  }
+
+}
@@ -0,0 +1,37 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Sends a command request to a device service.
+ */
+@FunctionalInterface
+public interface CommandSender {
+
+  /**
+   * @param body - JSON data to send with the command request, null for a get
+   * @return the response of the device/sensor via the device service, passed through as bytes
+   */
+  ResponseEntity<byte[]> send(String body) throws IOException;
+
+}
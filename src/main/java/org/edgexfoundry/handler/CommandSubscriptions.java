@@ -0,0 +1,291 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-Sent Events subscriptions to the result of a get command, polled at a fixed interval.
+ * All subscribers to the same device, command and interval share one poll, whose results are sent
+ * to each of them. Polls run on a grid aligned to the interval, so a subscriber joining late picks
+ * up the existing schedule, offset by a random jitter of up to command.subscription.jitter of the
+ * interval so that polls of different devices are spread out. A subscriber is dropped when its
+ * stream completes, times out or can't be written to; the poll stops with its last subscriber.
+ * A single scheduler thread only starts polls; the gets run on a pool of
+ * command.subscription.threads workers. A poll whose previous get is still running skips its
+ * turn, and a get running longer than command.subscription.pollTimeout is cancelled and reported
+ * to the subscribers as an error event. A cancelled get blocked on the device may only return once
+ * the command's read times out (command.timeout); the poll keeps skipping its turns until it does,
+ * so a slow device holds at most one worker per poll.
+ */
+@Component
+public class CommandSubscriptions {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(CommandSubscriptions.class);
+
+  private static final String ERROR_EVENT = "error";
+
+  @Value("${command.subscription.threads:8}")
+  private int threads;
+
+  private volatile long pollTimeout = 10000;
+
+  @Value("${command.subscription.minInterval:1000}")
+  private long minInterval;
+
+  @Value("${command.subscription.jitter:0.1}")
+  private double jitter;
+
+  @Value("${command.subscription.timeout:3600000}")
+  private long timeout;
+
+  private final Map<String, Poll> polls = new ConcurrentHashMap<>();
+
+  private ScheduledExecutorService scheduler;
+  private ExecutorService workers;
+
+  @Value("${command.subscription.pollTimeout:10000}")
+  public void setPollTimeout(long pollTimeout) {
+    this.pollTimeout = pollTimeout;
+  }
+
+  @PostConstruct
+  public void init() {
+    scheduler = Executors.newSingleThreadScheduledExecutor();
+    workers = Executors.newFixedThreadPool(Math.max(1, threads));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    scheduler.shutdownNow();
+    workers.shutdownNow();
+  }
+
+  /**
+   * Subscribe to the results of a get command, starting a poll if there is none yet for the
+   * device, command and interval.
+   *
+   * @param deviceId - the database generated id of the device
+   * @param command - the name of the command
+   * @param interval - milliseconds between polls
+   * @param poller - issues the get command through the regular get path
+   * @return the event stream the results are sent to, as events named after the command
+   * @throws IllegalArgumentException if the interval is below command.subscription.minInterval
+   */
+  public SseEmitter subscribe(String deviceId, String command, long interval,
+      Callable<ResponseEntity<byte[]>> poller) {
+    if (interval <= 0 || interval < minInterval) {
+      throw new IllegalArgumentException(
+          "Subscription interval must be at least " + Math.max(1, minInterval) + " ms");
+    }
+    SseEmitter emitter = timeout > 0 ? new SseEmitter(timeout) : new SseEmitter();
+    String key = deviceId + "/" + command + "/" + interval;
+    synchronized (polls) {
+      Poll poll = polls.get(key);
+      if (poll == null) {
+        poll = new Poll(key, command, poller);
+        poll.future = scheduler.scheduleAtFixedRate(poll::tick, firstDelay(interval), interval,
+            TimeUnit.MILLISECONDS);
+        polls.put(key, poll);
+      }
+      poll.subscribers.add(emitter);
+    }
+    emitter.onCompletion(() -> unsubscribe(key, emitter));
+    emitter.onTimeout(() -> unsubscribe(key, emitter));
+    return emitter;
+  }
+
+  /**
+   * @return the number of distinct polls running
+   */
+  public int polls() {
+    return polls.size();
+  }
+
+  /**
+   * @return the number of subscribers sharing the poll of the device, command and interval
+   */
+  public int subscribers(String deviceId, String command, long interval) {
+    Poll poll = polls.get(deviceId + "/" + command + "/" + interval);
+    return poll == null ? 0 : poll.subscribers.size();
+  }
+
+  void unsubscribe(String key, SseEmitter emitter) {
+    synchronized (polls) {
+      Poll poll = polls.get(key);
+      if (poll != null && poll.subscribers.remove(emitter) && poll.subscribers.isEmpty()) {
+        poll.future.cancel(false);
+        poll.stop();
+        polls.remove(key);
+      }
+    }
+  }
+
+  // next point on the interval grid, plus jitter
+  private long firstDelay(long interval) {
+    long now = System.currentTimeMillis();
+    long spread = (long) (interval * Math.max(0, Math.min(1, jitter)));
+    long offset = spread > 0 ? ThreadLocalRandom.current().nextLong(spread) : 0;
+    return interval - (now % interval) + offset;
+  }
+
+  private class Poll {
+    private final String key;
+    private final String command;
+    private final Callable<ResponseEntity<byte[]>> poller;
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private ScheduledFuture<?> future;
+    // guarded by this; the get in flight until it returns, cancelled or not
+    private Get running;
+
+    Poll(String key, String command, Callable<ResponseEntity<byte[]>> poller) {
+      this.key = key;
+      this.command = command;
+      this.poller = poller;
+    }
+
+    // on the scheduler thread; starts a get unless the previous one is still running
+    void tick() {
+      boolean timedOut = false;
+      synchronized (this) {
+        if (running == null) {
+          running = new Get();
+          running.future = workers.submit(running);
+        } else if (!running.cancelled && pollTimeout > 0 && System.nanoTime()
+            - running.startedAt >= TimeUnit.MILLISECONDS.toNanos(pollTimeout)) {
+          cancel();
+          timedOut = true;
+        }
+      }
+      // sent outside the lock, as a failed send unsubscribes
+      if (timedOut) {
+        logger.error("Poll of " + key + " timed out after " + pollTimeout + " ms");
+        send(ERROR_EVENT, "Timed out after " + pollTimeout + " ms", MediaType.TEXT_PLAIN);
+      }
+    }
+
+    synchronized void stop() {
+      if (running != null && !running.cancelled) {
+        cancel();
+      }
+    }
+
+    // guarded by this; a get that never started is gone at once, a started one once it returns
+    private void cancel() {
+      running.cancelled = true;
+      running.future.cancel(true);
+      if (!running.started) {
+        running = null;
+      }
+    }
+
+    void poll() {
+      String name = command;
+      String data;
+      MediaType type = MediaType.TEXT_PLAIN;
+      try {
+        ResponseEntity<byte[]> response = poller.call();
+        data = response.getBody() == null ? ""
+            : new String(response.getBody(), StandardCharsets.UTF_8);
+        // an event's data can't span lines
+        data = data.replace('\r', ' ').replace('\n', ' ');
+        if (response.getHeaders().getContentType() != null) {
+          type = response.getHeaders().getContentType();
+        }
+      } catch (InterruptedException e) {
+        // cancelled as timed out or stopped
+        return;
+      } catch (Exception e) {
+        logger.error("Error polling " + key + ":  " + e.getMessage());
+        name = ERROR_EVENT;
+        data = String.valueOf(e.getMessage());
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        // cancelled as timed out or stopped
+        return;
+      }
+      send(name, data, type);
+    }
+
+    void send(String name, String data, MediaType type) {
+      String id = Long.toString(System.currentTimeMillis());
+      for (SseEmitter subscriber : subscribers) {
+        try {
+          // an event builder can only be sent once
+          subscriber.send(SseEmitter.event().id(id).name(name).data(data, type));
+        } catch (IOException | IllegalStateException e) {
+          // disconnected
+          unsubscribe(key, subscriber);
+        }
+      }
+    }
+
+    private class Get implements Runnable {
+      private final long startedAt = System.nanoTime();
+      // guarded by the poll
+      private Future<?> future;
+      private boolean started;
+      private boolean cancelled;
+
+      @Override
+      public void run() {
+        synchronized (Poll.this) {
+          if (cancelled) {
+            return;
+          }
+          started = true;
+        }
+        try {
+          poll();
+        } finally {
+          synchronized (Poll.this) {
+            if (running == this) {
+              running = null;
+            }
+          }
+        }
+      }
+    }
+  }
+
+}
@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * HTTP content coding helpers for the gzip and deflate (zlib) codings.
+ */
+public final class Compression {
+
+  public static final String GZIP = "gzip";
+  public static final String DEFLATE = "deflate";
+
+  // what this service asks device services for
+  public static final String ACCEPTED = GZIP + ", " + DEFLATE;
+
+  private Compression() {}
+
+  /**
+   * Pick the coding to use for a client's Accept-Encoding header: the one it gives the higher
+   * q-value, gzip when both are equal.
+   *
+   * @return gzip, deflate or null when the client accepts neither
+   */
+  public static String negotiate(String acceptEncoding) {
+    double gzip = quality(acceptEncoding, GZIP);
+    double deflate = quality(acceptEncoding, DEFLATE);
+    if (gzip > 0 && gzip >= deflate) {
+      return GZIP;
+    }
+    return deflate > 0 ? DEFLATE : null;
+  }
+
+  /**
+   * @return true if the Accept-Encoding header allows the given coding, by name or by wildcard
+   */
+  public static boolean accepts(String acceptEncoding, String coding) {
+    return quality(acceptEncoding, coding) > 0;
+  }
+
+  public static boolean isSupported(String coding) {
+    return GZIP.equalsIgnoreCase(coding) || DEFLATE.equalsIgnoreCase(coding);
+  }
+
+  public static byte[] compress(byte[] data, String coding) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+    try (OutputStream out = GZIP.equalsIgnoreCase(coding) ? new GZIPOutputStream(bytes)
+        : new DeflaterOutputStream(bytes)) {
+      out.write(data);
+    }
+    return bytes.toByteArray();
+  }
+
+  public static byte[] decompress(byte[] data, String coding) throws IOException {
+    ByteArrayInputStream compressed = new ByteArrayInputStream(data);
+    try (InputStream in = GZIP.equalsIgnoreCase(coding) ? new GZIPInputStream(compressed)
+        : new InflaterInputStream(compressed)) {
+      return readAll(in);
+    }
+  }
+
+  public static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+      bytes.write(buffer, 0, read);
+    }
+    return bytes.toByteArray();
+  }
+
+  // the q-value the Accept-Encoding header gives the coding, by name or else by wildcard; 0 if
+  // the coding is not accepted
+  private static double quality(String acceptEncoding, String coding) {
+    if (acceptEncoding == null || coding == null) {
+      return 0;
+    }
+    double wildcard = 0;
+    for (String entry : acceptEncoding.split(",")) {
+      String[] parts = entry.split(";");
+      String name = parts[0].trim();
+      double quality = 1;
+      for (int i = 1; i < parts.length; i++) {
+        quality = quality(parts[i], quality);
+      }
+      if (name.equalsIgnoreCase(coding)) {
+        return quality;
+      }
+      if ("*".equals(name)) {
+        wildcard = quality;
+      }
+    }
+    return wildcard;
+  }
+
+  // the value of a q parameter, or the given quality for other or malformed parameters
+  private static double quality(String param, double otherwise) {
+    String[] pair = param.split("=");
+    if (pair.length != 2 || !"q".equalsIgnoreCase(pair[0].trim())) {
+      return otherwise;
+    }
+    try {
+      return Math.max(0, Math.min(1, Double.parseDouble(pair[1].trim())));
+    } catch (NumberFormatException e) {
+      return otherwise;
+    }
+  }
+
+}
@@ -0,0 +1,167 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Bounds the number of commands of one kind in flight to device services. Requests beyond the
+ * concurrency limit wait in a bounded line, ordered by priority and then arrival; when the line is
+ * full, or a request has waited too long, it is turned away with a RateLimitedException.
+ */
+public class ExecutionLane {
+
+  private final String name;
+  private final int concurrency;
+  private final int queueSize;
+  private final long maxWaitNanos;
+
+  private final ReentrantLock lock = new ReentrantLock();
+  // guarded by lock
+  private final PriorityQueue<Ticket> queue = new PriorityQueue<>();
+  private int active;
+  private long arrivals;
+  private long rejected;
+
+  public ExecutionLane(String name, int concurrency, int queueSize, long maxWaitMillis) {
+    this.name = name;
+    this.concurrency = Math.max(1, concurrency);
+    this.queueSize = Math.max(0, queueSize);
+    this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+  }
+
+  /**
+   * Send the command once the lane has room for it.
+   */
+  public ResponseEntity<byte[]> run(Priority priority, CommandSender sender, String body)
+      throws IOException {
+    enter(priority);
+    try {
+      return sender.send(body);
+    } finally {
+      leave();
+    }
+  }
+
+  public int active() {
+    lock.lock();
+    try {
+      return active;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int queued() {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long rejected() {
+    lock.lock();
+    try {
+      return rejected;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void enter(Priority priority) throws IOException {
+    lock.lock();
+    try {
+      if (active < concurrency && queue.isEmpty()) {
+        active++;
+        return;
+      }
+      if (queue.size() >= queueSize) {
+        rejected++;
+        throw new RateLimitedException("The " + name + " lane is full", 1);
+      }
+      Ticket ticket = new Ticket(priority, arrivals++, lock.newCondition());
+      queue.add(ticket);
+      long remaining = maxWaitNanos;
+      while (!ticket.admitted) {
+        if (remaining <= 0) {
+          queue.remove(ticket);
+          rejected++;
+          throw new RateLimitedException("Timed out waiting in the " + name + " lane", 1);
+        }
+        try {
+          remaining = ticket.turn.awaitNanos(remaining);
+        } catch (InterruptedException e) {
+          if (ticket.admitted) {
+            leave();
+          } else {
+            queue.remove(ticket);
+          }
+          Thread.currentThread().interrupt();
+          throw new IOException("Interrupted waiting in the " + name + " lane", e);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void leave() {
+    lock.lock();
+    try {
+      Ticket next = queue.poll();
+      if (next != null) {
+        // hand the slot straight to the next in line
+        next.admitted = true;
+        next.turn.signal();
+      } else {
+        active--;
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static class Ticket implements Comparable<Ticket> {
+    private final Priority priority;
+    private final long arrival;
+    private final Condition turn;
+    private boolean admitted;
+
+    Ticket(Priority priority, long arrival, Condition turn) {
+      this.priority = priority;
+      this.arrival = arrival;
+      this.turn = turn;
+    }
+
+    @Override
+    public int compareTo(Ticket other) {
+      int byPriority = priority.compareTo(other.priority);
+      return byPriority != 0 ? byPriority : Long.compare(arrival, other.arrival);
+    }
+  }
+
+}
@@ -0,0 +1,32 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+/**
+ * Thrown when an Idempotency-Key is used again with a different put body. Reported as HTTP 400.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public IdempotencyKeyReusedException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,175 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.edgexfoundry.domain.meta.Command;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * The outcome of put commands sent with an Idempotency-Key header, so that a retried put is not
+ * sent to the device a second time. A put repeating the key of an earlier put to the same device
+ * and command gets the earlier put's response (marked with Idempotent-Replayed: true) instead;
+ * while the earlier put is still in flight, the repeat waits for it. A repeat with a different
+ * body is refused. A put that fails without a response from the device service is forgotten, so
+ * that it can be retried. Outcomes are kept for command.idempotency.ttl milliseconds, at most
+ * command.idempotency.capacity of them; a capacity of 0 turns the table off.
+ */
+@Component
+public class IdempotencyTable {
+
+  public static final String HEADER = "Idempotency-Key";
+  public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final long DEFAULT_TTL = 600000;
+
+  private volatile int capacity = DEFAULT_CAPACITY;
+  private volatile long ttl = DEFAULT_TTL;
+
+  // guarded by itself; in creation order, which is also expiry order
+  private final Map<String, Outcome> outcomes = new LinkedHashMap<>();
+
+  @Value("${command.idempotency.capacity:1024}")
+  public void setCapacity(int capacity) {
+    this.capacity = Math.max(0, capacity);
+  }
+
+  @Value("${command.idempotency.ttl:600000}")
+  public void setTtl(long ttl) {
+    this.ttl = ttl;
+  }
+
+  /**
+   * Send the put, unless a put with the same key was sent before.
+   *
+   * @param key - the client's Idempotency-Key, null to always send
+   * @param deviceId - the database generated id of the device
+   * @param command - the command put to
+   * @param body - the put body
+   * @param sender - sends the put
+   * @return the device service's response to this or the earlier put
+   * @throws IdempotencyKeyReusedException if the key was used before with a different body
+   */
+  public ResponseEntity<byte[]> submit(String key, String deviceId, Command command, String body,
+      CommandSender sender) throws IOException {
+    if (key == null || key.isEmpty() || capacity == 0) {
+      return sender.send(body);
+    }
+    String scoped = deviceId + "/" + command.getName() + "/" + key;
+    Outcome outcome;
+    boolean original = false;
+    synchronized (outcomes) {
+      expire(System.nanoTime());
+      outcome = outcomes.get(scoped);
+      if (outcome == null) {
+        outcome = new Outcome(body, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttl));
+        outcomes.put(scoped, outcome);
+        original = true;
+      } else if (!Objects.equals(outcome.body, body)) {
+        throw new IdempotencyKeyReusedException(
+            HEADER + " " + key + " was already used with a different body");
+      }
+    }
+    if (original) {
+      return send(scoped, outcome, body, sender);
+    }
+    return replay(outcome);
+  }
+
+  public int size() {
+    synchronized (outcomes) {
+      return outcomes.size();
+    }
+  }
+
+  private ResponseEntity<byte[]> send(String scoped, Outcome outcome, String body,
+      CommandSender sender) throws IOException {
+    try {
+      ResponseEntity<byte[]> response = sender.send(body);
+      outcome.response.complete(response);
+      return response;
+    } catch (IOException | RuntimeException e) {
+      synchronized (outcomes) {
+        outcomes.remove(scoped, outcome);
+      }
+      outcome.response.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private ResponseEntity<byte[]> replay(Outcome outcome) throws IOException {
+    ResponseEntity<byte[]> response;
+    try {
+      response = outcome.response.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted waiting for the original put", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause().getMessage(), e.getCause());
+    }
+    HttpHeaders headers = new HttpHeaders();
+    headers.putAll(response.getHeaders());
+    headers.set(REPLAYED_HEADER, "true");
+    return new ResponseEntity<>(response.getBody(), headers, response.getStatusCode());
+  }
+
+  // guarded by outcomes; drop expired and, over capacity, the oldest completed outcomes
+  private void expire(long now) {
+    int excess = outcomes.size() - capacity + 1;
+    Iterator<Outcome> iterator = outcomes.values().iterator();
+    while (iterator.hasNext()) {
+      Outcome outcome = iterator.next();
+      boolean expired = outcome.expires - now <= 0;
+      if (!expired && excess <= 0) {
+        break;
+      }
+      if (outcome.response.isDone()) {
+        iterator.remove();
+        excess--;
+      }
+    }
+  }
+
+  private static class Outcome {
+    private final String body;
+    private final long expires;
+    private final CompletableFuture<ResponseEntity<byte[]>> response = new CompletableFuture<>();
+
+    Outcome(String body, long expires) {
+      this.body = body;
+      this.expires = expires;
+    }
+  }
+
+}
@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * The latest successful get command result per device and command, with the time it was received
+ * and how long the device service took to answer. Holds at most command.lastvalue.capacity
+ * results, dropping the least recently used; a capacity of 0 turns the store off. Clients opt in
+ * to a stored result with the Cache-Control request directives max-stale (serve a result no older
+ * than this many seconds without calling the device) and stale-if-error (serve a result no older
+ * than this many seconds if the device can't be read).
+ */
+@Component
+public class LastValueStore {
+
+  public static final String LATENCY_HEADER = "X-Command-Latency";
+
+  private static final int DEFAULT_CAPACITY = 1024;
+  private static final String MAX_STALE = "max-stale";
+  private static final String STALE_IF_ERROR = "stale-if-error";
+  private static final String WARNING_STALE = "110 - \"Response is Stale\"";
+  private static final String WARNING_REVALIDATION_FAILED = "111 - \"Revalidation Failed\"";
+
+  private volatile int capacity = DEFAULT_CAPACITY;
+
+  // guarded by itself; access ordered for least recently used eviction
+  private final Map<String, LastValue> values = new LinkedHashMap<>(16, 0.75f, true);
+
+  @Value("${command.lastvalue.capacity:1024}")
+  public void setCapacity(int capacity) {
+    this.capacity = Math.max(0, capacity);
+  }
+
+  /**
+   * Record a result received from a device service. Only 2xx results are kept.
+   *
+   * @param deviceId - the database generated id of the device
+   * @param command - the name of the command
+   * @param response - the result as returned by the device service
+   * @param latency - milliseconds the device service took to answer
+   */
+  public void record(String deviceId, String command, ResponseEntity<byte[]> response,
+      long latency) {
+    if (capacity == 0 || !response.getStatusCode().is2xxSuccessful()
+        || response.getBody() == null) {
+      return;
+    }
+    LastValue value = new LastValue(response.getBody(),
+        response.getHeaders().getFirst(HttpHeaders.CONTENT_TYPE),
+        response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING),
+        System.currentTimeMillis(), (int) Math.min(Integer.MAX_VALUE, latency));
+    synchronized (values) {
+      values.put(key(deviceId, command), value);
+      while (values.size() > capacity) {
+        values.remove(values.keySet().iterator().next());
+      }
+    }
+  }
+
+  /**
+   * @return the stored result if the client's max-stale allows it, otherwise null
+   */
+  public ResponseEntity<byte[]> fresh(String deviceId, String command, String cacheControl,
+      String acceptEncoding) throws IOException {
+    return lookup(deviceId, command, seconds(cacheControl, MAX_STALE), acceptEncoding,
+        WARNING_STALE);
+  }
+
+  /**
+   * @return the stored result if the client's stale-if-error allows it, otherwise null
+   */
+  public ResponseEntity<byte[]> fallback(String deviceId, String command, String cacheControl,
+      String acceptEncoding) throws IOException {
+    return lookup(deviceId, command, seconds(cacheControl, STALE_IF_ERROR), acceptEncoding,
+        WARNING_REVALIDATION_FAILED);
+  }
+
+  public int size() {
+    synchronized (values) {
+      return values.size();
+    }
+  }
+
+  private ResponseEntity<byte[]> lookup(String deviceId, String command, long maxAge,
+      String acceptEncoding, String warning) throws IOException {
+    if (maxAge < 0) {
+      return null;
+    }
+    LastValue value;
+    synchronized (values) {
+      value = values.get(key(deviceId, command));
+    }
+    if (value == null) {
+      return null;
+    }
+    long age = Math.max(0, (System.currentTimeMillis() - value.received) / 1000);
+    if (age > maxAge) {
+      return null;
+    }
+    HttpHeaders headers = new HttpHeaders();
+    if (value.contentType != null) {
+      headers.set(HttpHeaders.CONTENT_TYPE, value.contentType);
+    }
+    byte[] body = value.body;
+    if (value.coding != null) {
+      headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      if (Compression.accepts(acceptEncoding, value.coding)) {
+        headers.set(HttpHeaders.CONTENT_ENCODING, value.coding);
+      } else {
+        body = Compression.decompress(body, value.coding);
+      }
+    }
+    headers.set(HttpHeaders.AGE, Long.toString(age));
+    headers.set(HttpHeaders.WARNING, warning);
+    headers.setLastModified(value.received);
+    headers.set(LATENCY_HEADER, Integer.toString(value.latency));
+    return new ResponseEntity<>(body, headers, HttpStatus.OK);
+  }
+
+  /**
+   * @return the seconds given with the Cache-Control directive, Long.MAX_VALUE if given without
+   *         seconds, or -1 if the directive is absent or malformed
+   */
+  static long seconds(String cacheControl, String directive) {
+    if (cacheControl == null) {
+      return -1;
+    }
+    for (String part : cacheControl.split(",")) {
+      String token = part.trim();
+      int equals = token.indexOf('=');
+      String name = equals < 0 ? token : token.substring(0, equals).trim();
+      if (!name.equalsIgnoreCase(directive)) {
+        continue;
+      }
+      if (equals < 0) {
+        return Long.MAX_VALUE;
+      }
+      try {
+        long seconds = Long.parseLong(token.substring(equals + 1).trim().replace("\"", ""));
+        return seconds < 0 ? -1 : seconds;
+      } catch (NumberFormatException e) {
+        return -1;
+      }
+    }
+    return -1;
+  }
+
+  private static String key(String deviceId, String command) {
+    return deviceId + "/" + command;
+  }
+
+  private static class LastValue {
+    private final byte[] body;
+    private final String contentType;
+    private final String coding;
+    private final long received;
+    private final int latency;
+
+    LastValue(byte[] body, String contentType, String coding, long received, int latency) {
+      this.body = body;
+      this.contentType = contentType;
+      this.coding = coding;
+      this.received = received;
+      this.latency = latency;
+    }
+  }
+
+}
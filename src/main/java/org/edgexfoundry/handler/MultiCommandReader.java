@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.domain.CommandReading;
+import org.edgexfoundry.domain.meta.Command;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs the get commands of multi-command reads concurrently on one fixed size pool shared by all
+ * requests, so that no more than command.multi.concurrency of these reads are in flight at a time
+ * in all, beyond what the get lane admits. Each command's outcome is reported separately; one
+ * failing command does not fail the others. The device service connections are kept alive and
+ * reused across the reads.
+ */
+@Component
+public class MultiCommandReader {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(MultiCommandReader.class);
+
+  @Value("${command.multi.concurrency:8}")
+  private int concurrency;
+
+  @Value("${server.virtualthreads:false}")
+  private boolean virtualThreads;
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private ExecutorService executor;
+
+  @PostConstruct
+  public void init() {
+    int threads = Math.max(1, concurrency);
+    executor = virtualThreads && VirtualThreads.isAvailable()
+        ? Executors.newFixedThreadPool(threads, VirtualThreads.factory())
+        : Executors.newFixedThreadPool(threads);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Read every command concurrently.
+   *
+   * @param commands - the commands to read, keyed by the name the client knows them by
+   * @param senders - gives the sender issuing a command's get to its device service
+   * @return one reading per command, in the order given
+   */
+  public List<CommandReading> read(Map<String, Command> commands,
+      Function<Command, CommandSender> senders) {
+    Map<String, Future<CommandReading>> pending = new LinkedHashMap<>();
+    for (Map.Entry<String, Command> entry : commands.entrySet()) {
+      String key = entry.getKey();
+      CommandSender sender = senders.apply(entry.getValue());
+      pending.put(key, executor.submit(() -> readOne(key, sender)));
+    }
+    List<CommandReading> readings = new ArrayList<>(pending.size());
+    for (Map.Entry<String, Future<CommandReading>> entry : pending.entrySet()) {
+      try {
+        readings.add(entry.getValue().get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        readings.add(failed(entry.getKey(), HttpStatus.SERVICE_UNAVAILABLE, "Interrupted"));
+      } catch (ExecutionException e) {
+        readings.add(failed(entry.getKey(), HttpStatus.SERVICE_UNAVAILABLE,
+            e.getCause().getMessage()));
+      }
+    }
+    return readings;
+  }
+
+  private CommandReading readOne(String key, CommandSender sender) {
+    try {
+      ResponseEntity<byte[]> response = sender.send(null);
+      CommandReading reading = new CommandReading(key, response.getStatusCode().value());
+      String body = response.getBody() == null ? null
+          : new String(response.getBody(), StandardCharsets.UTF_8);
+      JsonNode value = body == null ? null : parseJson(body);
+      if (value != null) {
+        reading.setValue(value);
+      } else {
+        reading.setText(body);
+      }
+      return reading;
+    } catch (RateLimitedException e) {
+      return failed(key, HttpStatus.TOO_MANY_REQUESTS, e.getMessage());
+    } catch (Exception e) {
+      logger.error("Error reading command " + key + ":  " + e.getMessage());
+      return failed(key, HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+    }
+  }
+
+  // only a single well formed JSON value is embedded in the combined result, else null
+  private JsonNode parseJson(String body) throws IOException {
+    if (body.trim().isEmpty()) {
+      return null;
+    }
+    try (JsonParser parser = mapper.getFactory().createParser(body)) {
+      JsonNode value = mapper.readTree(parser);
+      return parser.nextToken() == null ? value : null;
+    } catch (JsonProcessingException e) {
+      return null;
+    }
+  }
+
+  private static CommandReading failed(String key, HttpStatus status, String message) {
+    CommandReading reading = new CommandReading(key, status.value());
+    reading.setMessage(message);
+    return reading;
+  }
+
+}
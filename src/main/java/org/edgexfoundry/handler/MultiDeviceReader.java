@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.meta.Device;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Looks up a set of devices by id and/or name at once. Devices in the DeviceCache are served from
+ * it. When device.multiget.catalogThreshold or more are missing and the full catalog has not
+ * been read yet, the catalog is read from metadata in one call instead; otherwise the missing
+ * devices are read from metadata concurrently on a fixed size pool of device.multiget.concurrency
+ * threads. Devices read are added to the cache; unknown ids and names are left out.
+ */
+@Component
+public class MultiDeviceReader {
+
+  @Value("${device.multiget.concurrency:8}")
+  private int concurrency;
+
+  @Value("${server.virtualthreads:false}")
+  private boolean virtualThreads;
+
+  private int catalogThreshold = 32;
+
+  @Autowired
+  DeviceClient deviceClient;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  private ExecutorService executor;
+
+  @Value("${device.multiget.catalogThreshold:32}")
+  public void setCatalogThreshold(int catalogThreshold) {
+    this.catalogThreshold = catalogThreshold;
+  }
+
+  @PostConstruct
+  public void init() {
+    int threads = Math.max(1, concurrency);
+    executor = virtualThreads && VirtualThreads.isAvailable()
+        ? Executors.newFixedThreadPool(threads, VirtualThreads.factory())
+        : Executors.newFixedThreadPool(threads);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Look up the devices with the given ids and names.
+   *
+   * @param ids - database generated ids of devices, may be null
+   * @param names - names of devices, may be null
+   * @return the devices found, each once, in the order asked for (ids first)
+   * @throws ExecutionException if metadata could not be read
+   */
+  public List<Device> read(List<String> ids, List<String> names)
+      throws ExecutionException, InterruptedException {
+    List<String> keys = new ArrayList<>();
+    Map<String, Device> found = lookup(ids, names, keys);
+    if (found.size() < keys.size() && catalogThreshold > 0
+        && keys.size() - found.size() >= catalogThreshold && !deviceCache.isLoaded()) {
+      long asOf = System.nanoTime();
+      deviceCache.refresh(deviceClient.devices(), asOf);
+      found = lookup(ids, names, keys);
+    } else if (found.size() < keys.size()) {
+      fetch(keys, found);
+    }
+    Map<String, Device> devices = new LinkedHashMap<>();
+    for (String key : keys) {
+      Device device = found.get(key);
+      if (device != null) {
+        devices.putIfAbsent(device.getId(), device);
+      }
+    }
+    return new ArrayList<>(devices.values());
+  }
+
+  // keys are id:<id> and name:<name>, collected in order; returns the cached devices by key
+  private Map<String, Device> lookup(List<String> ids, List<String> names, List<String> keys) {
+    keys.clear();
+    Map<String, Device> found = new LinkedHashMap<>();
+    if (ids != null) {
+      for (String id : ids) {
+        keys.add("id:" + id);
+        Device device = deviceCache.device(id);
+        if (device != null) {
+          found.put("id:" + id, device);
+        }
+      }
+    }
+    if (names != null) {
+      for (String name : names) {
+        keys.add("name:" + name);
+        Device device = deviceCache.deviceForName(name);
+        if (device != null) {
+          found.put("name:" + name, device);
+        }
+      }
+    }
+    return found;
+  }
+
+  private void fetch(List<String> keys, Map<String, Device> found)
+      throws ExecutionException, InterruptedException {
+    Map<String, Future<Device>> pending = new LinkedHashMap<>();
+    for (String key : keys) {
+      if (!found.containsKey(key) && !pending.containsKey(key)) {
+        pending.put(key, executor.submit(() -> fetchOne(key)));
+      }
+    }
+    for (Map.Entry<String, Future<Device>> entry : pending.entrySet()) {
+      Device device = entry.getValue().get();
+      if (device != null) {
+        deviceCache.put(device);
+        found.put(entry.getKey(), device);
+      }
+    }
+  }
+
+  private Device fetchOne(String key) {
+    try {
+      return key.startsWith("id:") ? deviceClient.device(key.substring(3))
+          : deviceClient.deviceForName(key.substring(5));
+    } catch (javax.ws.rs.NotFoundException expNotFound) {
+      return null;
+    }
+  }
+
+}
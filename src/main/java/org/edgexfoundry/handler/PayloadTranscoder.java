@@ -0,0 +1,138 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import org.edgexfoundry.domain.serializer.BinaryJacksonHttpMessageConverter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Transcodes JSON command results from device services to CBOR or Smile for clients that prefer
+ * them, streaming parser events straight into the binary generator without building a tree.
+ * Results that are not JSON are passed through untouched.
+ */
+@Component
+public class PayloadTranscoder {
+
+  private final JsonFactory json = new JsonFactory();
+  private final CBORFactory cbor = new CBORFactory();
+  private final SmileFactory smile = new SmileFactory();
+
+  /**
+   * Find the binary format a client asks for ahead of JSON.
+   *
+   * @param accept - the client's Accept header
+   * @return application/cbor, application/x-jackson-smile, or null if JSON (or anything) will do
+   */
+  public MediaType negotiate(String accept) {
+    if (accept == null) {
+      return null;
+    }
+    List<MediaType> types;
+    try {
+      types = MediaType.parseMediaTypes(accept);
+    } catch (InvalidMediaTypeException e) {
+      return null;
+    }
+    MediaType.sortBySpecificityAndQuality(types);
+    for (MediaType type : types) {
+      if (type.getQualityValue() <= 0) {
+        continue;
+      }
+      if (BinaryJacksonHttpMessageConverter.APPLICATION_CBOR.equalsTypeAndSubtype(type)) {
+        return BinaryJacksonHttpMessageConverter.APPLICATION_CBOR;
+      }
+      if (BinaryJacksonHttpMessageConverter.APPLICATION_SMILE.equalsTypeAndSubtype(type)) {
+        return BinaryJacksonHttpMessageConverter.APPLICATION_SMILE;
+      }
+      if (type.includes(MediaType.APPLICATION_JSON)) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @param response - the command result as returned by the device service
+   * @param target - the binary format to produce, or null to leave the result as is
+   * @return the result in the target format, or the result unchanged if it is not JSON
+   */
+  public ResponseEntity<byte[]> transcode(ResponseEntity<byte[]> response, MediaType target)
+      throws IOException {
+    if (target == null || response.getBody() == null || !isJson(response.getHeaders())) {
+      return response;
+    }
+    byte[] body = response.getBody();
+    String coding = response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+    if (coding != null) {
+      if (!Compression.isSupported(coding)) {
+        return response;
+      }
+      body = Compression.decompress(body, coding);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream(body.length);
+    try (JsonParser parser = json.createParser(body);
+        JsonGenerator generator = generatorFactory(target).createGenerator(out)) {
+      while (parser.nextToken() != null) {
+        generator.copyCurrentEvent(parser);
+      }
+    } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+      // labelled JSON but isn't; leave it to the client
+      return response;
+    }
+    HttpHeaders headers = new HttpHeaders();
+    headers.putAll(response.getHeaders());
+    headers.remove(HttpHeaders.CONTENT_ENCODING);
+    headers.remove(HttpHeaders.CONTENT_LENGTH);
+    headers.setContentType(target);
+    headers.set(HttpHeaders.VARY, HttpHeaders.ACCEPT + ", " + HttpHeaders.ACCEPT_ENCODING);
+    return new ResponseEntity<>(out.toByteArray(), headers, response.getStatusCode());
+  }
+
+  private JsonFactory generatorFactory(MediaType target) {
+    return BinaryJacksonHttpMessageConverter.APPLICATION_SMILE.equalsTypeAndSubtype(target)
+        ? smile : cbor;
+  }
+
+  // device services answer JSON, sometimes labelled as plain text
+  private static boolean isJson(HttpHeaders headers) {
+    MediaType type;
+    try {
+      type = headers.getContentType();
+    } catch (InvalidMediaTypeException e) {
+      return false;
+    }
+    return type == null || MediaType.APPLICATION_JSON.isCompatibleWith(type)
+        || type.getSubtype().endsWith("+json") || MediaType.TEXT_PLAIN.isCompatibleWith(type);
+  }
+
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+/**
+ * Priority class of a command request, chosen by the client with the X-Command-Priority header.
+ * Higher priority requests are let into a busy execution lane first.
+ */
+public enum Priority {
+  HIGH, NORMAL, LOW;
+
+  public static final String HEADER = "X-Command-Priority";
+
+  /**
+   * @return the priority named (case insensitive), or NORMAL if none or an unknown one is named
+   */
+  public static Priority parse(String name) {
+    if (name != null) {
+      for (Priority priority : values()) {
+        if (priority.name().equalsIgnoreCase(name.trim())) {
+          return priority;
+        }
+      }
+    }
+    return NORMAL;
+  }
+}
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.PostConstruct;
+
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * Last writer wins coalescing of put commands, for the commands named in
+ * command.coalesce.commands. Only one put per device and command is in flight at a time. A put
+ * arriving while one is in flight waits for its turn; if a newer put arrives before that turn
+ * comes, the waiting put is dropped and its caller is told its write was coalesced, with an HTTP
+ * 202 marked X-Command-Coalesced: true. The puts in flight and waiting are reported as the
+ * coalesce.inflight and coalesce.waiting gauges.
+ */
+@Component
+public class PutCoalescer {
+
+  public static final String COALESCED_HEADER = "X-Command-Coalesced";
+
+  private static final byte[] COALESCED_BODY =
+      "{\"coalesced\":true,\"message\":\"Superseded by a newer write\"}"
+          .getBytes(StandardCharsets.UTF_8);
+
+  @Autowired
+  CommandMetrics metrics;
+
+  private Set<String> commands = Collections.emptySet();
+
+  // only device and command pairs with a put in flight have a slot
+  private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void init() {
+    metrics.gauge("coalesce.inflight", slots::size);
+    metrics.gauge("coalesce.waiting", this::waiting);
+  }
+
+  @Value("${command.coalesce.commands:}")
+  public void setCommands(String[] names) {
+    commands = new HashSet<>(Arrays.asList(names));
+  }
+
+  /**
+   * Send the put, or coalesce it with other puts to the same device and command if the command
+   * is configured for coalescing.
+   *
+   * @return the device service's response, or HTTP 202 if the write was superseded
+   */
+  public ResponseEntity<byte[]> submit(String deviceId, Command command, String body,
+      CommandSender sender) throws IOException {
+    if (!commands.contains(command.getName())) {
+      return sender.send(body);
+    }
+    String key = deviceId + "/" + command.getName();
+    Slot slot;
+    Waiter waiter = null;
+    while (true) {
+      slot = slots.computeIfAbsent(key, Slot::new);
+      synchronized (slot) {
+        if (slot.removed) {
+          // freed and removed since we looked it up; the next put takes a new slot
+          continue;
+        }
+        if (slot.busy) {
+          if (slot.pending != null) {
+            slot.pending.turn.complete(false);
+            metrics.increment("coalesce.superseded");
+          }
+          waiter = new Waiter();
+          slot.pending = waiter;
+        } else {
+          slot.busy = true;
+        }
+        break;
+      }
+    }
+    if (waiter != null && !awaitTurn(slot, waiter)) {
+      HttpHeaders headers = new HttpHeaders();
+      headers.setContentType(MediaType.APPLICATION_JSON);
+      headers.set(COALESCED_HEADER, "true");
+      return new ResponseEntity<>(COALESCED_BODY, headers, HttpStatus.ACCEPTED);
+    }
+    try {
+      return sender.send(body);
+    } finally {
+      handOff(slot);
+    }
+  }
+
+  private boolean awaitTurn(Slot slot, Waiter waiter) throws IOException {
+    try {
+      return waiter.turn.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      synchronized (slot) {
+        if (slot.pending == waiter) {
+          slot.pending = null;
+          waiter.turn.complete(false);
+        }
+      }
+      if (waiter.turn.getNow(false)) {
+        // the turn was handed over just as we gave up; pass it on
+        handOff(slot);
+      }
+      throw new IOException("Interrupted waiting to send coalesced put", e);
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  private void handOff(Slot slot) {
+    synchronized (slot) {
+      if (slot.pending != null) {
+        slot.pending.turn.complete(true);
+        slot.pending = null;
+      } else {
+        slot.busy = false;
+        slot.removed = true;
+        slots.remove(slot.key, slot);
+      }
+    }
+  }
+
+  private int waiting() {
+    int waiting = 0;
+    for (Slot slot : slots.values()) {
+      synchronized (slot) {
+        if (slot.pending != null) {
+          waiting++;
+        }
+      }
+    }
+    return waiting;
+  }
+
+  private static class Slot {
+    private final String key;
+    // guarded by this
+    private boolean busy;
+    private boolean removed;
+    private Waiter pending;
+
+    Slot(String key) {
+      this.key = key;
+    }
+  }
+
+  private static class Waiter {
+    private final CompletableFuture<Boolean> turn = new CompletableFuture<>();
+  }
+
+}
@@ -0,0 +1,132 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.domain.meta.Put;
+import org.edgexfoundry.domain.meta.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Checks put bodies before they are sent to the device service. A put body must be a JSON object
+ * whose fields are among the parameter names of the command's put, or, for puts without parameter
+ * names, among the expected values of its responses; puts declaring neither only need a well
+ * formed object. The accepted names are gathered once per command, and the body is checked with
+ * a streaming parse that skips over values, so no tree is built. Off unless
+ * command.put.validation=true, as free-form put bodies are turned away once it is on.
+ */
+@Component
+public class PutValidator {
+
+  private static final int MAX_COMMANDS = 4096;
+
+  @Value("${command.put.validation:false}")
+  private boolean enabled;
+
+  private final JsonFactory json = new JsonFactory();
+
+  // command id (or name) and modification time to the accepted field names, empty for any
+  private final Map<String, Set<String>> accepted = new ConcurrentHashMap<>();
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  /**
+   * @param command - the command the body is put to
+   * @param body - the put body
+   * @return null if the body may be sent, or why it may not
+   */
+  public String validate(Command command, String body) {
+    if (!enabled || command.getPut() == null) {
+      return null;
+    }
+    if (accepted.size() >= MAX_COMMANDS) {
+      // commands of replaced profiles are never asked for again
+      accepted.clear();
+    }
+    Set<String> names = accepted.computeIfAbsent(key(command), k -> compile(command.getPut()));
+    if (body == null || body.trim().isEmpty()) {
+      return names.isEmpty() ? null : "Missing put body for " + command.getName();
+    }
+    try (JsonParser parser = json.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return "Put body for " + command.getName() + " is not a JSON object";
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.getCurrentName();
+        if (!names.isEmpty() && !names.contains(name)) {
+          return "Unknown parameter " + name + " for " + command.getName();
+        }
+        parser.nextToken();
+        parser.skipChildren();
+      }
+      if (parser.nextToken() != null) {
+        return "Unexpected content after put body for " + command.getName();
+      }
+      return null;
+    } catch (JsonProcessingException e) {
+      return "Malformed put body for " + command.getName() + ":  " + e.getOriginalMessage();
+    } catch (IOException e) {
+      return "Unreadable put body for " + command.getName();
+    }
+  }
+
+  private static Set<String> compile(Put put) {
+    Set<String> names = new HashSet<>();
+    addAll(names, put.getParameterNames());
+    if (names.isEmpty() && put.getResponses() != null) {
+      for (Response response : put.getResponses()) {
+        addAll(names, response.getExpectedValues());
+      }
+    }
+    return names.isEmpty() ? Collections.emptySet() : names;
+  }
+
+  private static void addAll(Set<String> names, List<String> values) {
+    if (values != null) {
+      for (String value : values) {
+        if (value != null && !value.isEmpty()) {
+          names.add(value);
+        }
+      }
+    }
+  }
+
+  // profiles are replaced, not changed in place, so a changed command has a new modified time
+  private static String key(Command command) {
+    return (command.getId() == null ? command.getName() : command.getId()) + "@"
+        + command.getModified();
+  }
+
+}
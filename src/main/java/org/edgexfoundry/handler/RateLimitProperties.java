@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Command rate limits. Per device limits are set by device profile name
+ * (command.ratelimit.profiles.[profile].rate/burst) and apply to each device using that profile.
+ * Per device service limits are set by service name
+ * (command.ratelimit.services.[service].rate/burst) and are shared by all devices of that
+ * service. Devices and services without a limit are not limited.
+ */
+@Component
+@ConfigurationProperties(prefix = "command.ratelimit")
+public class RateLimitProperties {
+
+  private Map<String, Limit> profiles = new HashMap<>();
+  private Map<String, Limit> services = new HashMap<>();
+  private int queueSize = 10;
+  private long maxWait = 2000;
+
+  public Map<String, Limit> getProfiles() {
+    return profiles;
+  }
+
+  public void setProfiles(Map<String, Limit> profiles) {
+    this.profiles = profiles;
+  }
+
+  public Map<String, Limit> getServices() {
+    return services;
+  }
+
+  public void setServices(Map<String, Limit> services) {
+    this.services = services;
+  }
+
+  /**
+   * @return the most commands allowed to wait on a single device or service limit
+   */
+  public int getQueueSize() {
+    return queueSize;
+  }
+
+  public void setQueueSize(int queueSize) {
+    this.queueSize = queueSize;
+  }
+
+  /**
+   * @return the longest (in milliseconds) a command waits on a limit before being turned away
+   */
+  public long getMaxWait() {
+    return maxWait;
+  }
+
+  public void setMaxWait(long maxWait) {
+    this.maxWait = maxWait;
+  }
+
+  public static class Limit {
+
+    private double rate;
+    private int burst = 1;
+
+    /**
+     * @return commands allowed per second
+     */
+    public double getRate() {
+      return rate;
+    }
+
+    public void setRate(double rate) {
+      this.rate = rate;
+    }
+
+    /**
+     * @return commands allowed back to back before the rate applies
+     */
+    public int getBurst() {
+      return burst;
+    }
+
+    public void setBurst(int burst) {
+      this.burst = burst;
+    }
+  }
+
+}
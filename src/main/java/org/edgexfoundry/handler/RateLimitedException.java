@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+/**
+ * Thrown when a command is turned away by a rate limit. Reported as HTTP 429 with a Retry-After
+ * header.
+ */
+public class RateLimitedException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final long retryAfter;
+
+  /**
+   * @param message - why the command was turned away
+   * @param retryAfter - seconds the client should wait before trying again
+   */
+  public RateLimitedException(String message, long retryAfter) {
+    super(message);
+    this.retryAfter = retryAfter;
+  }
+
+  public long getRetryAfter() {
+    return retryAfter;
+  }
+
+}
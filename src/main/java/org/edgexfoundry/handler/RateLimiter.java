@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.handler.RateLimitProperties.Limit;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Enforces the per device (by profile) and per device service command rate limits. A command over
+ * a limit waits in a short bounded line for its token; once the line is full, or the wait would
+ * be longer than allowed, the command is turned away with a RateLimitedException. Limits are
+ * looked up on every command, so a device whose profile changed on a catalog refresh, or a limit
+ * changed in the properties, gets a bucket for its new limit. Device buckets are kept by device
+ * id and dropped once the device is removed from the DeviceCache.
+ */
+@Component
+public class RateLimiter {
+
+  private static final String METRIC_PREFIX = "ratelimit.";
+
+  @Autowired
+  RateLimitProperties properties;
+
+  @Autowired
+  CommandMetrics metrics;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  private final Map<String, TokenBucket> deviceBuckets = new ConcurrentHashMap<>();
+  private final Map<String, TokenBucket> serviceBuckets = new ConcurrentHashMap<>();
+
+  @PostConstruct
+  public void init() {
+    metrics.gauge(METRIC_PREFIX + "waiting", this::waiting);
+    deviceCache.addRemovalListener(deviceBuckets::remove);
+  }
+
+  /**
+   * Wait for the device's turn under its rate limits, if any apply.
+   *
+   * @throws RateLimitedException if the device or its service has too many commands waiting
+   */
+  public void acquire(Device device) {
+    String profile = device.getProfile() == null ? null : device.getProfile().getName();
+    String service = device.getService() == null ? null : device.getService().getName();
+    // by id, so that a renamed device keeps its bucket and a removed one can be dropped
+    String deviceKey = device.getId() == null ? device.getName() : device.getId();
+    TokenBucket deviceBucket =
+        bucket(deviceBuckets, deviceKey, properties.getProfiles(), profile);
+    TokenBucket serviceBucket = bucket(serviceBuckets, service, properties.getServices(), service);
+    long deviceWait = reserve(deviceBucket, "profile." + profile, "Device " + device.getName());
+    long serviceWait;
+    try {
+      serviceWait = reserve(serviceBucket, "service." + service, "Device service " + service);
+    } catch (RateLimitedException e) {
+      if (deviceBucket != null) {
+        release(deviceBucket, deviceWait);
+        deviceBucket.refund();
+      }
+      throw e;
+    }
+    try {
+      long wait = Math.max(deviceWait, serviceWait);
+      if (wait > 0) {
+        TimeUnit.NANOSECONDS.sleep(wait);
+      }
+    } catch (InterruptedException e) {
+      // the reserved tokens will not be used
+      refund(deviceBucket);
+      refund(serviceBucket);
+      Thread.currentThread().interrupt();
+      throw new RateLimitedException("Interrupted waiting for rate limit", 1);
+    } finally {
+      release(deviceBucket, deviceWait);
+      release(serviceBucket, serviceWait);
+    }
+  }
+
+  private TokenBucket bucket(Map<String, TokenBucket> buckets, String key,
+      Map<String, Limit> limits, String limitName) {
+    if (key == null || limitName == null) {
+      return null;
+    }
+    Limit limit = limits.get(limitName);
+    if (limit == null || limit.getRate() <= 0) {
+      return null;
+    }
+    return buckets.compute(key,
+        (k, bucket) -> bucket != null && bucket.hasLimit(limit.getRate(), limit.getBurst())
+            ? bucket : new TokenBucket(limit.getRate(), limit.getBurst()));
+  }
+
+  private long reserve(TokenBucket bucket, String metric, String subject) {
+    if (bucket == null) {
+      return 0;
+    }
+    long wait = bucket.reserve(properties.getQueueSize(),
+        TimeUnit.MILLISECONDS.toNanos(properties.getMaxWait()));
+    if (wait < 0) {
+      metrics.increment(METRIC_PREFIX + metric + ".rejected");
+      long retryAfter = TimeUnit.NANOSECONDS.toSeconds(bucket.retryAfterNanos()) + 1;
+      throw new RateLimitedException(subject + " is over its command rate limit", retryAfter);
+    }
+    if (wait > 0) {
+      metrics.increment(METRIC_PREFIX + metric + ".delayed");
+    }
+    return wait;
+  }
+
+  private void release(TokenBucket bucket, long wait) {
+    if (bucket != null && wait > 0) {
+      bucket.doneWaiting();
+    }
+  }
+
+  private void refund(TokenBucket bucket) {
+    if (bucket != null) {
+      bucket.refund();
+    }
+  }
+
+  private int waiting() {
+    int waiting = 0;
+    for (TokenBucket bucket : deviceBuckets.values()) {
+      waiting += bucket.waiting();
+    }
+    for (TokenBucket bucket : serviceBuckets.values()) {
+      waiting += bucket.waiting();
+    }
+    return waiting;
+  }
+
+}
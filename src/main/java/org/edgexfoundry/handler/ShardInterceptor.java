@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.meta.Device;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Hands requests for a single device (by id or name) owned by a peer instance to the ShardRouter
+ * before they reach the controller. Devices requested by name are looked up to find their id,
+ * from the DeviceCache when possible. Requests already forwarded by a peer are always served here.
+ */
+@Component
+public class ShardInterceptor extends HandlerInterceptorAdapter {
+
+  @Autowired
+  ShardRouter shardRouter;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  @Autowired
+  DeviceClient deviceClient;
+
+  @Override
+  public boolean preHandle(HttpServletRequest request, HttpServletResponse response,
+      Object handler) throws Exception {
+    if (!shardRouter.isEnabled() || request.getHeader(ShardRouter.FORWARDED_HEADER) != null) {
+      return true;
+    }
+    @SuppressWarnings("unchecked")
+    Map<String, String> variables = (Map<String, String>) request
+        .getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+    if (variables == null) {
+      return true;
+    }
+    String deviceId = variables.get("id");
+    if (deviceId == null && variables.containsKey("name")) {
+      deviceId = deviceIdForName(variables.get("name"));
+    }
+    String owner = shardRouter.owner(deviceId);
+    if (owner == null) {
+      return true;
+    }
+    shardRouter.route(owner, request, response);
+    return false;
+  }
+
+  private String deviceIdForName(String name) {
+    Device device = deviceCache.deviceForName(name);
+    if (device == null) {
+      try {
+        device = deviceClient.deviceForName(name);
+        deviceCache.put(device);
+      } catch (Exception e) {
+        // unknown here; let the controller report it
+        return null;
+      }
+    }
+    return device == null ? null : device.getId();
+  }
+
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Consistent hash ring of core-command instances. Each member is placed on the ring at a number of
+ * virtual points; a key is owned by the member at the first point at or after the key's hash. When
+ * a member joins or leaves, only the keys of the points it takes or gives up change owner.
+ */
+public final class ShardRing {
+
+  private final TreeMap<Long, String> points = new TreeMap<>();
+  private final Set<String> members;
+
+  /**
+   * @param members - the instances, as host:port
+   * @param virtualNodes - the number of points per instance
+   */
+  public ShardRing(Collection<String> members, int virtualNodes) {
+    this.members = Collections.unmodifiableSet(new TreeSet<>(members));
+    int perMember = Math.max(1, virtualNodes);
+    for (String member : this.members) {
+      for (int i = 0; i < perMember; i++) {
+        points.put(hash(member + "#" + i), member);
+      }
+    }
+  }
+
+  public Set<String> getMembers() {
+    return members;
+  }
+
+  /**
+   * @return the member owning the key, or null if the ring is empty
+   */
+  public String owner(String key) {
+    if (points.isEmpty()) {
+      return null;
+    }
+    Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+    return point == null ? points.firstEntry().getValue() : point.getValue();
+  }
+
+  // first 8 bytes of the MD5 of the key; stable across instances and JVMs
+  static long hash(String key) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+    } catch (NoSuchAlgorithmException e) {
+      // every Java platform is required to support MD5
+      throw new IllegalStateException(e);
+    }
+    long hash = 0;
+    for (int i = 0; i < 8; i++) {
+      hash = (hash << 8) | (digest[i] & 0xff);
+    }
+    return hash;
+  }
+
+}
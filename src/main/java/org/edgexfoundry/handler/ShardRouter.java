@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.edgexfoundry.domain.DeviceSelector;
+import org.edgexfoundry.domain.StateUpdateResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Spreads devices over the core-command instances registered with discovery (or listed in
+ * shard.peers) by consistent hashing of the device id, so that each device's cache entries, rate
+ * limits, coalescing and polls live on one instance. Requests for a device owned by a peer are
+ * forwarded to it (or redirected with HTTP 307 when shard.redirect is set). Forwarded requests are
+ * marked so that instances with different views of the membership never forward in a loop. Bulk
+ * state updates are split by owner, each peer being sent those of its own devices. A peer that
+ * does not connect or answer within shard.timeout is reported unavailable. The membership is read
+ * again every shard.refresh.time; sharding is off unless shard.enabled is set.
+ */
+@Component
+public class ShardRouter {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(ShardRouter.class);
+
+  public static final String FORWARDED_HEADER = "X-Core-Command-Forwarded";
+
+  // hop by hop, or recomputed by the receiving end
+  private static final Set<String> UNFORWARDED_HEADERS = new HashSet<>(
+      Arrays.asList("host", "connection", "keep-alive", "content-length", "transfer-encoding",
+          "upgrade", "te", "trailer", "proxy-authorization", "proxy-connection"));
+
+  @Value("${shard.enabled:false}")
+  private boolean enabled;
+
+  @Value("${shard.self:}")
+  private String self;
+
+  @Value("${shard.peers:}")
+  private String[] peers = new String[0];
+
+  @Value("${shard.vnodes:64}")
+  private int virtualNodes;
+
+  @Value("${shard.redirect:false}")
+  private boolean redirect;
+
+  @Value("${shard.timeout:30000}")
+  private int timeout = 30000;
+
+  @Value("${spring.application.name:edgex-core-command}")
+  private String serviceId;
+
+  @Value("${server.port:48082}")
+  private int port;
+
+  @Autowired(required = false)
+  DiscoveryClient discoveryClient;
+
+  private final ObjectMapper mapper =
+      new ObjectMapper().disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+  private volatile ShardRing ring;
+
+  @PostConstruct
+  public void init() {
+    refresh();
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Read the instances again, replacing the ring if they changed. On failure the previous ring is
+   * kept.
+   */
+  @Scheduled(fixedRateString = "${shard.refresh.time:30000}")
+  public void refresh() {
+    if (!enabled) {
+      return;
+    }
+    try {
+      Set<String> members = new TreeSet<>();
+      members.add(self());
+      boolean listed = false;
+      for (String peer : peers) {
+        if (!peer.trim().isEmpty()) {
+          members.add(peer.trim());
+          listed = true;
+        }
+      }
+      if (!listed && discoveryClient != null) {
+        for (ServiceInstance instance : discoveryClient.getInstances(serviceId)) {
+          members.add(instance.getHost() + ":" + instance.getPort());
+        }
+      }
+      ShardRing current = ring;
+      if (current == null || !current.getMembers().equals(members)) {
+        ring = new ShardRing(members, virtualNodes);
+        logger.info("Sharding devices over instances:  " + members);
+      }
+    } catch (Exception e) {
+      logger.error("Error reading core-command instances:  " + e.getMessage());
+    }
+  }
+
+  /**
+   * @return the host:port of the peer owning the device, or null if this instance owns it (or
+   *         sharding is off)
+   */
+  public String owner(String deviceId) {
+    ShardRing current = ring;
+    if (!enabled || current == null || deviceId == null) {
+      return null;
+    }
+    String owner = current.owner(deviceId);
+    return owner == null || owner.equals(self()) ? null : owner;
+  }
+
+  /**
+   * @return the members of the ring, empty if sharding is off
+   */
+  public Set<String> members() {
+    ShardRing current = ring;
+    return current == null ? Collections.emptySet() : current.getMembers();
+  }
+
+  /**
+   * Send the request on to the owning peer, copying its response back, or redirect the client
+   * there.
+   */
+  public void route(String peer, HttpServletRequest request, HttpServletResponse response)
+      throws IOException {
+    String target = "http://" + peer + request.getRequestURI()
+        + (request.getQueryString() == null ? "" : "?" + request.getQueryString());
+    if (redirect) {
+      response.setStatus(HttpStatus.TEMPORARY_REDIRECT.value());
+      response.setHeader(HttpHeaders.LOCATION, target);
+      return;
+    }
+    HttpURLConnection con = open(target);
+    con.setInstanceFollowRedirects(false);
+    con.setRequestMethod(request.getMethod());
+    Enumeration<String> names = request.getHeaderNames();
+    while (names.hasMoreElements()) {
+      String name = names.nextElement();
+      if (UNFORWARDED_HEADERS.contains(name.toLowerCase())) {
+        continue;
+      }
+      Enumeration<String> values = request.getHeaders(name);
+      while (values.hasMoreElements()) {
+        con.addRequestProperty(name, values.nextElement());
+      }
+    }
+    con.setRequestProperty(FORWARDED_HEADER, self());
+    int status;
+    try {
+      if (request.getContentLength() != 0 && !"GET".equals(request.getMethod())) {
+        con.setDoOutput(true);
+        try (OutputStream out = con.getOutputStream()) {
+          copy(request.getInputStream(), out, false);
+        }
+      }
+      status = con.getResponseCode();
+    } catch (IOException e) {
+      logger.error("Error forwarding to " + peer + ":  " + e.getMessage());
+      response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(),
+          "Owning instance " + peer + " is unavailable");
+      return;
+    }
+    response.setStatus(status);
+    for (Map.Entry<String, List<String>> header : con.getHeaderFields().entrySet()) {
+      // the null key is the status line
+      if (header.getKey() == null
+          || UNFORWARDED_HEADERS.contains(header.getKey().toLowerCase())) {
+        continue;
+      }
+      for (String value : header.getValue()) {
+        response.addHeader(header.getKey(), value);
+      }
+    }
+    InputStream in = status >= HttpStatus.BAD_REQUEST.value() ? con.getErrorStream()
+        : con.getInputStream();
+    if (in != null) {
+      try (InputStream body = in) {
+        // flush as read so that event streams pass through as they come
+        copy(body, response.getOutputStream(), true);
+      }
+    }
+  }
+
+  /**
+   * Send a bulk state update of devices owned by a peer to it, marked as forwarded so that the
+   * peer applies it in full.
+   *
+   * @param path - the path of the peer's bulk state endpoint, including the state
+   * @param selector - the ids and names of the devices to update
+   * @return the peer's results, one per device
+   */
+  public List<StateUpdateResult> forwardStates(String peer, String path, DeviceSelector selector)
+      throws IOException {
+    HttpURLConnection con = open("http://" + peer + path);
+    con.setRequestMethod("PUT");
+    con.setDoOutput(true);
+    con.setRequestProperty(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+    con.setRequestProperty(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE);
+    con.setRequestProperty(FORWARDED_HEADER, self());
+    try (OutputStream out = con.getOutputStream()) {
+      out.write(mapper.writeValueAsBytes(
+          new DeviceSelector(selector.getIds(), selector.getNames(), null)));
+    }
+    int status = con.getResponseCode();
+    if (status != HttpStatus.OK.value()) {
+      throw new IOException("Bulk state update answered with HTTP " + status);
+    }
+    try (InputStream in = con.getInputStream()) {
+      return mapper.readValue(in, new TypeReference<List<StateUpdateResult>>() {});
+    }
+  }
+
+  // a hung peer must not hold the request threads waiting on it
+  private HttpURLConnection open(String target) throws IOException {
+    HttpURLConnection con = (HttpURLConnection) new URL(target).openConnection();
+    con.setConnectTimeout(timeout);
+    con.setReadTimeout(timeout);
+    return con;
+  }
+
+  private String self() {
+    if (self != null && !self.trim().isEmpty()) {
+      return self.trim();
+    }
+    if (discoveryClient != null) {
+      ServiceInstance local = discoveryClient.getLocalServiceInstance();
+      if (local != null) {
+        return local.getHost() + ":" + local.getPort();
+      }
+    }
+    return "localhost:" + port;
+  }
+
+  private static void copy(InputStream in, OutputStream out, boolean flush) throws IOException {
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = in.read(buffer)) != -1) {
+      out.write(buffer, 0, read);
+      if (flush) {
+        out.flush();
+      }
+    }
+  }
+
+}
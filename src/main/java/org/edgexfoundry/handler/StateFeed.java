@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.domain.StateChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Streams the device state changes seen by the DeviceCache to subscribers as Server-Sent Events.
+ * Each change is sent as a state event whose id is the change's sequence; a subscriber resuming
+ * with the last id it saw is first sent the changes it missed, or a reset event (with the current
+ * sequence as id) if those are no longer known, telling it to read the catalog again. Replays and
+ * live changes are sent from a single thread, in sequence order, so the DeviceCache never waits
+ * on a subscriber.
+ */
+@Component
+public class StateFeed {
+
+  public static final String STATE_EVENT = "state";
+  public static final String RESET_EVENT = "reset";
+
+  @Value("${state.feed.timeout:3600000}")
+  private long timeout;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+  private final ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+
+  @PostConstruct
+  public void init() {
+    deviceCache.addStateListener(changes -> dispatcher.execute(() -> send(changes)));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    dispatcher.shutdownNow();
+  }
+
+  /**
+   * Subscribe to the state changes.
+   *
+   * @param resumeAfter - the sequence of the last change the subscriber saw, or null to receive
+   *        changes from now on
+   * @return the event stream
+   */
+  public SseEmitter subscribe(Long resumeAfter) {
+    SseEmitter emitter = timeout > 0 ? new SseEmitter(timeout) : new SseEmitter();
+    Subscriber subscriber = new Subscriber(emitter);
+    emitter.onCompletion(() -> subscribers.remove(subscriber));
+    emitter.onTimeout(() -> subscribers.remove(subscriber));
+    dispatcher.execute(() -> start(subscriber, resumeAfter));
+    return emitter;
+  }
+
+  public int subscribers() {
+    return subscribers.size();
+  }
+
+  // on the dispatcher
+  private void start(Subscriber subscriber, Long resumeAfter) {
+    long current = deviceCache.stateSequence();
+    subscriber.last = current;
+    try {
+      List<StateChange> missed =
+          resumeAfter == null ? null : deviceCache.stateChangesSince(resumeAfter);
+      if (resumeAfter != null && missed == null) {
+        subscriber.emitter.send(SseEmitter.event().id(Long.toString(current)).name(RESET_EVENT)
+            .data(current));
+      } else if (missed != null) {
+        subscriber.last = resumeAfter;
+        subscriber.send(missed);
+      }
+      subscribers.add(subscriber);
+    } catch (IOException | IllegalStateException e) {
+      // disconnected before the replay completed
+      subscriber.emitter.completeWithError(e);
+    }
+  }
+
+  // on the dispatcher
+  private void send(List<StateChange> changes) {
+    for (Subscriber subscriber : subscribers) {
+      try {
+        subscriber.send(changes);
+      } catch (IOException | IllegalStateException e) {
+        subscribers.remove(subscriber);
+      }
+    }
+  }
+
+  private static class Subscriber {
+    private final SseEmitter emitter;
+    // sequence of the last change sent; changes up to it (replayed and live) are skipped
+    private long last;
+
+    Subscriber(SseEmitter emitter) {
+      this.emitter = emitter;
+    }
+
+    void send(List<StateChange> changes) throws IOException {
+      for (StateChange change : changes) {
+        if (change.getSequence() <= last) {
+          continue;
+        }
+        emitter.send(SseEmitter.event().id(Long.toString(change.getSequence()))
+            .name(STATE_EVENT).data(change, MediaType.APPLICATION_JSON));
+        last = change.getSequence();
+      }
+    }
+  }
+
+}
@@ -0,0 +1,300 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.DeviceSelector;
+import org.edgexfoundry.domain.StateUpdateResult;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+/**
+ * Applies admin or op state changes to a selection of devices. The metadata updates are run in
+ * parallel on a fixed size pool so that no more than bulk.state.concurrency requests are in flight
+ * against metadata at any time. Once all updates complete, the successful ones are applied to the
+ * local DeviceCache in a single pass. In virtual thread mode the pool's workers are virtual
+ * threads; the pool size still bounds the load on metadata. With sharding on, the devices owned by
+ * peer instances are sent to their owners as bulk updates of their own, so that each owner's
+ * DeviceCache enforces the new state at once. Those are sent on threads of their own, never
+ * holding the pool the metadata updates run on while they wait for a peer.
+ */
+@Component
+public class StateUpdateHandler {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(StateUpdateHandler.class);
+
+  // of the bulk state endpoints, as called on peers
+  private static final String STATES_PATH = "/api/v1/device/";
+
+  @Value("${bulk.state.concurrency:8}")
+  private int concurrency;
+
+  @Value("${server.virtualthreads:false}")
+  private boolean virtualThreads;
+
+  @Autowired
+  DeviceClient deviceClient;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  @Autowired
+  ShardRouter shardRouter;
+
+  private ExecutorService executor;
+  // the bulk updates sent on to peers
+  private ExecutorService forwarder;
+
+  @PostConstruct
+  public void init() {
+    int threads = Math.max(1, concurrency);
+    boolean virtual = virtualThreads && VirtualThreads.isAvailable();
+    executor = virtual ? Executors.newFixedThreadPool(threads, VirtualThreads.factory())
+        : Executors.newFixedThreadPool(threads);
+    forwarder = virtual ? Executors.newCachedThreadPool(VirtualThreads.factory())
+        : Executors.newCachedThreadPool();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+    forwarder.shutdownNow();
+  }
+
+  /**
+   * Set the admin state of every selected device.
+   *
+   * @param selector - the ids, names and/or label of the devices to update
+   * @param state - the admin state to set
+   * @param forwarded - true if a peer sent the update, which is then applied here in full
+   * @return one result per selected device, in selection order
+   */
+  public List<StateUpdateResult> updateAdminStates(DeviceSelector selector, AdminState state,
+      boolean forwarded) {
+    return shard(selector, forwarded, STATES_PATH + "adminstate/" + state,
+        owned -> update(owned, adminStateUpdater(state),
+            (ids, names) -> deviceCache.setAdminStates(ids, names, state)));
+  }
+
+  /**
+   * Set the op state of every selected device.
+   *
+   * @param selector - the ids, names and/or label of the devices to update
+   * @param state - the op state to set
+   * @param forwarded - true if a peer sent the update, which is then applied here in full
+   * @return one result per selected device, in selection order
+   */
+  public List<StateUpdateResult> updateOpStates(DeviceSelector selector, OperatingState state,
+      boolean forwarded) {
+    return shard(selector, forwarded, STATES_PATH + "opstate/" + state,
+        owned -> update(owned, opStateUpdater(state),
+            (ids, names) -> deviceCache.setOpStates(ids, names, state)));
+  }
+
+  // as updateAdminStates, for states already applied to the DeviceCache
+  List<StateUpdateResult> writeAdminStates(DeviceSelector selector, AdminState state) {
+    return update(selector, adminStateUpdater(state), (ids, names) -> {});
+  }
+
+  // as updateOpStates, for states already applied to the DeviceCache
+  List<StateUpdateResult> writeOpStates(DeviceSelector selector, OperatingState state) {
+    return update(selector, opStateUpdater(state), (ids, names) -> {});
+  }
+
+  private BiPredicate<String, Boolean> adminStateUpdater(AdminState state) {
+    String value = state.toString();
+    return (key, byName) -> byName
+        ? deviceClient.updateAdminStateByName(key, value)
+        : deviceClient.updateAdminState(key, value);
+  }
+
+  private BiPredicate<String, Boolean> opStateUpdater(OperatingState state) {
+    String value = state.toString();
+    return (key, byName) -> byName
+        ? deviceClient.updateOpStateByName(key, value)
+        : deviceClient.updateOpState(key, value);
+  }
+
+  // sends the devices owned by peers to them and updates the others here, merging the results
+  private List<StateUpdateResult> shard(DeviceSelector selector, boolean forwarded, String path,
+      Function<DeviceSelector, List<StateUpdateResult>> updater) {
+    if (forwarded || !shardRouter.isEnabled()) {
+      return updater.apply(selector);
+    }
+    Map<String, Boolean> targets = resolve(selector);
+    DeviceSelector owned = newSelector();
+    Map<String, DeviceSelector> byPeer = new LinkedHashMap<>();
+    for (Map.Entry<String, Boolean> target : targets.entrySet()) {
+      String peer = shardRouter.owner(idOf(target.getKey(), target.getValue()));
+      DeviceSelector part =
+          peer == null ? owned : byPeer.computeIfAbsent(peer, p -> newSelector());
+      (target.getValue() ? part.getNames() : part.getIds()).add(target.getKey());
+    }
+    Map<String, Future<List<StateUpdateResult>>> forwards = new LinkedHashMap<>();
+    for (Map.Entry<String, DeviceSelector> part : byPeer.entrySet()) {
+      forwards.put(part.getKey(), forwarder
+          .submit(() -> shardRouter.forwardStates(part.getKey(), path, part.getValue())));
+    }
+    Map<String, StateUpdateResult> results = new HashMap<>();
+    if (!owned.isEmpty()) {
+      updater.apply(owned).forEach(result -> results.put(result.getDevice(), result));
+    }
+    for (Map.Entry<String, Future<List<StateUpdateResult>>> forward : forwards.entrySet()) {
+      String message;
+      try {
+        forward.getValue().get().forEach(result -> results.put(result.getDevice(), result));
+        continue;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        message = "Interrupted";
+      } catch (ExecutionException e) {
+        logger.error("Error sending state update to " + forward.getKey() + ":  "
+            + e.getCause().getMessage());
+        message = "Owning instance " + forward.getKey() + " is unavailable";
+      }
+      DeviceSelector part = byPeer.get(forward.getKey());
+      for (String key : part.getIds()) {
+        results.put(key, new StateUpdateResult(key, HttpStatus.SERVICE_UNAVAILABLE.value(),
+            message));
+      }
+      for (String key : part.getNames()) {
+        results.put(key, new StateUpdateResult(key, HttpStatus.SERVICE_UNAVAILABLE.value(),
+            message));
+      }
+    }
+    return targets.keySet().stream().map(results::get).filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  // the id of a device known by name, looked up in metadata if not cached; null if unknown
+  private String idOf(String key, boolean byName) {
+    if (!byName) {
+      return key;
+    }
+    Device device = deviceCache.deviceForName(key);
+    if (device == null) {
+      try {
+        device = deviceClient.deviceForName(key);
+        deviceCache.put(device);
+      } catch (Exception e) {
+        // unknown here; left to this instance, so that metadata reports it
+        return null;
+      }
+    }
+    return device == null ? null : device.getId();
+  }
+
+  private static DeviceSelector newSelector() {
+    return new DeviceSelector(new ArrayList<>(), new ArrayList<>(), null);
+  }
+
+  private List<StateUpdateResult> update(DeviceSelector selector,
+      BiPredicate<String, Boolean> updater, BiConsumer<List<String>, List<String>> applier) {
+    Map<String, Boolean> targets = resolve(selector);
+    Map<String, Future<StateUpdateResult>> pending = new LinkedHashMap<>();
+    for (Map.Entry<String, Boolean> target : targets.entrySet()) {
+      String key = target.getKey();
+      boolean byName = target.getValue();
+      pending.put(key, executor.submit(() -> updateOne(key, byName, updater)));
+    }
+    List<StateUpdateResult> results = new ArrayList<>(pending.size());
+    for (Map.Entry<String, Future<StateUpdateResult>> entry : pending.entrySet()) {
+      try {
+        results.add(entry.getValue().get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        results.add(new StateUpdateResult(entry.getKey(),
+            HttpStatus.SERVICE_UNAVAILABLE.value(), "Interrupted"));
+      } catch (ExecutionException e) {
+        results.add(new StateUpdateResult(entry.getKey(),
+            HttpStatus.SERVICE_UNAVAILABLE.value(), e.getCause().getMessage()));
+      }
+    }
+    List<String> ids = new ArrayList<>();
+    List<String> names = new ArrayList<>();
+    for (StateUpdateResult result : results) {
+      if (result.getStatus() == HttpStatus.OK.value()) {
+        (targets.get(result.getDevice()) ? names : ids).add(result.getDevice());
+      }
+    }
+    applier.accept(ids, names);
+    return results;
+  }
+
+  private StateUpdateResult updateOne(String key, boolean byName,
+      BiPredicate<String, Boolean> updater) {
+    try {
+      if (updater.test(key, byName)) {
+        return new StateUpdateResult(key, HttpStatus.OK.value(), null);
+      }
+      return new StateUpdateResult(key, HttpStatus.SERVICE_UNAVAILABLE.value(),
+          "Metadata did not accept the update");
+    } catch (javax.ws.rs.NotFoundException expNotFound) {
+      return new StateUpdateResult(key, HttpStatus.NOT_FOUND.value(),
+          "No device found for " + key);
+    } catch (Exception e) {
+      logger.error("Error setting state for device " + key + ":  " + e.getMessage());
+      return new StateUpdateResult(key, HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+    }
+  }
+
+  // map of device key to whether the key is a name (true) or an id (false)
+  private Map<String, Boolean> resolve(DeviceSelector selector) {
+    Map<String, Boolean> targets = new LinkedHashMap<>();
+    if (selector.getIds() != null) {
+      selector.getIds().forEach(id -> targets.put(id, false));
+    }
+    if (selector.getNames() != null) {
+      selector.getNames().forEach(name -> targets.putIfAbsent(name, true));
+    }
+    if (selector.getLabel() != null && !selector.getLabel().isEmpty()) {
+      for (Device device : deviceClient.devicesByLabel(selector.getLabel())) {
+        targets.putIfAbsent(device.getId(), false);
+      }
+    }
+    return targets;
+  }
+
+}
@@ -0,0 +1,265 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.domain.DeviceSelector;
+import org.edgexfoundry.domain.StateUpdateResult;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Write-behind of admin and op state changes to metadata, turned on with
+ * state.writebehind.enabled. Accepted changes are applied to the DeviceCache by the caller at
+ * once and queued here; every state.writebehind.interval milliseconds the queue is flushed to
+ * metadata through the StateUpdateHandler, one bulk update per state. Changes are keyed by device
+ * id, names being resolved through the DeviceCache, so repeated changes of the same device and
+ * state field collapse to the latest however the device was named. At most
+ * state.writebehind.queueSize changes are queued; beyond that changes are turned away and the
+ * caller writes through. Updates metadata could not apply are retried on the next flushes, up to
+ * state.writebehind.retries times, unless a newer change replaced them.
+ */
+@Component
+public class StateWriteBehind {
+
+  private static final org.edgexfoundry.support.logging.client.EdgeXLogger logger =
+      org.edgexfoundry.support.logging.client.EdgeXLoggerFactory
+          .getEdgeXLogger(StateWriteBehind.class);
+
+  private static final String ADMIN = "admin";
+  private static final String OP = "op";
+
+  @Autowired
+  StateUpdateHandler stateUpdateHandler;
+
+  @Autowired
+  DeviceCache deviceCache;
+
+  private volatile boolean enabled;
+  private volatile int queueSize = 10000;
+  private volatile int retries = 5;
+
+  // guarded by this; field|<device id> to the queued change
+  private final Map<String, Change> queued = new LinkedHashMap<>();
+  // guarded by this; System.nanoTime the oldest change being flushed was queued at, 0 if none
+  private long flushingSince;
+  // held while flushing, so that a later flush can't overtake an earlier one
+  private final Object flushing = new Object();
+
+  @Value("${state.writebehind.enabled:false}")
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  @Value("${state.writebehind.queueSize:10000}")
+  public void setQueueSize(int queueSize) {
+    this.queueSize = queueSize;
+  }
+
+  @Value("${state.writebehind.retries:5}")
+  public void setRetries(int retries) {
+    this.retries = retries;
+  }
+
+  @PostConstruct
+  public void init() {
+    deviceCache.setUnwrittenStates(this::pendingSince);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Queue an admin state change for metadata.
+   *
+   * @param key - the database generated id or the name of the device
+   * @param byName - true if the key is a name
+   * @return true if queued, false if the caller must write the change through, as for devices
+   *         not in the DeviceCache
+   */
+  public boolean offerAdminState(String key, boolean byName, AdminState state) {
+    return offer(ADMIN, key, byName, state.toString());
+  }
+
+  /**
+   * Queue an op state change for metadata.
+   *
+   * @param key - the database generated id or the name of the device
+   * @param byName - true if the key is a name
+   * @return true if queued, false if the caller must write the change through, as for devices
+   *         not in the DeviceCache
+   */
+  public boolean offerOpState(String key, boolean byName, OperatingState state) {
+    return offer(OP, key, byName, state.toString());
+  }
+
+  /**
+   * @return System.nanoTime the oldest change not yet written to metadata was queued at, or null
+   *         if every change was written; a catalog read from metadata after that time may not
+   *         show the change yet
+   */
+  public synchronized Long pendingSince() {
+    Long since = flushingSince == 0 ? null : flushingSince;
+    for (Change change : queued.values()) {
+      if (since == null || change.since - since < 0) {
+        since = change.since;
+      }
+    }
+    return since;
+  }
+
+  public synchronized int size() {
+    return queued.size();
+  }
+
+  @Scheduled(fixedDelayString = "${state.writebehind.interval:1000}")
+  public void flush() {
+    synchronized (flushing) {
+      Map<String, Change> batch;
+      synchronized (this) {
+        if (queued.isEmpty()) {
+          return;
+        }
+        batch = new LinkedHashMap<>(queued);
+        queued.clear();
+        flushingSince = batch.values().stream().mapToLong(change -> change.since)
+            .reduce((a, b) -> a - b < 0 ? a : b).getAsLong();
+      }
+      try {
+        // field|state to the devices to set to it
+        Map<String, DeviceSelector> selections = new LinkedHashMap<>();
+        for (Change change : batch.values()) {
+          selections.computeIfAbsent(change.field + "|" + change.state,
+              k -> new DeviceSelector(new ArrayList<>(), new ArrayList<>(), null)).getIds()
+              .add(change.id);
+        }
+        for (Map.Entry<String, DeviceSelector> selection : selections.entrySet()) {
+          String[] fieldAndState = selection.getKey().split("\\|", 2);
+          write(fieldAndState[0], fieldAndState[1], selection.getValue(), batch);
+        }
+      } finally {
+        synchronized (this) {
+          flushingSince = 0;
+        }
+      }
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    flush();
+  }
+
+  private boolean offer(String field, String key, boolean byName, String state) {
+    if (!enabled || key == null) {
+      return false;
+    }
+    // a device known by name is queued under its id, so it collapses with changes made by id
+    Device device = byName ? deviceCache.deviceForName(key) : deviceCache.device(key);
+    if (device == null) {
+      return false;
+    }
+    String queueKey = field + "|" + device.getId();
+    synchronized (this) {
+      Change previous = queued.get(queueKey);
+      if (previous == null && queued.size() >= queueSize) {
+        return false;
+      }
+      // the replaced change was not written either, so the oldest time is kept
+      queued.put(queueKey, new Change(field, device.getId(), state,
+          previous == null ? System.nanoTime() : previous.since, 0));
+    }
+    return true;
+  }
+
+  private void write(String field, String state, DeviceSelector selector,
+      Map<String, Change> batch) {
+    List<StateUpdateResult> results;
+    try {
+      results = ADMIN.equals(field)
+          ? stateUpdateHandler.writeAdminStates(selector, AdminState.valueOf(state))
+          : stateUpdateHandler.writeOpStates(selector, OperatingState.valueOf(state));
+    } catch (Exception e) {
+      logger.error("Error writing " + field + " state " + state + " to metadata:  "
+          + e.getMessage());
+      results = new ArrayList<>();
+      for (String id : selector.getIds()) {
+        results.add(new StateUpdateResult(id, HttpStatus.SERVICE_UNAVAILABLE.value(),
+            e.getMessage()));
+      }
+    }
+    Map<String, Change> failed = new HashMap<>();
+    for (StateUpdateResult result : results) {
+      if (result.getStatus() == HttpStatus.OK.value()) {
+        continue;
+      }
+      Change change = batch.get(field + "|" + result.getDevice());
+      if (change == null || result.getStatus() == HttpStatus.NOT_FOUND.value()
+          || change.attempts + 1 > retries) {
+        logger.error("Giving up writing " + field + " state " + state + " of device "
+            + result.getDevice() + " to metadata:  " + result.getMessage());
+        continue;
+      }
+      failed.put(field + "|" + change.id, change);
+    }
+    synchronized (this) {
+      for (Map.Entry<String, Change> entry : failed.entrySet()) {
+        Change change = entry.getValue();
+        // a change queued meanwhile is newer; retries beyond the queue size are dropped
+        if (!queued.containsKey(entry.getKey()) && queued.size() < queueSize) {
+          queued.put(entry.getKey(), new Change(change.field, change.id, change.state,
+              change.since, change.attempts + 1));
+        }
+      }
+    }
+  }
+
+  private static class Change {
+    private final String field;
+    private final String id;
+    private final String state;
+    private final long since;
+    private final int attempts;
+
+    Change(String field, String id, String state, long since, int attempts) {
+      this.field = field;
+      this.id = id;
+      this.state = state;
+      this.since = since;
+      this.attempts = attempts;
+    }
+  }
+
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+/**
+ * Token bucket refilled continuously at a fixed rate up to its burst size. A caller that finds the
+ * bucket empty may reserve a future token and wait for it, as long as fewer than the allowed
+ * number of callers are already waiting and the wait is not too long.
+ */
+public class TokenBucket {
+
+  private static final double NANOS_PER_SECOND = 1e9;
+
+  private final double tokensPerNano;
+  private final double capacity;
+
+  // guarded by this
+  private double tokens;
+  private long lastRefill;
+  private int waiting;
+
+  public TokenBucket(double ratePerSecond, int burst) {
+    this.tokensPerNano = ratePerSecond / NANOS_PER_SECOND;
+    this.capacity = Math.max(1, burst);
+    this.tokens = capacity;
+    this.lastRefill = System.nanoTime();
+  }
+
+  /**
+   * Take a token, or reserve the next one.
+   *
+   * @param maxWaiting - the most callers allowed to wait on this bucket at once
+   * @param maxWaitNanos - the longest the caller is prepared to wait
+   * @return 0 if a token was taken, the nanoseconds to wait for a reserved token (the caller must
+   *         then call {@link #doneWaiting()}), or -1 if the caller must be turned away
+   */
+  public synchronized long reserve(int maxWaiting, long maxWaitNanos) {
+    refill();
+    if (tokens >= 1) {
+      tokens -= 1;
+      return 0;
+    }
+    long wait = nanosUntilToken();
+    if (waiting >= maxWaiting || wait > maxWaitNanos) {
+      return -1;
+    }
+    tokens -= 1;
+    waiting++;
+    return wait;
+  }
+
+  /**
+   * @return true if the bucket refills at the given rate up to the given burst size
+   */
+  public boolean hasLimit(double ratePerSecond, int burst) {
+    return tokensPerNano == ratePerSecond / NANOS_PER_SECOND && capacity == Math.max(1, burst);
+  }
+
+  public synchronized void doneWaiting() {
+    waiting--;
+  }
+
+  /**
+   * Give back a token taken by {@link #reserve(int, long)} that was not used.
+   */
+  public synchronized void refund() {
+    tokens = Math.min(capacity, tokens + 1);
+  }
+
+  /**
+   * @return nanoseconds until a token would be available without waiting in line
+   */
+  public synchronized long retryAfterNanos() {
+    refill();
+    return tokens >= 1 ? 0 : nanosUntilToken();
+  }
+
+  public synchronized int waiting() {
+    return waiting;
+  }
+
+  private long nanosUntilToken() {
+    return (long) Math.ceil((1 - tokens) / tokensPerNano);
+  }
+
+  private void refill() {
+    long now = System.nanoTime();
+    tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+    lastRefill = now;
+  }
+
+}
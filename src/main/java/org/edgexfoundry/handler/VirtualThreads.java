@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to JDK virtual threads without compiling against them. The service targets Java 8, so
+ * the virtual thread API (Java 21+) is looked up reflectively; on older runtimes
+ * {@link #isAvailable()} is false and callers keep their platform threads.
+ */
+public final class VirtualThreads {
+
+  private static final Method NEW_EXECUTOR = lookupExecutor();
+  private static final ThreadFactory FACTORY = lookupFactory();
+
+  private VirtualThreads() {}
+
+  public static boolean isAvailable() {
+    return NEW_EXECUTOR != null && FACTORY != null;
+  }
+
+  /**
+   * @return an executor starting a new virtual thread per task, or null if the runtime has no
+   *         virtual threads
+   */
+  public static ExecutorService newExecutor() {
+    if (NEW_EXECUTOR == null) {
+      return null;
+    }
+    try {
+      return (ExecutorService) NEW_EXECUTOR.invoke(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return a factory for virtual threads, or null if the runtime has no virtual threads
+   */
+  public static ThreadFactory factory() {
+    return FACTORY;
+  }
+
+  private static Method lookupExecutor() {
+    try {
+      return java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+  }
+
+  private static ThreadFactory lookupFactory() {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      // resolve through the public interface; the builder's own class is not accessible
+      Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+      return (ThreadFactory) factory.invoke(builder);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+}
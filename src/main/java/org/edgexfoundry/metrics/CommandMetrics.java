@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Registry of the counters and gauges reported by the metrics endpoint. Counters are created on
+ * first use; gauges are sampled when a snapshot is taken.
+ */
+@Component
+public class CommandMetrics {
+
+  private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+  private final Map<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+  public void increment(String name) {
+    counters.computeIfAbsent(name, key -> new LongAdder()).increment();
+  }
+
+  public void gauge(String name, Supplier<? extends Number> value) {
+    gauges.put(name, value);
+  }
+
+  public long count(String name) {
+    LongAdder counter = counters.get(name);
+    return counter == null ? 0 : counter.sum();
+  }
+
+  /**
+   * @return the current value of every counter and gauge, sorted by name
+   */
+  public SortedMap<String, Number> snapshot() {
+    SortedMap<String, Number> values = new TreeMap<>();
+    counters.forEach((name, counter) -> values.put(name, counter.sum()));
+    gauges.forEach((name, gauge) -> values.put(name, gauge.get()));
+    return values;
+  }
+
+}
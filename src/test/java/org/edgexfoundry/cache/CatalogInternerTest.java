@@ -0,0 +1,115 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.edgexfoundry.test.data.DeviceData;
+import org.edgexfoundry.test.data.ProfileData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(RequiresNone.class)
+public class CatalogInternerTest {
+
+  private static final String PROFILE_ID = "profile1";
+  private static final String LABEL = "thermostat";
+
+  private CatalogInterner interner;
+
+  @Before
+  public void setup() {
+    interner = new CatalogInterner();
+  }
+
+  @Test
+  public void testProfilesShared() {
+    Device first = newDevice("1", 1);
+    Device second = newDevice("2", 1);
+    interner.share(first);
+    interner.share(second);
+    assertSame("Equal profiles not shared", first.getProfile(), second.getProfile());
+    assertSame("Command index not shared", interner.commands(first), interner.commands(second));
+    assertEquals("Wrong number of profiles", 1, interner.profiles());
+  }
+
+  @Test
+  public void testModifiedProfileNotShared() {
+    Device first = newDevice("1", 1);
+    Device second = newDevice("2", 2);
+    interner.share(first);
+    interner.share(second);
+    assertNotSame("Modified profile shared", first.getProfile(), second.getProfile());
+    assertEquals("Wrong number of profiles", 2, interner.profiles());
+  }
+
+  @Test
+  public void testLabelsInterned() {
+    Device first = newDevice("1", 1);
+    Device second = newDevice("2", 1);
+    interner.share(first);
+    interner.share(second);
+    assertSame("Labels not interned", first.getLabels()[0], second.getLabels()[0]);
+  }
+
+  @Test
+  public void testRetain() {
+    Device first = newDevice("1", 1);
+    interner.share(first);
+    interner.share(newDevice("2", 2));
+    interner.retain(Collections.singletonList(first));
+    assertEquals("Unused profile kept", 1, interner.profiles());
+  }
+
+  @Test
+  public void testRetainPrunesStrings() {
+    Device first = newDevice("1", 1);
+    interner.share(first);
+    Device renamed = newDevice("1", 1);
+    renamed.setName("renamed");
+    renamed.setLabels(new String[] {"relabeled"});
+    interner.share(renamed);
+    int strings = interner.strings();
+    interner.retain(Collections.singletonList(renamed));
+    assertEquals("Unused name and label kept", strings - 2, interner.strings());
+    assertSame("Used label not kept", renamed.getLabels()[0], interner.intern("relabeled"));
+  }
+
+  private Device newDevice(String id, long profileModified) {
+    Device device = DeviceData.newTestInstance();
+    device.setId(id);
+    device.setLabels(new String[] {new String(LABEL)});
+    DeviceProfile profile = ProfileData.newTestInstance();
+    profile.setId(PROFILE_ID);
+    profile.setModified(profileModified);
+    profile.addCommand(CommandData.newTestInstance());
+    device.setProfile(profile);
+    return device;
+  }
+
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.edgexfoundry.domain.StateChange;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.edgexfoundry.test.data.DeviceData;
+import org.edgexfoundry.test.data.ProfileData;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.junit.rules.TemporaryFolder;
+
+@Category(RequiresNone.class)
+public class CatalogSnapshotTest {
+
+  private static final String TEST_ID = "123";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File file;
+  private Device device;
+
+  @Before
+  public void setup() {
+    file = new File(folder.getRoot(), "catalog.smile");
+    DeviceProfile profile = ProfileData.newTestInstance();
+    profile.addCommand(CommandData.newTestInstance());
+    device = DeviceData.newTestInstance();
+    device.setId(TEST_ID);
+    device.setProfile(profile);
+  }
+
+  @Test
+  public void testWarmStart() {
+    DeviceCache cache = new DeviceCache();
+    cache.refresh(Arrays.asList(device), System.nanoTime());
+    cache.setAdminState(TEST_ID, AdminState.LOCKED.toString());
+    snapshot(cache).save();
+    assertTrue("Snapshot not written", file.isFile());
+
+    DeviceCache restarted = new DeviceCache();
+    assertTrue("Snapshot not loaded", snapshot(restarted).load());
+    assertTrue("Catalog not marked loaded", restarted.isLoaded());
+    Device loaded = restarted.deviceForName(DeviceData.TEST_NAME);
+    assertNotNull("Device not restored", loaded);
+    assertEquals("Device id not restored", TEST_ID, loaded.getId());
+    assertNotNull("Command not restored",
+        restarted.commandForName(loaded, CommandData.newTestInstance().getName()));
+    assertEquals("Locally set state not restored", AdminState.LOCKED,
+        restarted.adminState(loaded));
+  }
+
+  @Test
+  public void testRestoredStatesNotReported() {
+    DeviceCache cache = new DeviceCache();
+    cache.refresh(Arrays.asList(device), System.nanoTime());
+    cache.setAdminState(TEST_ID, AdminState.LOCKED.toString());
+    snapshot(cache).save();
+
+    DeviceCache restarted = new DeviceCache();
+    List<StateChange> reported = new ArrayList<>();
+    restarted.addStateListener(reported::addAll);
+    assertTrue("Snapshot not loaded", snapshot(restarted).load());
+    assertEquals("Locally set state not restored", AdminState.LOCKED,
+        restarted.adminState(restarted.device(TEST_ID)));
+    assertTrue("Restored state reported as a change", reported.isEmpty());
+    assertEquals("Restored state logged as a change", 0, restarted.stateSequence());
+  }
+
+  @Test
+  public void testNotRewrittenWhenUnchanged() {
+    DeviceCache cache = new DeviceCache();
+    cache.refresh(Arrays.asList(device), System.nanoTime());
+    CatalogSnapshot snapshot = snapshot(cache);
+    snapshot.save();
+    assertTrue("Snapshot not deleted", file.delete());
+    cache.refresh(Arrays.asList(device), System.nanoTime());
+    snapshot.save();
+    assertFalse("Unchanged catalog written again", file.exists());
+    cache.setAdminState(TEST_ID, AdminState.LOCKED.toString());
+    snapshot.save();
+    assertTrue("Changed state not written", file.isFile());
+  }
+
+  @Test
+  public void testNotLoadedOverMetadata() {
+    DeviceCache cache = new DeviceCache();
+    cache.refresh(Arrays.asList(device), System.nanoTime());
+    snapshot(cache).save();
+    DeviceCache fresh = new DeviceCache();
+    fresh.refresh(Arrays.asList(DeviceData.newTestInstance()), System.nanoTime());
+    assertFalse("Snapshot loaded over the catalog from metadata", snapshot(fresh).load());
+  }
+
+  @Test
+  public void testNotWrittenBeforeLoaded() {
+    snapshot(new DeviceCache()).save();
+    assertFalse("Empty catalog written", file.exists());
+  }
+
+  private CatalogSnapshot snapshot(DeviceCache cache) {
+    CatalogSnapshot snapshot = new CatalogSnapshot();
+    snapshot.deviceCache = cache;
+    snapshot.setFile(file.getPath());
+    return snapshot;
+  }
+
+}
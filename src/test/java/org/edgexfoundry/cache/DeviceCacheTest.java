@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.edgexfoundry.domain.StateChange;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.edgexfoundry.test.data.DeviceData;
+import org.edgexfoundry.test.data.ProfileData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(RequiresNone.class)
+public class DeviceCacheTest {
+
+  private static final String TEST_ID = "123";
+  private static final String TEST_ID2 = "456";
+
+  private DeviceCache cache;
+  private Device device;
+
+  @Before
+  public void setup() {
+    cache = new DeviceCache();
+    device = newDevice(TEST_ID, DeviceData.TEST_NAME);
+  }
+
+  @Test
+  public void testVersionAdvancesOnlyOnChange() {
+    cache.put(device);
+    long version = cache.catalogVersion();
+    cache.put(newDevice(TEST_ID, DeviceData.TEST_NAME));
+    assertEquals("Unchanged device advanced the version", version, cache.catalogVersion());
+    Device modified = newDevice(TEST_ID, DeviceData.TEST_NAME);
+    modified.setModified(device.getModified() + 1);
+    cache.put(modified);
+    assertEquals("Modified device did not advance the version", version + 1,
+        cache.catalogVersion());
+  }
+
+  @Test
+  public void testChangesSince() {
+    cache.refresh(Arrays.asList(device), System.nanoTime());
+    long version = cache.catalogVersion();
+    Device other = newDevice(TEST_ID2, "other");
+    cache.refresh(Arrays.asList(other), System.nanoTime());
+    assertEquals("Added device not reported as changed", Arrays.asList(other),
+        cache.changedSince(version));
+    assertEquals("Removed device not reported", Arrays.asList(DeviceData.TEST_NAME),
+        cache.removedSince(version));
+    assertTrue("Changes reported past the current version",
+        cache.changedSince(cache.catalogVersion()).isEmpty());
+  }
+
+  @Test
+  public void testEvictedDeviceStaysInCatalog() {
+    cache.refresh(Collections.singletonList(device), System.nanoTime());
+    long version = cache.catalogVersion();
+    cache.evict(TEST_ID);
+    assertNull("Evicted device still served", cache.device(TEST_ID));
+    assertNull("Evicted device still served by name", cache.deviceForName(DeviceData.TEST_NAME));
+    assertEquals("Evicted device dropped from the catalog", 1, cache.devices().size());
+    assertEquals("Eviction advanced the version", version, cache.catalogVersion());
+    cache.put(device);
+    assertSame("Device not served again once read", device, cache.device(TEST_ID));
+  }
+
+  @Test
+  public void testCommandForName() {
+    Command command = CommandData.newTestInstance();
+    DeviceProfile profile = ProfileData.newTestInstance();
+    profile.addCommand(command);
+    device.setProfile(profile);
+    cache.put(device);
+    assertSame("Command not found by name", command,
+        cache.commandForName(device, command.getName()));
+    assertNull("Unknown command found by name", cache.commandForName(device, "unknown"));
+    Device uncached = newDevice(TEST_ID2, "other");
+    uncached.setProfile(profile);
+    assertSame("Command of uncached device not found by name", command,
+        cache.commandForName(uncached, command.getName()));
+  }
+
+  @Test
+  public void testSelect() {
+    device.setLabels(new String[] {"thermostat", "floor1"});
+    Device other = newDevice(TEST_ID2, "other");
+    other.setLabels(new String[] {"floor1"});
+    cache.refresh(Arrays.asList(device, other), System.nanoTime());
+    assertEquals("Label not indexed", Arrays.asList(device),
+        cache.select("thermostat", null, null, null, null));
+    assertEquals("Shared label not indexed", 2,
+        cache.select("floor1", null, null, null, null).size());
+    cache.setAdminState(TEST_ID2, AdminState.LOCKED.toString());
+    assertEquals("State change not indexed", Arrays.asList(other),
+        cache.select("floor1", null, null, AdminState.LOCKED, null));
+    cache.refresh(Arrays.asList(device), System.nanoTime());
+    assertTrue("Removed device still indexed",
+        cache.select(null, null, null, AdminState.LOCKED, null).isEmpty());
+    assertEquals("No criteria not selecting all", 1,
+        cache.select(null, null, null, null, null).size());
+  }
+
+  @Test
+  public void testStateChangesThroughService() {
+    cache.put(device);
+    AtomicInteger notified = new AtomicInteger();
+    cache.addStateListener(changes -> notified.addAndGet(changes.size()));
+    long sequence = cache.stateSequence();
+    cache.setAdminState(TEST_ID, AdminState.LOCKED.toString());
+    cache.setAdminStateForName(DeviceData.TEST_NAME, AdminState.LOCKED.toString());
+    List<StateChange> changes = cache.stateChangesSince(sequence);
+    assertEquals("Not one change for one transition", 1, changes.size());
+    assertEquals("Wrong field changed", StateChange.ADMIN_STATE, changes.get(0).getField());
+    assertEquals("Wrong value", AdminState.LOCKED.toString(), changes.get(0).getValue());
+    assertEquals("Wrong device", DeviceData.TEST_NAME, changes.get(0).getName());
+    assertEquals("Listener not notified", 1, notified.get());
+  }
+
+  @Test
+  public void testStateChangesFromRefresh() {
+    cache.refresh(Arrays.asList(device), System.nanoTime());
+    long sequence = cache.stateSequence();
+    Device refreshed = newDevice(TEST_ID, DeviceData.TEST_NAME);
+    refreshed.setOperatingState(OperatingState.DISABLED);
+    refreshed.setLastReported(device.getLastReported() + 1);
+    cache.refresh(Arrays.asList(refreshed), System.nanoTime());
+    List<StateChange> changes = cache.stateChangesSince(sequence);
+    assertEquals("Refresh changes not seen", 2, changes.size());
+    assertEquals("Op state change not seen", OperatingState.DISABLED.toString(),
+        changes.get(0).getValue());
+    assertEquals("Last reported change not seen", StateChange.LAST_REPORTED,
+        changes.get(1).getField());
+    assertNull("Unknown sequence resumed", cache.stateChangesSince(sequence + 10));
+  }
+
+  @Test
+  public void testUnwrittenStateNotOverridden() {
+    cache.put(device);
+    long since = System.nanoTime();
+    cache.setAdminState(TEST_ID, AdminState.LOCKED.toString());
+    cache.setUnwrittenStates(() -> since);
+    Device read = newDevice(TEST_ID, DeviceData.TEST_NAME);
+    read.setAdminState(AdminState.UNLOCKED);
+    cache.put(read);
+    assertEquals("Device read from metadata undid an unwritten change", AdminState.LOCKED,
+        cache.adminState(read));
+    cache.setUnwrittenStates(null);
+    cache.put(read);
+    assertEquals("Written change not overridden by metadata", AdminState.UNLOCKED,
+        cache.adminState(read));
+  }
+
+  private static Device newDevice(String id, String name) {
+    Device device = DeviceData.newTestInstance();
+    device.setId(id);
+    device.setName(name);
+    return device;
+  }
+
+}
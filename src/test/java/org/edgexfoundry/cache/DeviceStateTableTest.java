@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.DeviceData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(RequiresNone.class)
+public class DeviceStateTableTest {
+
+  private static final String TEST_ID = "123";
+
+  private DeviceStateTable table;
+  private Device device;
+
+  @Before
+  public void setup() {
+    table = new DeviceStateTable();
+    device = DeviceData.newTestInstance();
+    device.setId(TEST_ID);
+  }
+
+  @Test
+  public void testUnknownDevice() {
+    assertEquals("Unknown device has a slot", -1, table.slot(TEST_ID));
+    assertNull("Unknown device has an admin state", table.adminState(table.slot(TEST_ID)));
+  }
+
+  @Test
+  public void testUpdate() {
+    table.update(device);
+    int slot = table.slot(TEST_ID);
+    assertEquals("Device name not interned to the id's slot", slot,
+        table.slotForName(DeviceData.TEST_NAME));
+    assertEquals("Admin state not recorded", device.getAdminState(), table.adminState(slot));
+    assertEquals("Op state not recorded", device.getOperatingState(),
+        table.operatingState(slot));
+  }
+
+  @Test
+  public void testSetByName() {
+    table.update(device);
+    table.setAdminState(null, Collections.singleton(DeviceData.TEST_NAME), AdminState.LOCKED);
+    assertEquals("Admin state not set by name", AdminState.LOCKED,
+        table.adminState(table.slot(TEST_ID)));
+  }
+
+  @Test
+  public void testRefreshDoesNotUndoNewerLocalChange() {
+    table.update(device);
+    long asOf = System.nanoTime();
+    table.setOperatingState(Collections.singleton(TEST_ID), null, OperatingState.DISABLED);
+    device.setOperatingState(OperatingState.ENABLED);
+    table.updateAll(Collections.singletonList(device), asOf);
+    assertEquals("Stale refresh overwrote local op state", OperatingState.DISABLED,
+        table.operatingState(table.slot(TEST_ID)));
+  }
+
+  @Test
+  public void testGrowth() {
+    List<Device> devices = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      Device next = DeviceData.newTestInstance();
+      next.setId("id" + i);
+      next.setName("name" + i);
+      next.setAdminState(i % 2 == 0 ? AdminState.LOCKED : AdminState.UNLOCKED);
+      devices.add(next);
+    }
+    table.updateAll(devices, System.nanoTime());
+    assertEquals("Not all devices interned", 1000, table.size());
+    assertEquals("State lost while growing", AdminState.UNLOCKED,
+        table.adminState(table.slotForName("name999")));
+  }
+
+}
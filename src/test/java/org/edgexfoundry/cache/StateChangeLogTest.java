@@ -0,0 +1,64 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.edgexfoundry.domain.StateChange;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(RequiresNone.class)
+public class StateChangeLogTest {
+
+  private StateChangeLog log = new StateChangeLog(4);
+
+  @Test
+  public void testSince() {
+    log.append(changes(3));
+    assertEquals("Sequence not advanced", 3, log.lastSequence());
+    assertEquals("Changes since start not returned", 3, log.since(0).size());
+    assertEquals("Wrong changes returned", 3, log.since(1).get(1).getSequence());
+    assertEquals("Changes returned past the last", 0, log.since(3).size());
+    assertNull("Unknown sequence accepted", log.since(4));
+  }
+
+  @Test
+  public void testOverwritten() {
+    log.append(changes(6));
+    assertNull("Overwritten changes returned", log.since(1));
+    List<StateChange> kept = log.since(2);
+    assertEquals("Kept changes not returned", 4, kept.size());
+    assertEquals("Oldest kept change wrong", 3, kept.get(0).getSequence());
+  }
+
+  private static List<StateChange> changes(int count) {
+    List<StateChange> changes = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      changes.add(new StateChange("id" + i, "name" + i, StateChange.ADMIN_STATE, "LOCKED", i));
+    }
+    return changes;
+  }
+
+}
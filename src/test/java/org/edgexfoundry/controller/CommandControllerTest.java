@@ -21,34 +21,78 @@ package org.edgexfoundry.controller;
 import static org.edgexfoundry.test.data.CommandData.newTestInstance;
 import static org.edgexfoundry.test.data.CommandResponseData.checkTestData;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+import org.edgexfoundry.cache.DeviceCache;
 import org.edgexfoundry.controller.impl.CommandControllerImpl;
+import org.edgexfoundry.domain.CommandReading;
 import org.edgexfoundry.domain.CommandResponse;
+import org.edgexfoundry.domain.DeviceFilter;
+import org.edgexfoundry.domain.DeviceSelector;
+import org.edgexfoundry.domain.FieldSet;
+import org.edgexfoundry.domain.StateUpdateResult;
 import org.edgexfoundry.domain.meta.AdminState;
 import org.edgexfoundry.domain.meta.Command;
 import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceProfile;
 import org.edgexfoundry.domain.meta.DeviceService;
 import org.edgexfoundry.domain.meta.OperatingState;
 import org.edgexfoundry.domain.meta.Protocol;
+import org.edgexfoundry.domain.meta.Put;
+import org.edgexfoundry.exception.controller.ClientException;
 import org.edgexfoundry.exception.controller.LockedException;
 import org.edgexfoundry.exception.controller.NotFoundException;
 import org.edgexfoundry.exception.controller.ServiceException;
+import org.edgexfoundry.handler.AppliedValues;
+import org.edgexfoundry.handler.CatalogEncoder;
+import org.edgexfoundry.handler.CommandIndex;
+import org.edgexfoundry.handler.CommandLanes;
+import org.edgexfoundry.handler.CommandSubscriptions;
+import org.edgexfoundry.handler.IdempotencyTable;
+import org.edgexfoundry.handler.LastValueStore;
+import org.edgexfoundry.handler.MultiCommandReader;
+import org.edgexfoundry.handler.MultiDeviceReader;
+import org.edgexfoundry.handler.PayloadTranscoder;
+import org.edgexfoundry.handler.PutCoalescer;
+import org.edgexfoundry.handler.PutValidator;
+import org.edgexfoundry.handler.RateLimitedException;
+import org.edgexfoundry.handler.RateLimiter;
+import org.edgexfoundry.handler.StateFeed;
+import org.edgexfoundry.handler.StateUpdateHandler;
+import org.edgexfoundry.handler.StateWriteBehind;
 import org.edgexfoundry.test.category.RequiresNone;
 import org.edgexfoundry.test.data.AddressableData;
 import org.edgexfoundry.test.data.CommandResponseData;
 import org.edgexfoundry.test.data.DeviceData;
+import org.edgexfoundry.test.data.ProfileData;
 import org.edgexfoundry.test.data.ServiceData;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.experimental.categories.Category;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @Category(RequiresNone.class)
 public class CommandControllerTest {
@@ -68,22 +112,80 @@ public class CommandControllerTest {
   @Mock
   CommandClient commandClient;
 
+  @Mock
+  StateUpdateHandler stateUpdateHandler;
+
+  @Spy
+  DeviceCache deviceCache = new DeviceCache();
+
+  @Mock
+  RateLimiter rateLimiter;
+
+  @Spy
+  PutCoalescer putCoalescer = new PutCoalescer();
+
+  @Spy
+  CommandLanes commandLanes = new CommandLanes();
+
+  @Mock
+  CatalogEncoder catalogEncoder;
+
+  @Spy
+  PayloadTranscoder payloadTranscoder = new PayloadTranscoder();
+
+  @Mock
+  CommandIndex commandIndex;
+
+  @Spy
+  MultiCommandReader multiCommandReader = new MultiCommandReader();
+
+  @Mock
+  MultiDeviceReader multiDeviceReader;
+
+  @Spy
+  PutValidator putValidator = new PutValidator();
+
+  @Spy
+  IdempotencyTable idempotencyTable = new IdempotencyTable();
+
+  @Mock
+  StateWriteBehind stateWriteBehind;
+
+  @Spy
+  AppliedValues appliedValues = new AppliedValues();
+
+  @Spy
+  LastValueStore lastValueStore = new LastValueStore();
+
+  @Mock
+  CommandSubscriptions commandSubscriptions;
+
+  @Mock
+  StateFeed stateFeed;
+
   private Command command;
   private Device device;
 
   @Before
   public void setup() throws Exception {
     MockitoAnnotations.initMocks(this);
+    multiCommandReader.init();
     command = newTestInstance();
     device = DeviceData.newTestInstance();
   }
 
+  @After
+  public void cleanup() {
+    multiCommandReader.shutdown();
+  }
+
   @Test
   public void testDevices() {
     List<Device> devs = new ArrayList<>();
     devs.add(device);
     when(deviceClient.devices()).thenReturn(devs);
-    List<CommandResponse> responses = controller.devices(CommandResponseData.TEST_HOST);
+    List<CommandResponse> responses =
+        controller.devices(CommandResponseData.TEST_HOST, null, null, null);
     assertEquals("Find all device command responses not returning a list with one device", 1,
         responses.size());
     checkTestData(responses.get(0));
@@ -92,46 +194,147 @@ public class CommandControllerTest {
   @Test(expected = ServiceException.class)
   public void testDevicesException() {
     when(deviceClient.devices()).thenThrow(new RuntimeException(TEST_ERR_MSG));
-    controller.devices(CommandResponseData.TEST_HOST);
+    controller.devices(CommandResponseData.TEST_HOST, null, null, null);
+  }
+
+  @Test
+  public void testEncodedDevices() throws Exception {
+    byte[] body = new byte[] {1, 2, 3};
+    when(catalogEncoder.encodeCatalog(CommandResponseData.TEST_HOST, "gzip", FieldSet.ALL))
+        .thenReturn(body);
+    ResponseEntity<byte[]> response =
+        controller.encodedDevices(CommandResponseData.TEST_HOST, "deflate;q=0.5, gzip", null,
+            null, null);
+    assertEquals("Encoded catalog not returned", body, response.getBody());
+    assertEquals("Content coding not set", "gzip",
+        response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test
+  public void testEncodedDevicesIdentity() throws Exception {
+    ResponseEntity<byte[]> response =
+        controller.encodedDevices(CommandResponseData.TEST_HOST, "identity", null, null,
+            null);
+    verify(catalogEncoder).encodeCatalog(CommandResponseData.TEST_HOST, null, FieldSet.ALL);
+    assertNull("Content coding set for identity",
+        response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test(expected = ServiceException.class)
+  public void testEncodedDevicesException() throws Exception {
+    when(catalogEncoder.encodeCatalog(CommandResponseData.TEST_HOST, "gzip", FieldSet.ALL))
+        .thenThrow(new RuntimeException(TEST_ERR_MSG));
+    controller.encodedDevices(CommandResponseData.TEST_HOST, "gzip", null, null, null);
+  }
+
+  @Test
+  public void testDevicesFiltered() {
+    device.setId(TEST_DEV_ID);
+    device.setLabels(new String[] {"thermostat"});
+    Device other = DeviceData.newTestInstance();
+    other.setId("other");
+    other.setName("other");
+    other.setLabels(new String[] {"camera"});
+    when(deviceClient.devices()).thenReturn(Arrays.asList(device, other));
+    List<CommandResponse> responses = controller.devices(CommandResponseData.TEST_HOST, null,
+        null, new DeviceFilter("thermostat", null, null, null, null));
+    assertEquals("Filter not applied", 1, responses.size());
+    assertEquals("Wrong device listed", TEST_DEV_ID, responses.get(0).getDevice().getId());
+    controller.devices(CommandResponseData.TEST_HOST, null, null,
+        new DeviceFilter("camera", null, null, null, null));
+    verify(deviceClient, times(1)).devices();
+  }
+
+  @Test
+  public void testDevicesByIds() throws Exception {
+    DeviceFilter filter = new DeviceFilter();
+    filter.setIds(Arrays.asList(TEST_DEV_ID));
+    when(multiDeviceReader.read(filter.getIds(), null)).thenReturn(Arrays.asList(device));
+    List<CommandResponse> responses =
+        controller.devices(CommandResponseData.TEST_HOST, null, null, filter);
+    assertEquals("Picked device not listed", 1, responses.size());
+    verify(deviceClient, never()).devices();
+  }
+
+  @Test(expected = ClientException.class)
+  public void testDevicesFilteredByUnknownState() {
+    controller.devices(CommandResponseData.TEST_HOST, null, null,
+        new DeviceFilter(null, null, null, "nosuchstate", null));
+  }
+
+  @Test
+  public void testDevicesWithFields() {
+    when(deviceClient.devices()).thenReturn(Arrays.asList(device));
+    List<CommandResponse> responses =
+        controller.devices(CommandResponseData.TEST_HOST, "name,commands.name", null, null);
+    assertTrue("Requested field not selected", responses.get(0).getFields().wants("name"));
+    assertFalse("Unrequested field selected", responses.get(0).getFields().wants("labels"));
+  }
+
+  @Test(expected = ClientException.class)
+  public void testDeviceWithUnknownField() {
+    controller.device(TEST_DEV_ID, CommandResponseData.TEST_HOST, "nosuchfield", null);
+  }
+
+  @Test
+  public void testIndexNotModified() throws Exception {
+    when(commandIndex.version()).thenReturn(7L);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfNoneMatch("\"7\"");
+    assertEquals("Unchanged index not reported as not modified", HttpStatus.NOT_MODIFIED,
+        controller.index(CommandResponseData.TEST_HOST, null, headers).getStatusCode());
+    verify(commandIndex, never()).full(any(String.class), any(String.class));
+  }
+
+  @Test
+  public void testIndexSince() throws Exception {
+    byte[] delta = new byte[] {1};
+    when(commandIndex.version()).thenReturn(7L);
+    when(commandIndex.since(CommandResponseData.TEST_HOST, 5L)).thenReturn(delta);
+    ResponseEntity<byte[]> response =
+        controller.index(CommandResponseData.TEST_HOST, 5L, new HttpHeaders());
+    assertEquals("Index changes not returned", delta, response.getBody());
+    assertEquals("ETag not set", "\"7\"", response.getHeaders().getETag());
   }
 
   @Test
   public void testDevice() {
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(DeviceData.newTestInstance());
-    checkTestData(controller.device(TEST_DEV_ID, CommandResponseData.TEST_HOST));
+    checkTestData(controller.device(TEST_DEV_ID, CommandResponseData.TEST_HOST, null, null));
   }
 
   @Test(expected = ServiceException.class)
   public void testDeviceException() {
     when(deviceClient.device(TEST_DEV_ID)).thenThrow(new RuntimeException(TEST_ERR_MSG));
-    controller.device(TEST_DEV_ID, CommandResponseData.TEST_HOST);
+    controller.device(TEST_DEV_ID, CommandResponseData.TEST_HOST, null, null);
   }
 
   @Test(expected = NotFoundException.class)
   public void testDeviceNotFound() {
     when(deviceClient.device(TEST_DEV_ID))
         .thenThrow(new javax.ws.rs.NotFoundException(TEST_ERR_MSG));
-    controller.device(TEST_DEV_ID, CommandResponseData.TEST_HOST);
+    controller.device(TEST_DEV_ID, CommandResponseData.TEST_HOST, null, null);
   }
 
   @Test
   public void testDeviceByName() {
     when(deviceClient.deviceForName(DeviceData.TEST_NAME)).thenReturn(DeviceData.newTestInstance());
-    checkTestData(controller.deviceByName(DeviceData.TEST_NAME, CommandResponseData.TEST_HOST));
+    checkTestData(
+        controller.deviceByName(DeviceData.TEST_NAME, CommandResponseData.TEST_HOST, null, null));
   }
 
   @Test(expected = ServiceException.class)
   public void testDeviceByNameException() {
     when(deviceClient.deviceForName(DeviceData.TEST_NAME))
         .thenThrow(new RuntimeException(TEST_ERR_MSG));
-    controller.deviceByName(DeviceData.TEST_NAME, CommandResponseData.TEST_HOST);
+    controller.deviceByName(DeviceData.TEST_NAME, CommandResponseData.TEST_HOST, null, null);
   }
 
   @Test(expected = NotFoundException.class)
   public void testDeviceByNameNotFound() {
     when(deviceClient.deviceForName(DeviceData.TEST_NAME))
         .thenThrow(new javax.ws.rs.NotFoundException(TEST_ERR_MSG));
-    controller.deviceByName(DeviceData.TEST_NAME, CommandResponseData.TEST_HOST);
+    controller.deviceByName(DeviceData.TEST_NAME, CommandResponseData.TEST_HOST, null, null);
   }
 
   @Test(expected = ServiceException.class) // can't make last call to the DS via issueCommand
@@ -141,14 +344,43 @@ public class CommandControllerTest {
     device.setService(service);
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
     when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
-    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY);
+    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY, new HttpHeaders());
+  }
+
+  @Test(expected = ClientException.class)
+  public void testPutInvalidBody() {
+    Put put = new Put();
+    put.setParameterNames(Arrays.asList("temperature"));
+    command.setPut(put);
+    putValidator.setEnabled(true);
+    when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
+    when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
+    try {
+      controller.put(TEST_DEV_ID, TEST_CMD_ID, "{\"humidity\":\"40\"}", new HttpHeaders());
+    } finally {
+      verify(rateLimiter, never()).acquire(device);
+    }
+  }
+
+  @Test
+  public void testPutUnchangedSkipped() {
+    appliedValues.setCommands(new String[] {command.getName()});
+    appliedValues.record(TEST_DEV_ID, command, TEST_CMD_BODY,
+        new ResponseEntity<>(new byte[0], HttpStatus.OK));
+    when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
+    when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
+    ResponseEntity<byte[]> response =
+        controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY, new HttpHeaders());
+    assertEquals("Unchanged put not answered", "true",
+        response.getHeaders().getFirst(AppliedValues.UNCHANGED_HEADER));
+    verify(rateLimiter, never()).acquire(device);
   }
 
   @Test(expected = NotFoundException.class)
   public void testPutDeviceNotFound() {
     when(deviceClient.device(TEST_DEV_ID))
         .thenThrow(new javax.ws.rs.NotFoundException(TEST_ERR_MSG));
-    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY);
+    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY, new HttpHeaders());
   }
 
   @Test(expected = NotFoundException.class)
@@ -158,7 +390,7 @@ public class CommandControllerTest {
     device.setService(service);
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
     when(commandClient.command(TEST_CMD_ID)).thenReturn(null);
-    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY);
+    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY, new HttpHeaders());
   }
 
   @Test(expected = LockedException.class)
@@ -169,7 +401,7 @@ public class CommandControllerTest {
     device.setService(service);
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
     when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
-    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY);
+    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY, new HttpHeaders());
   }
 
   @Test(expected = LockedException.class)
@@ -180,7 +412,7 @@ public class CommandControllerTest {
     device.setService(service);
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
     when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
-    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY);
+    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY, new HttpHeaders());
   }
 
   @Test(expected = ServiceException.class) // can't make last call to the DS via issueCommand
@@ -190,7 +422,7 @@ public class CommandControllerTest {
     device.setService(service);
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
     when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
-    controller.get(TEST_DEV_ID, TEST_CMD_ID);
+    controller.get(TEST_DEV_ID, TEST_CMD_ID, new HttpHeaders());
   }
 
 
@@ -198,7 +430,7 @@ public class CommandControllerTest {
   public void testGetDeviceNotFound() {
     when(deviceClient.device(TEST_DEV_ID))
         .thenThrow(new javax.ws.rs.NotFoundException(TEST_ERR_MSG));
-    controller.get(TEST_DEV_ID, TEST_CMD_ID);
+    controller.get(TEST_DEV_ID, TEST_CMD_ID, new HttpHeaders());
   }
 
   @Test(expected = NotFoundException.class)
@@ -208,7 +440,7 @@ public class CommandControllerTest {
     device.setService(service);
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
     when(commandClient.command(TEST_CMD_ID)).thenReturn(null);
-    controller.get(TEST_DEV_ID, TEST_CMD_ID);
+    controller.get(TEST_DEV_ID, TEST_CMD_ID, new HttpHeaders());
   }
 
   @Test(expected = LockedException.class)
@@ -219,7 +451,7 @@ public class CommandControllerTest {
     device.setService(service);
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
     when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
-    controller.get(TEST_DEV_ID, TEST_CMD_ID);
+    controller.get(TEST_DEV_ID, TEST_CMD_ID, new HttpHeaders());
   }
 
   @Test
@@ -292,6 +524,19 @@ public class CommandControllerTest {
     controller.putAdminState(TEST_DEV_ID, AdminState.UNLOCKED.toString());
   }
 
+  @Test
+  public void testPutAdminStateWrittenBehind() {
+    device.setId(TEST_DEV_ID);
+    deviceCache.put(device);
+    when(stateWriteBehind.isEnabled()).thenReturn(true);
+    when(stateWriteBehind.offerAdminState(TEST_DEV_ID, false, AdminState.LOCKED))
+        .thenReturn(true);
+    controller.putAdminState(TEST_DEV_ID, AdminState.LOCKED.toString());
+    verify(deviceClient, never()).updateAdminState(TEST_DEV_ID, AdminState.LOCKED.toString());
+    assertEquals("Written behind state not applied at once", AdminState.LOCKED,
+        deviceCache.adminState(device));
+  }
+
   @Test(expected = NotFoundException.class)
   public void testPutAdminStateDeviceNotFound() {
     DeviceService service = ServiceData.newTestInstance();
@@ -350,7 +595,286 @@ public class CommandControllerTest {
     service.getAddressable().setProtocol(Protocol.ZMQ);
     when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
     when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
-    controller.get(TEST_DEV_ID, TEST_CMD_ID);
+    controller.get(TEST_DEV_ID, TEST_CMD_ID, new HttpHeaders());
+  }
+
+  @Test
+  public void testPutAdminStates() {
+    DeviceSelector selector = new DeviceSelector(Arrays.asList(TEST_DEV_ID), null, null);
+    List<StateUpdateResult> results = new ArrayList<>();
+    results.add(new StateUpdateResult(TEST_DEV_ID, 200, null));
+    when(stateUpdateHandler.updateAdminStates(selector, AdminState.LOCKED, false))
+        .thenReturn(results);
+    assertEquals("Bulk admin state update did not return the handler results", results,
+        controller.putAdminStates(AdminState.LOCKED.toString().toLowerCase(), null, selector));
+  }
+
+  @Test(expected = ClientException.class)
+  public void testPutAdminStatesUnknownState() {
+    DeviceSelector selector = new DeviceSelector(Arrays.asList(TEST_DEV_ID), null, null);
+    controller.putAdminStates("sideways", null, selector);
+  }
+
+  @Test(expected = ClientException.class)
+  public void testPutAdminStatesNoSelection() {
+    controller.putAdminStates(AdminState.LOCKED.toString(), null, new DeviceSelector());
+  }
+
+  @Test(expected = ServiceException.class)
+  public void testPutAdminStatesException() {
+    DeviceSelector selector = new DeviceSelector(null, null, DeviceData.TEST_NAME);
+    when(stateUpdateHandler.updateAdminStates(selector, AdminState.LOCKED, false))
+        .thenThrow(new RuntimeException(TEST_ERR_MSG));
+    controller.putAdminStates(AdminState.LOCKED.toString(), null, selector);
+  }
+
+  @Test
+  public void testPutOpStates() {
+    DeviceSelector selector =
+        new DeviceSelector(null, Arrays.asList(DeviceData.TEST_NAME), null);
+    List<StateUpdateResult> results = new ArrayList<>();
+    results.add(new StateUpdateResult(DeviceData.TEST_NAME, 200, null));
+    when(stateUpdateHandler.updateOpStates(selector, OperatingState.DISABLED, false))
+        .thenReturn(results);
+    assertEquals("Bulk op state update did not return the handler results", results,
+        controller.putOpStates(OperatingState.DISABLED.toString(), null, selector));
+  }
+
+  @Test(expected = ClientException.class)
+  public void testPutOpStatesUnknownState() {
+    DeviceSelector selector = new DeviceSelector(Arrays.asList(TEST_DEV_ID), null, null);
+    controller.putOpStates("sideways", null, selector);
+  }
+
+  @Test(expected = LockedException.class)
+  public void testGetLockedLocally() {
+    device.setId(TEST_DEV_ID);
+    deviceCache.put(device);
+    when(deviceClient.updateAdminState(TEST_DEV_ID, AdminState.LOCKED.toString()))
+        .thenReturn(true);
+    when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
+    controller.putAdminState(TEST_DEV_ID, AdminState.LOCKED.toString());
+    try {
+      controller.get(TEST_DEV_ID, TEST_CMD_ID, new HttpHeaders());
+    } finally {
+      verify(deviceClient, never()).device(TEST_DEV_ID);
+    }
+  }
+
+  @Test(expected = LockedException.class)
+  public void testPutDisabledLocallyByName() {
+    device.setId(TEST_DEV_ID);
+    deviceCache.put(device);
+    when(deviceClient.updateOpStateByName(DeviceData.TEST_NAME,
+        OperatingState.DISABLED.toString())).thenReturn(true);
+    when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
+    controller.putOpStateByName(DeviceData.TEST_NAME, OperatingState.DISABLED.toString());
+    controller.put(TEST_DEV_ID, TEST_CMD_ID, TEST_CMD_BODY, new HttpHeaders());
+  }
+
+  @Test(expected = RateLimitedException.class)
+  public void testGetRateLimited() {
+    DeviceService service = ServiceData.newTestInstance();
+    service.setAddressable(AddressableData.newTestInstance());
+    device.setService(service);
+    when(deviceClient.device(TEST_DEV_ID)).thenReturn(device);
+    when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
+    doThrow(new RateLimitedException(TEST_ERR_MSG, 2)).when(rateLimiter).acquire(any(Device.class));
+    controller.get(TEST_DEV_ID, TEST_CMD_ID, new HttpHeaders());
+  }
+
+  @Test(expected = ServiceException.class) // can't make last call to the DS via issueCommand
+  public void testGetByName() {
+    cacheDeviceWithCommand();
+    try {
+      controller.getByName(DeviceData.TEST_NAME, command.getName(), new HttpHeaders());
+    } finally {
+      verify(rateLimiter).acquire(device);
+      verify(deviceClient, never()).deviceForName(DeviceData.TEST_NAME);
+      verify(commandClient, never()).command(any(String.class));
+    }
+  }
+
+  @Test(expected = NotFoundException.class)
+  public void testGetByNameDeviceNotFound() {
+    when(deviceClient.deviceForName(DeviceData.TEST_NAME))
+        .thenThrow(new javax.ws.rs.NotFoundException(TEST_ERR_MSG));
+    controller.getByName(DeviceData.TEST_NAME, command.getName(), new HttpHeaders());
+  }
+
+  @Test(expected = NotFoundException.class)
+  public void testGetByNameCommandNotFound() {
+    cacheDeviceWithCommand();
+    controller.getByName(DeviceData.TEST_NAME, "unknown", new HttpHeaders());
+  }
+
+  @Test(expected = LockedException.class)
+  public void testGetByNameLocked() {
+    cacheDeviceWithCommand();
+    deviceCache.setAdminStateForName(DeviceData.TEST_NAME, AdminState.LOCKED.toString());
+    controller.getByName(DeviceData.TEST_NAME, command.getName(), new HttpHeaders());
+  }
+
+  @Test(expected = LockedException.class)
+  public void testPutByNameDisabled() {
+    cacheDeviceWithCommand();
+    deviceCache.setOpStateForName(DeviceData.TEST_NAME, OperatingState.DISABLED.toString());
+    controller.putByName(DeviceData.TEST_NAME, command.getName(), TEST_CMD_BODY,
+        new HttpHeaders());
+  }
+
+  @Test(expected = ServiceException.class) // can't make last call to the DS via issueCommand
+  public void testPutByNameReadsUncachedDevice() {
+    DeviceProfile profile = ProfileData.newTestInstance();
+    profile.addCommand(command);
+    DeviceService service = ServiceData.newTestInstance();
+    service.setAddressable(AddressableData.newTestInstance());
+    device.setId(TEST_DEV_ID);
+    device.setProfile(profile);
+    device.setService(service);
+    when(deviceClient.deviceForName(DeviceData.TEST_NAME)).thenReturn(device);
+    try {
+      controller.putByName(DeviceData.TEST_NAME, command.getName(), TEST_CMD_BODY,
+          new HttpHeaders());
+    } finally {
+      assertEquals("Device read by name not cached", device,
+          deviceCache.deviceForName(DeviceData.TEST_NAME));
+    }
+  }
+
+  @Test
+  public void testGetAll() {
+    cacheDeviceWithCommand();
+    List<CommandReading> readings = controller.getAll(TEST_DEV_ID,
+        command.getName() + "," + command.getName(), new HttpHeaders());
+    assertEquals("Not one reading per distinct command", 1, readings.size());
+    // can't make the call to the DS via issueCommand
+    assertEquals("Unreachable device service not reported as 503",
+        HttpStatus.SERVICE_UNAVAILABLE.value(), readings.get(0).getStatus());
+    verify(deviceClient, never()).device(TEST_DEV_ID);
+    verify(rateLimiter).acquire(device);
+  }
+
+  @Test(expected = NotFoundException.class)
+  public void testGetAllCommandNotFound() {
+    cacheDeviceWithCommand();
+    controller.getAll(TEST_DEV_ID, command.getName() + ",unknown", new HttpHeaders());
+  }
+
+  @Test(expected = ClientException.class)
+  public void testGetAllNoCommands() {
+    cacheDeviceWithCommand();
+    controller.getAll(TEST_DEV_ID, " , ", new HttpHeaders());
+  }
+
+  @Test(expected = LockedException.class)
+  public void testGetAllByNameLocked() {
+    cacheDeviceWithCommand();
+    deviceCache.setAdminStateForName(DeviceData.TEST_NAME, AdminState.LOCKED.toString());
+    try {
+      controller.getAllByName(DeviceData.TEST_NAME, command.getName(), new HttpHeaders());
+    } finally {
+      verify(rateLimiter, never()).acquire(any(Device.class));
+    }
+  }
+
+  @Test
+  public void testGetStaleIfError() {
+    cacheDeviceWithCommand();
+    when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
+    lastValueStore.record(TEST_DEV_ID, command.getName(),
+        new ResponseEntity<>(TEST_CMD_BODY.getBytes(), HttpStatus.OK), 5);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setCacheControl("stale-if-error=60");
+    // can't make the call to the DS via issueCommand; the last known value is served instead
+    ResponseEntity<byte[]> response = controller.get(TEST_DEV_ID, TEST_CMD_ID, headers);
+    assertEquals("Last known value not served", TEST_CMD_BODY, new String(response.getBody()));
+    assertTrue("Stale value not marked",
+        response.getHeaders().getFirst(HttpHeaders.WARNING).startsWith("111"));
+    verify(rateLimiter).acquire(device);
+  }
+
+  @Test
+  public void testGetByNameMaxStale() {
+    cacheDeviceWithCommand();
+    lastValueStore.record(TEST_DEV_ID, command.getName(),
+        new ResponseEntity<>(TEST_CMD_BODY.getBytes(), HttpStatus.OK), 5);
+    HttpHeaders headers = new HttpHeaders();
+    headers.setCacheControl("max-stale=60");
+    ResponseEntity<byte[]> response =
+        controller.getByName(DeviceData.TEST_NAME, command.getName(), headers);
+    assertEquals("Last known value not served", TEST_CMD_BODY, new String(response.getBody()));
+    verify(rateLimiter, never()).acquire(any(Device.class));
+  }
+
+  @Test(expected = LockedException.class)
+  public void testGetMaxStaleLocked() {
+    cacheDeviceWithCommand();
+    lastValueStore.record(TEST_DEV_ID, command.getName(),
+        new ResponseEntity<>(TEST_CMD_BODY.getBytes(), HttpStatus.OK), 5);
+    deviceCache.setAdminState(TEST_DEV_ID, AdminState.LOCKED.toString());
+    HttpHeaders headers = new HttpHeaders();
+    headers.setCacheControl("max-stale=60");
+    controller.getByName(DeviceData.TEST_NAME, command.getName(), headers);
+  }
+
+  @Test
+  public void testSubscribeByName() {
+    cacheDeviceWithCommand();
+    SseEmitter emitter = new SseEmitter();
+    when(commandSubscriptions.subscribe(eq(TEST_DEV_ID), eq(command.getName()), eq(5000L),
+        any(Callable.class))).thenReturn(emitter);
+    assertSame("Subscription stream not returned", emitter,
+        controller.subscribeByName(DeviceData.TEST_NAME, command.getName(), 5000));
+  }
+
+  @Test(expected = ClientException.class)
+  public void testSubscribeIntervalTooShort() {
+    cacheDeviceWithCommand();
+    when(commandSubscriptions.subscribe(eq(TEST_DEV_ID), eq(command.getName()), eq(1L),
+        any(Callable.class))).thenThrow(new IllegalArgumentException(TEST_ERR_MSG));
+    controller.subscribeByName(DeviceData.TEST_NAME, command.getName(), 1);
+  }
+
+  @Test(expected = LockedException.class)
+  public void testSubscribeLocked() {
+    cacheDeviceWithCommand();
+    deviceCache.setAdminState(TEST_DEV_ID, AdminState.LOCKED.toString());
+    when(commandClient.command(TEST_CMD_ID)).thenReturn(command);
+    controller.subscribe(TEST_DEV_ID, TEST_CMD_ID, 5000);
+  }
+
+  @Test
+  public void testStateChangesResume() {
+    SseEmitter emitter = new SseEmitter();
+    when(stateFeed.subscribe(42L)).thenReturn(emitter);
+    assertSame("Feed not resumed from Last-Event-ID", emitter,
+        controller.stateChanges("42", 7L));
+  }
+
+  @Test(expected = ClientException.class)
+  public void testStateChangesBadToken() {
+    controller.stateChanges("yesterday", null);
+  }
+
+  @Test
+  public void testRateLimitedResponse() {
+    ResponseEntity<String> response =
+        controller.rateLimited(new RateLimitedException(TEST_ERR_MSG, 2));
+    assertEquals("Rate limited command not reported as 429", HttpStatus.TOO_MANY_REQUESTS,
+        response.getStatusCode());
+    assertEquals("Retry-After not set", "2", response.getHeaders().getFirst("Retry-After"));
+  }
+
+  private void cacheDeviceWithCommand() {
+    DeviceProfile profile = ProfileData.newTestInstance();
+    profile.addCommand(command);
+    DeviceService service = ServiceData.newTestInstance();
+    service.setAddressable(AddressableData.newTestInstance());
+    device.setId(TEST_DEV_ID);
+    device.setProfile(profile);
+    device.setService(service);
+    deviceCache.put(device);
   }
 
 }
@@ -69,6 +69,7 @@ import org.junit.experimental.categories.Category;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.SpringApplicationConfiguration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
@@ -169,7 +170,7 @@ public class CommandControllerTest {
 
   @Test
   public void testDevices() {
-    List<CommandResponse> responses = controller.devices(TEST_HOST);
+    List<CommandResponse> responses = controller.devices(TEST_HOST, null, null, null);
     assertEquals("Find all device command responses not returning a list with one device", 1,
         responses.size());
     checkTestData(responses.get(0));
@@ -178,39 +179,39 @@ public class CommandControllerTest {
   @Test(expected = ServiceException.class)
   public void testDevicesWithNoClient() throws Exception {
     unsetClient();
-    controller.devices(TEST_HOST);
+    controller.devices(TEST_HOST, null, null, null);
   }
 
   @Test
   public void testDevice() {
-    checkTestData(controller.device(id, TEST_HOST));
+    checkTestData(controller.device(id, TEST_HOST, null, null));
   }
 
   @Test(expected = ServiceException.class)
   public void testDeviceWithNoClient() throws Exception {
     unsetClient();
-    controller.device(id, TEST_HOST);
+    controller.device(id, TEST_HOST, null, null);
   }
 
   @Test(expected = NotFoundException.class)
   public void testDeviceWithBadId() {
-    controller.device("baddeviceid", TEST_HOST);
+    controller.device("baddeviceid", TEST_HOST, null, null);
   }
 
   @Test
   public void testDeviceByName() {
-    checkTestData(controller.deviceByName(DeviceData.TEST_NAME, TEST_HOST));
+    checkTestData(controller.deviceByName(DeviceData.TEST_NAME, TEST_HOST, null, null));
   }
 
   @Test(expected = NotFoundException.class)
   public void testDeviceWithBadName() {
-    controller.deviceByName("baddevicename", TEST_HOST);
+    controller.deviceByName("baddevicename", TEST_HOST, null, null);
   }
 
   @Test(expected = ServiceException.class)
   public void testDeviceByNameWithNoClient() throws Exception {
     unsetClient();
-    controller.deviceByName(DeviceData.TEST_NAME, TEST_HOST);
+    controller.deviceByName(DeviceData.TEST_NAME, TEST_HOST, null, null);
   }
 
   @Test
@@ -221,7 +222,8 @@ public class CommandControllerTest {
     server.start();
     DeviceProfile profile = proClient.deviceProfile(pId);
     assertEquals("get response not ok", HttpStatus.OK,
-        controller.get(id, profile.getCommands().get(0).getId()).getStatusCode());
+        controller.get(id, profile.getCommands().get(0).getId(), new HttpHeaders())
+            .getStatusCode());
     server.stop(0);
   }
 
@@ -229,12 +231,12 @@ public class CommandControllerTest {
   public void testGetWithNoClient() throws Exception {
     unsetClient();
     DeviceProfile profile = proClient.deviceProfile(pId);
-    controller.get(id, profile.getCommands().get(0).getId()).toString();
+    controller.get(id, profile.getCommands().get(0).getId(), new HttpHeaders()).toString();
   }
 
   @Test(expected = NotFoundException.class)
   public void testGetWithBadId() {
-    controller.get("badid", "badcommandid").toString();
+    controller.get("badid", "badcommandid", new HttpHeaders()).toString();
   }
 
   @Test
@@ -245,7 +247,8 @@ public class CommandControllerTest {
     server.start();
     DeviceProfile profile = proClient.deviceProfile(pId);
     assertEquals("put response not ok", HttpStatus.OK,
-        controller.put(id, profile.getCommands().get(0).getId(), TEST_PARAMS).getStatusCode());
+        controller.put(id, profile.getCommands().get(0).getId(), TEST_PARAMS, new HttpHeaders())
+            .getStatusCode());
     server.stop(0);
   }
 
@@ -253,12 +256,13 @@ public class CommandControllerTest {
   public void testPutWithNoClient() throws Exception {
     unsetClient();
     DeviceProfile profile = proClient.deviceProfile(pId);
-    controller.put(id, profile.getCommands().get(0).getId(), TEST_PARAMS).toString();
+    controller.put(id, profile.getCommands().get(0).getId(), TEST_PARAMS, new HttpHeaders())
+        .toString();
   }
 
   @Test(expected = NotFoundException.class)
   public void testPutWithBadId() {
-    controller.put("badid", "badcommandid", TEST_PARAMS).toString();
+    controller.put("badid", "badcommandid", TEST_PARAMS, new HttpHeaders()).toString();
   }
 
   @Test(expected = NotFoundException.class)
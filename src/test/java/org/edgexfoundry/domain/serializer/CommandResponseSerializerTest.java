@@ -25,6 +25,7 @@ import java.io.IOException;
 import java.io.StringWriter;
 
 import org.edgexfoundry.domain.CommandResponse;
+import org.edgexfoundry.domain.FieldSet;
 import org.edgexfoundry.domain.meta.Addressable;
 import org.edgexfoundry.domain.meta.Command;
 import org.edgexfoundry.domain.meta.Device;
@@ -41,8 +42,11 @@ import org.junit.experimental.categories.Category;
 
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 
 @Category({RequiresNone.class})
 public class CommandResponseSerializerTest {
@@ -52,6 +56,11 @@ public class CommandResponseSerializerTest {
   private static final String RESULT_JSON2 =
       "{\"name\":\"TEST_DEVICE.NAME\",\"id\":null,\"description\":null,\"labels\":null,\"adminState\":\"UNLOCKED\",\"operatingState\":\"ENABLED\",\"lastConnected\":1000000,\"lastReported\":1000000,\"location\":null,\"commands\":null}";
 
+  private static final String RESULT_URLS =
+      "{\"name\":\"TEST_DEVICE.NAME\",\"id\":null,\"commands\":[{\"id\":null,\"name\":\"setTemp\",\"get\":{\"url\":\"nulllocalhostnullnullnullnull\"},\"put\":{\"url\":\"nulllocalhostnullnullnullnull\"}}]}";
+  private static final String RESULT_FIELDS =
+      "{\"name\":\"TEST_DEVICE.NAME\",\"commands\":[{\"put\":{\"parameterNames\":[\"Temperature\",\"Humidity\"],\"responses\":[{\"expectedValues\":[\"temperature\",\"humidity\"]}]}}]}";
+
   CommandResponseSerializer serializer;
   JsonGenerator jgen;
   SerializerProvider provider;
@@ -85,6 +94,44 @@ public class CommandResponseSerializerTest {
         stringJson.toString());
   }
 
+  @Test
+  public void testUrlsView() throws IOException {
+    serializer.serialize(newResponse(FieldSet.parse(null, FieldSet.URLS_VIEW)), jgen, provider);
+    jgen.close();
+    assertEquals("Urls view does not match expected", RESULT_URLS, stringJson.toString());
+  }
+
+  @Test
+  public void testSelectedFields() throws IOException {
+    FieldSet fields =
+        FieldSet.parse("name,commands.put.parameterNames,commands.put.responses.expectedValues",
+            null);
+    serializer.serialize(newResponse(fields), jgen, provider);
+    jgen.close();
+    assertEquals("Selected fields do not match expected", RESULT_FIELDS, stringJson.toString());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownField() {
+    FieldSet.parse("name,commands.nosuchfield", null);
+  }
+
+  @Test
+  public void testBinarySerialization() throws IOException {
+    DeviceProfile profile = ProfileData.newTestInstance();
+    profile.addCommand(CommandData.newTestInstance());
+    Device device = DeviceData.newTestInstance();
+    device.setAddressable(AddressableData.newTestInstance());
+    device.setProfile(profile);
+    CommandResponse resp = new CommandResponse(device, TEST_HOST);
+    JsonNode expected = new ObjectMapper().readTree(RESULT_JSON1);
+    for (JsonFactory factory : new JsonFactory[] {new CBORFactory(), new SmileFactory()}) {
+      ObjectMapper mapper = new ObjectMapper(factory);
+      assertEquals("Binary serialized response does not match JSON", expected,
+          mapper.readTree(mapper.writeValueAsBytes(resp)));
+    }
+  }
+
   @Test
   public void testProblematicNullFieldSerialization() throws IOException {
     Addressable addressable = AddressableData.newTestInstance();
@@ -112,4 +159,13 @@ public class CommandResponseSerializerTest {
 
   }
 
+  private CommandResponse newResponse(FieldSet fields) {
+    DeviceProfile profile = ProfileData.newTestInstance();
+    profile.addCommand(CommandData.newTestInstance());
+    Device device = DeviceData.newTestInstance();
+    device.setAddressable(AddressableData.newTestInstance());
+    device.setProfile(profile);
+    return new CommandResponse(device, TEST_HOST, fields);
+  }
+
 }
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.domain.serializer;
+
+import static org.edgexfoundry.test.data.CommandResponseData.TEST_HOST;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.edgexfoundry.domain.CommandResponse;
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.handler.Compression;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.AddressableData;
+import org.edgexfoundry.test.data.CommandData;
+import org.edgexfoundry.test.data.DeviceData;
+import org.edgexfoundry.test.data.ProfileData;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Used in development only. Remove @Ignore to compare encode time and payload size of JSON, CBOR
+ * and Smile for a single device document and for a device catalog, each with a typical profile of
+ * a dozen commands. Sizes are also shown gzip compressed, as sent to clients accepting gzip.
+ */
+@Ignore
+@Category(RequiresNone.class)
+public class EncodingBenchmark {
+
+  private static final int COMMANDS_PER_PROFILE = 12;
+  private static final int CATALOG_DEVICES = 200;
+  private static final int WARMUP = 2000;
+  private static final int ITERATIONS = 5000;
+
+  @Test
+  public void benchmark() throws IOException {
+    List<CommandResponse> catalog = new ArrayList<>(CATALOG_DEVICES);
+    for (int i = 0; i < CATALOG_DEVICES; i++) {
+      catalog.add(new CommandResponse(device(i), TEST_HOST));
+    }
+    run("single device", catalog.get(0), ITERATIONS);
+    run("catalog of " + CATALOG_DEVICES, catalog, ITERATIONS / CATALOG_DEVICES * 4);
+  }
+
+  private void run(String document, Object value, int iterations) throws IOException {
+    System.out.println(document + ":");
+    for (JsonFactory factory : new JsonFactory[] {new JsonFactory(), new CBORFactory(),
+        new SmileFactory()}) {
+      ObjectMapper mapper = new ObjectMapper(factory);
+      for (int i = 0; i < WARMUP; i++) {
+        mapper.writeValueAsBytes(value);
+      }
+      byte[] encoded = null;
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        encoded = mapper.writeValueAsBytes(value);
+      }
+      long micros = (System.nanoTime() - start) / 1000 / iterations;
+      System.out.println(String.format("  %-6s %8d us/encode %9d bytes %9d bytes gzipped",
+          factory.getFormatName(), micros, encoded.length,
+          Compression.compress(encoded, Compression.GZIP).length));
+    }
+  }
+
+  private static Device device(int index) {
+    DeviceProfile profile = ProfileData.newTestInstance();
+    for (int i = 0; i < COMMANDS_PER_PROFILE; i++) {
+      Command command = CommandData.newTestInstance();
+      command.setId("5a1f0e7c9f8fc" + String.format("%011d", i));
+      command.setName(command.getName() + i);
+      profile.addCommand(command);
+    }
+    Device device = DeviceData.newTestInstance();
+    device.setId("5a1f0e7c9f8fd" + String.format("%011d", index));
+    device.setName(device.getName() + index);
+    device.setAddressable(AddressableData.newTestInstance());
+    device.setProfile(profile);
+    return device;
+  }
+
+}
@@ -0,0 +1,143 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+@Category(RequiresNone.class)
+public class AppliedValuesTest {
+
+  private static final String TEST_DEVICE = "device1";
+  private static final String TEST_BODY = "{\"temperature\":\"72\"}";
+  private static final byte[] TEST_RESPONSE = "{}".getBytes(StandardCharsets.UTF_8);
+
+  private AppliedValues values;
+  private Command command;
+
+  @Before
+  public void setup() {
+    command = CommandData.newTestInstance();
+    values = new AppliedValues();
+    values.setCommands(new String[] {command.getName()});
+  }
+
+  @Test
+  public void testRepeatAnswered() throws Exception {
+    values.record(TEST_DEVICE, command, TEST_BODY, ok());
+    ResponseEntity<byte[]> response =
+        values.unchanged(TEST_DEVICE, command, TEST_BODY, new HttpHeaders());
+    assertArrayEquals("Last response not returned", TEST_RESPONSE, response.getBody());
+    assertEquals("Skipped put not marked", "true",
+        response.getHeaders().getFirst(AppliedValues.UNCHANGED_HEADER));
+  }
+
+  @Test
+  public void testChangedBodySent() throws Exception {
+    values.record(TEST_DEVICE, command, TEST_BODY, ok());
+    assertNull("Changed body skipped",
+        values.unchanged(TEST_DEVICE, command, "{\"temperature\":\"80\"}", new HttpHeaders()));
+  }
+
+  @Test
+  public void testForced() throws Exception {
+    values.record(TEST_DEVICE, command, TEST_BODY, ok());
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(AppliedValues.FORCE_HEADER, "true");
+    assertNull("Forced put skipped", values.unchanged(TEST_DEVICE, command, TEST_BODY, headers));
+  }
+
+  @Test
+  public void testAppliedAgainAfterMaxAge() throws Exception {
+    values.setMaxAge(0);
+    values.record(TEST_DEVICE, command, TEST_BODY, ok());
+    Thread.sleep(1);
+    assertNull("Old value skipped",
+        values.unchanged(TEST_DEVICE, command, TEST_BODY, new HttpHeaders()));
+  }
+
+  @Test
+  public void testFailedPutForgets() throws Exception {
+    values.record(TEST_DEVICE, command, TEST_BODY, ok());
+    values.record(TEST_DEVICE, command, TEST_BODY,
+        new ResponseEntity<>(TEST_RESPONSE, HttpStatus.INTERNAL_SERVER_ERROR));
+    assertNull("Put skipped after a failure",
+        values.unchanged(TEST_DEVICE, command, TEST_BODY, new HttpHeaders()));
+  }
+
+  @Test
+  public void testCommandNotConfigured() throws Exception {
+    values.setCommands(new String[0]);
+    values.record(TEST_DEVICE, command, TEST_BODY, ok());
+    assertNull("Put of unconfigured command skipped",
+        values.unchanged(TEST_DEVICE, command, TEST_BODY, new HttpHeaders()));
+  }
+
+  @Test
+  public void testCompressedReplayDecoded() throws Exception {
+    HttpHeaders compressed = new HttpHeaders();
+    compressed.set(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+    values.record(TEST_DEVICE, command, TEST_BODY, new ResponseEntity<>(
+        Compression.compress(TEST_RESPONSE, Compression.GZIP), compressed, HttpStatus.OK));
+    ResponseEntity<byte[]> response =
+        values.unchanged(TEST_DEVICE, command, TEST_BODY, new HttpHeaders());
+    assertArrayEquals("Compressed body replayed to a client not accepting it", TEST_RESPONSE,
+        response.getBody());
+    assertNull("Content-Encoding replayed",
+        response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    HttpHeaders gzip = new HttpHeaders();
+    gzip.set(HttpHeaders.ACCEPT_ENCODING, Compression.GZIP);
+    assertEquals("Content-Encoding not replayed to a client accepting it", Compression.GZIP,
+        values.unchanged(TEST_DEVICE, command, TEST_BODY, gzip).getHeaders()
+            .getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test
+  public void testCoalescedPutNotRecorded() throws Exception {
+    HttpHeaders coalesced = new HttpHeaders();
+    coalesced.set(PutCoalescer.COALESCED_HEADER, "true");
+    values.record(TEST_DEVICE, command, TEST_BODY,
+        new ResponseEntity<>(TEST_RESPONSE, coalesced, HttpStatus.ACCEPTED));
+    assertNull("Coalesced put recorded as applied",
+        values.unchanged(TEST_DEVICE, command, TEST_BODY, new HttpHeaders()));
+    values.record(TEST_DEVICE, command, TEST_BODY,
+        new ResponseEntity<>(TEST_RESPONSE, HttpStatus.ACCEPTED));
+    assertNotNull("Put accepted by the device service not recorded",
+        values.unchanged(TEST_DEVICE, command, TEST_BODY, new HttpHeaders()));
+  }
+
+  private static ResponseEntity<byte[]> ok() {
+    return new ResponseEntity<>(TEST_RESPONSE, HttpStatus.OK);
+  }
+
+}
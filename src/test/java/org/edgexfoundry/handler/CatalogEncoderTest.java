@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.FieldSet;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandResponseData;
+import org.edgexfoundry.test.data.DeviceData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@Category(RequiresNone.class)
+public class CatalogEncoderTest {
+
+  @InjectMocks
+  private CatalogEncoder encoder;
+
+  @Spy
+  ObjectMapper mapper = new ObjectMapper();
+
+  @Spy
+  CommandMetrics metrics = new CommandMetrics();
+
+  @Spy
+  DeviceCache deviceCache = new DeviceCache();
+
+  @Mock
+  DeviceClient deviceClient;
+
+  private List<Device> devices;
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    devices = Arrays.asList(DeviceData.newTestInstance());
+  }
+
+  @Test
+  public void testCompressedRoundTrip() throws Exception {
+    byte[] plain = encode(null);
+    assertTrue("Catalog not encoded as JSON",
+        new String(plain, StandardCharsets.UTF_8).contains(DeviceData.TEST_NAME));
+    for (String coding : new String[] {Compression.GZIP, Compression.DEFLATE}) {
+      byte[] compressed = encode(coding);
+      assertArrayEquals("Compressed catalog does not decompress to the JSON catalog", plain,
+          Compression.decompress(compressed, coding));
+    }
+  }
+
+  @Test
+  public void testUnchangedCatalogReused() throws Exception {
+    byte[] first = encode(Compression.GZIP);
+    byte[] second = encode(Compression.GZIP);
+    assertSame("Unchanged catalog encoded again", first, second);
+    assertEquals("Reuse not counted", 1, metrics.count("catalog.encoded.hit"));
+  }
+
+  @Test
+  public void testChangedCatalogEncodedAgain() throws Exception {
+    byte[] first = encode(Compression.GZIP);
+    devices.get(0).setLastReported(devices.get(0).getLastReported() + 1);
+    byte[] second = encode(Compression.GZIP);
+    assertFalse("Changed catalog served from a stale body", first == second);
+  }
+
+  @Test
+  public void testCachedStateWritten() throws Exception {
+    Device device = devices.get(0);
+    device.setId("123");
+    device.setAdminState(AdminState.UNLOCKED);
+    deviceCache.put(device);
+    byte[] first = encode(null);
+    deviceCache.setAdminState(device.getId(), AdminState.LOCKED.toString());
+    byte[] second = encode(null);
+    assertFalse("State change served from a stale body", first == second);
+    assertTrue("Admin state not taken from the cache",
+        new String(second, StandardCharsets.UTF_8).contains("\"adminState\":\"LOCKED\""));
+  }
+
+  @Test
+  public void testCatalogServedWithoutMetadata() throws Exception {
+    Device device = devices.get(0);
+    device.setId("123");
+    when(deviceClient.devices()).thenReturn(devices);
+    byte[] first = encoder.encodeCatalog(CommandResponseData.TEST_HOST, null, FieldSet.ALL);
+    byte[] second = encoder.encodeCatalog(CommandResponseData.TEST_HOST, null, FieldSet.ALL);
+    assertSame("Unchanged catalog encoded again", first, second);
+    verify(deviceClient, times(1)).devices();
+    deviceCache.setAdminState(device.getId(), AdminState.LOCKED.toString());
+    byte[] third = encoder.encodeCatalog(CommandResponseData.TEST_HOST, null, FieldSet.ALL);
+    assertFalse("Changed cache served from a stale body", first == third);
+    verify(deviceClient, times(2)).devices();
+  }
+
+  @Test
+  public void testFieldSelectionsEncodedSeparately() throws Exception {
+    byte[] all = encode(Compression.GZIP);
+    byte[] urls = encoder.encode(devices, CommandResponseData.TEST_HOST, Compression.GZIP,
+        FieldSet.parse(null, FieldSet.URLS_VIEW));
+    assertFalse("Field selection served the full catalog", all == urls);
+  }
+
+  @Test
+  public void testParallelSerializationMatchesSerial() throws Exception {
+    List<Device> many = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      Device device = DeviceData.newTestInstance();
+      device.setName(DeviceData.TEST_NAME + i);
+      many.add(device);
+    }
+    byte[] serial = encoder.encode(many, CommandResponseData.TEST_HOST, null, FieldSet.ALL);
+    CatalogEncoder parallelEncoder = new CatalogEncoder();
+    parallelEncoder.mapper = mapper;
+    parallelEncoder.metrics = metrics;
+    parallelEncoder.deviceCache = deviceCache;
+    parallelEncoder.setThreshold(1);
+    parallelEncoder.setChunkSize(2);
+    byte[] parallel =
+        parallelEncoder.encode(many, CommandResponseData.TEST_HOST, null, FieldSet.ALL);
+    parallelEncoder.shutdown();
+    assertArrayEquals("Parallel serialization differs from serial", serial, parallel);
+  }
+
+  @Test
+  public void testNegotiate() {
+    assertEquals("gzip not preferred", Compression.GZIP, Compression.negotiate("deflate, gzip"));
+    assertEquals("deflate not chosen", Compression.DEFLATE,
+        Compression.negotiate("gzip;q=0, deflate"));
+    assertEquals("wildcard not honored", Compression.GZIP, Compression.negotiate("*"));
+    assertNull("coding chosen for identity only client", Compression.negotiate("identity"));
+  }
+
+  @Test
+  public void testNegotiateQualities() {
+    assertEquals("Higher q-value not preferred", Compression.DEFLATE,
+        Compression.negotiate("gzip;q=0.5, deflate"));
+    assertEquals("gzip not preferred on equal q-values", Compression.GZIP,
+        Compression.negotiate("deflate;q=0.5, gzip;q=0.5"));
+    assertEquals("Wildcard q-value not applied", Compression.GZIP,
+        Compression.negotiate("deflate;q=0.8, *;q=0.9"));
+    assertNull("Coding refused with q=0 chosen",
+        Compression.negotiate("gzip;q=0, deflate;q=0.0"));
+    assertFalse("gzip accepted with q=0", Compression.accepts("gzip;q=0, *", Compression.GZIP));
+  }
+
+  private byte[] encode(String coding) throws Exception {
+    return encoder.encode(devices, CommandResponseData.TEST_HOST, coding, FieldSet.ALL);
+  }
+
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.edgexfoundry.test.data.CommandResponseData;
+import org.edgexfoundry.test.data.DeviceData;
+import org.edgexfoundry.test.data.ProfileData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@Category(RequiresNone.class)
+public class CommandIndexTest {
+
+  private static final String TEST_ID = "123";
+  private static final String TEST_HOST = CommandResponseData.TEST_HOST;
+
+  @InjectMocks
+  private CommandIndex index;
+
+  @Spy
+  DeviceCache deviceCache = new DeviceCache();
+
+  @Mock
+  DeviceClient deviceClient;
+
+  @Spy
+  CommandMetrics metrics = new CommandMetrics();
+
+  private Device device;
+  private ObjectMapper mapper = new ObjectMapper();
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    DeviceProfile profile = ProfileData.newTestInstance();
+    profile.addCommand(CommandData.newTestInstance());
+    device = DeviceData.newTestInstance();
+    device.setId(TEST_ID);
+    device.setProfile(profile);
+    when(deviceClient.devices()).thenReturn(Arrays.asList(device));
+  }
+
+  @Test
+  public void testFullIndex() throws Exception {
+    JsonNode json = mapper.readTree(index.full(TEST_HOST, null));
+    assertTrue("Index not marked full", json.get("full").asBoolean());
+    JsonNode command = json.get("devices").get(DeviceData.TEST_NAME).get("setTemp");
+    assertTrue("Get URL missing", command.get("get").asText().contains(TEST_ID));
+    assertTrue("Put URL missing", command.has("put"));
+  }
+
+  @Test
+  public void testIndexReusedUntilCatalogChanges() throws Exception {
+    byte[] first = index.full(TEST_HOST, null);
+    assertSame("Unchanged index encoded again", first, index.full(TEST_HOST, null));
+    Device changed = DeviceData.newTestInstance();
+    changed.setId(TEST_ID);
+    changed.setName("renamed");
+    deviceCache.put(changed);
+    assertFalse("Changed index not rebuilt", first == index.full(TEST_HOST, null));
+    assertEquals("Rebuilds not counted", 2, metrics.count("index.rebuilt"));
+  }
+
+  @Test
+  public void testChangesSince() throws Exception {
+    long version = index.version();
+    Device renamed = DeviceData.newTestInstance();
+    renamed.setId(TEST_ID);
+    renamed.setName("renamed");
+    deviceCache.refresh(Collections.singletonList(renamed), System.nanoTime());
+    JsonNode json = mapper.readTree(index.since(TEST_HOST, version));
+    assertFalse("Delta marked full", json.get("full").asBoolean());
+    assertTrue("Renamed device not in delta", json.get("devices").has("renamed"));
+    assertEquals("Old name not reported removed", DeviceData.TEST_NAME,
+        json.get("removed").get(0).asText());
+  }
+
+  @Test
+  public void testUnknownVersionGetsFullIndex() throws Exception {
+    long version = index.version();
+    JsonNode json = mapper.readTree(index.since(TEST_HOST, version + 10));
+    assertTrue("Version ahead of the catalog not answered with the full index",
+        json.get("full").asBoolean());
+    assertTrue("Device missing from the full index",
+        json.get("devices").has(DeviceData.TEST_NAME));
+  }
+
+}
@@ -0,0 +1,140 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.edgexfoundry.test.category.RequiresNone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+@Category(RequiresNone.class)
+public class CommandSubscriptionsTest {
+
+  private static final String TEST_DEVICE = "123";
+  private static final String TEST_COMMAND = "temperature";
+  private static final long TEST_INTERVAL = 50;
+
+  private CommandSubscriptions subscriptions = new CommandSubscriptions();
+
+  private AtomicInteger polled = new AtomicInteger();
+
+  @Before
+  public void setup() {
+    subscriptions.init();
+  }
+
+  @After
+  public void cleanup() {
+    subscriptions.shutdown();
+  }
+
+  @Test
+  public void testSubscribersSharePoll() throws Exception {
+    SseEmitter first = subscribe();
+    SseEmitter second = subscribe();
+    subscriptions.subscribe(TEST_DEVICE, TEST_COMMAND, TEST_INTERVAL * 2, this::poll);
+    assertEquals("Same device, command and interval not sharing a poll", 2,
+        subscriptions.polls());
+    assertEquals("Subscribers not counted", 2,
+        subscriptions.subscribers(TEST_DEVICE, TEST_COMMAND, TEST_INTERVAL));
+    Thread.sleep(TEST_INTERVAL * 5);
+    assertTrue("Shared poll not run", polled.get() > 0);
+    String key = TEST_DEVICE + "/" + TEST_COMMAND + "/" + TEST_INTERVAL;
+    subscriptions.unsubscribe(key, first);
+    assertEquals("Poll stopped while subscribed", 2, subscriptions.polls());
+    subscriptions.unsubscribe(key, second);
+    assertEquals("Poll not stopped with its last subscriber", 1, subscriptions.polls());
+  }
+
+  @Test
+  public void testSlowPollSkipsTurns() throws Exception {
+    subscriptions.setPollTimeout(0);
+    CountDownLatch release = new CountDownLatch(1);
+    subscriptions.subscribe(TEST_DEVICE, TEST_COMMAND, TEST_INTERVAL, () -> {
+      polled.incrementAndGet();
+      release.await();
+      return poll();
+    });
+    Thread.sleep(TEST_INTERVAL * 5);
+    assertEquals("Poll started while the previous one was running", 1, polled.get());
+    release.countDown();
+  }
+
+  @Test
+  public void testSlowPollTimesOut() throws Exception {
+    subscriptions.setPollTimeout(TEST_INTERVAL);
+    CountDownLatch release = new CountDownLatch(1);
+    subscriptions.subscribe(TEST_DEVICE, TEST_COMMAND, TEST_INTERVAL, () -> {
+      polled.incrementAndGet();
+      release.await();
+      return poll();
+    });
+    Thread.sleep(TEST_INTERVAL * 6);
+    assertTrue("Timed out poll not replaced", polled.get() > 1);
+    release.countDown();
+  }
+
+  @Test
+  public void testHungPollHoldsOneWorker() throws Exception {
+    subscriptions.setPollTimeout(TEST_INTERVAL);
+    CountDownLatch release = new CountDownLatch(1);
+    subscriptions.subscribe(TEST_DEVICE, TEST_COMMAND, TEST_INTERVAL, () -> {
+      polled.incrementAndGet();
+      // like a blocked socket read, ignores the interrupt
+      while (release.getCount() > 0) {
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          // keep waiting
+        }
+      }
+      return poll();
+    });
+    Thread.sleep(TEST_INTERVAL * 6);
+    assertEquals("Poll started while a cancelled get was still running", 1, polled.get());
+    release.countDown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIntervalRequired() {
+    subscriptions.subscribe(TEST_DEVICE, TEST_COMMAND, 0, this::poll);
+  }
+
+  private SseEmitter subscribe() {
+    return subscriptions.subscribe(TEST_DEVICE, TEST_COMMAND, TEST_INTERVAL, this::poll);
+  }
+
+  private ResponseEntity<byte[]> poll() {
+    polled.incrementAndGet();
+    return new ResponseEntity<>("{\"temperature\":\"72\"}".getBytes(StandardCharsets.UTF_8),
+        HttpStatus.OK);
+  }
+
+}
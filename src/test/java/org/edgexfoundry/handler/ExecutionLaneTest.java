@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.edgexfoundry.test.category.RequiresNone;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+@Category(RequiresNone.class)
+public class ExecutionLaneTest {
+
+  private ExecutorService executor;
+  private List<String> sent;
+  private CountDownLatch release;
+
+  @Before
+  public void setup() {
+    executor = Executors.newCachedThreadPool();
+    sent = new CopyOnWriteArrayList<>();
+    release = new CountDownLatch(1);
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdownNow();
+  }
+
+  @Test(expected = RateLimitedException.class)
+  public void testFullLaneTurnsAway() throws Exception {
+    ExecutionLane lane = new ExecutionLane("test", 1, 0, 1000);
+    Future<ResponseEntity<byte[]>> first = run(lane, Priority.NORMAL, "1");
+    waitFor(() -> lane.active() == 1);
+    try {
+      lane.run(Priority.HIGH, this::send, "2");
+    } finally {
+      release.countDown();
+      first.get(5, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void testPriorityOrder() throws Exception {
+    ExecutionLane lane = new ExecutionLane("test", 1, 10, 5000);
+    Future<ResponseEntity<byte[]>> first = run(lane, Priority.NORMAL, "first");
+    waitFor(() -> lane.active() == 1);
+    Future<ResponseEntity<byte[]>> low = run(lane, Priority.LOW, "low");
+    waitFor(() -> lane.queued() == 1);
+    Future<ResponseEntity<byte[]>> high = run(lane, Priority.HIGH, "high");
+    waitFor(() -> lane.queued() == 2);
+    release.countDown();
+    first.get(5, TimeUnit.SECONDS);
+    low.get(5, TimeUnit.SECONDS);
+    high.get(5, TimeUnit.SECONDS);
+    assertEquals("Waiting commands not let in by priority", "[first, high, low]",
+        sent.toString());
+    assertEquals("Lane slot not released", 0, lane.active());
+  }
+
+  private Future<ResponseEntity<byte[]>> run(ExecutionLane lane, Priority priority,
+      String body) {
+    return executor.submit(() -> lane.run(priority, this::send, body));
+  }
+
+  private ResponseEntity<byte[]> send(String body) {
+    sent.add(body);
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return new ResponseEntity<>(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+  }
+
+  private void waitFor(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+      Thread.sleep(10);
+    }
+  }
+
+}
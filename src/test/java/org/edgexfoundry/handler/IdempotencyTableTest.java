@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+@Category(RequiresNone.class)
+public class IdempotencyTableTest {
+
+  private static final String TEST_DEVICE = "device1";
+  private static final String TEST_KEY = "key1";
+  private static final String TEST_BODY = "{\"temperature\":\"72\"}";
+
+  private IdempotencyTable table;
+  private Command command;
+  private AtomicInteger sent;
+
+  @Before
+  public void setup() {
+    table = new IdempotencyTable();
+    command = CommandData.newTestInstance();
+    sent = new AtomicInteger();
+  }
+
+  @Test
+  public void testRepeatReplayed() throws Exception {
+    ResponseEntity<byte[]> first =
+        table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, send());
+    ResponseEntity<byte[]> second =
+        table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, send());
+    assertEquals("Repeated put sent again", 1, sent.get());
+    assertArrayEquals("Earlier response not replayed", first.getBody(), second.getBody());
+    assertEquals("Replay not marked", "true",
+        second.getHeaders().getFirst(IdempotencyTable.REPLAYED_HEADER));
+    assertNull("Original marked as replay",
+        first.getHeaders().getFirst(IdempotencyTable.REPLAYED_HEADER));
+  }
+
+  @Test
+  public void testWithoutKeyAlwaysSent() throws Exception {
+    table.submit(null, TEST_DEVICE, command, TEST_BODY, send());
+    table.submit(null, TEST_DEVICE, command, TEST_BODY, send());
+    assertEquals("Put without key not sent each time", 2, sent.get());
+  }
+
+  @Test(expected = IdempotencyKeyReusedException.class)
+  public void testKeyReusedWithDifferentBody() throws Exception {
+    table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, send());
+    table.submit(TEST_KEY, TEST_DEVICE, command, "{\"temperature\":\"80\"}", send());
+  }
+
+  @Test
+  public void testFailedPutForgotten() throws Exception {
+    try {
+      table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, body -> {
+        throw new IOException("unreachable");
+      });
+    } catch (IOException e) {
+      // expected
+    }
+    table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, send());
+    assertEquals("Retry of failed put not sent", 1, sent.get());
+  }
+
+  @Test
+  public void testConcurrentRepeatWaitsForOriginal() throws Exception {
+    CountDownLatch inFlight = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    CompletableFuture<ResponseEntity<byte[]>> original = CompletableFuture.supplyAsync(() -> {
+      try {
+        return table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, body -> {
+          inFlight.countDown();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          return send().send(body);
+        });
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    inFlight.await(5, TimeUnit.SECONDS);
+    CompletableFuture<ResponseEntity<byte[]>> repeat = CompletableFuture.supplyAsync(() -> {
+      try {
+        return table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, send());
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+    });
+    release.countDown();
+    assertArrayEquals("Repeat did not get the original's response",
+        original.get(5, TimeUnit.SECONDS).getBody(), repeat.get(5, TimeUnit.SECONDS).getBody());
+    assertEquals("Concurrent repeat sent", 1, sent.get());
+  }
+
+  @Test
+  public void testExpired() throws Exception {
+    table.setTtl(0);
+    table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, send());
+    table.submit(TEST_KEY, TEST_DEVICE, command, TEST_BODY, send());
+    assertEquals("Expired outcome replayed", 2, sent.get());
+  }
+
+  @Test
+  public void testCapacity() throws Exception {
+    table.setCapacity(2);
+    for (int i = 0; i < 5; i++) {
+      table.submit(TEST_KEY + i, TEST_DEVICE, command, TEST_BODY, send());
+    }
+    assertEquals("Capacity exceeded", 2, table.size());
+  }
+
+  private CommandSender send() {
+    return body -> new ResponseEntity<>(
+        ("{\"sent\":" + sent.incrementAndGet() + "}").getBytes(StandardCharsets.UTF_8),
+        HttpStatus.OK);
+  }
+
+}
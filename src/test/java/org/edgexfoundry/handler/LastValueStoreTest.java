@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import org.edgexfoundry.test.category.RequiresNone;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+@Category(RequiresNone.class)
+public class LastValueStoreTest {
+
+  private static final String TEST_DEVICE = "123";
+  private static final String TEST_COMMAND = "temperature";
+  private static final byte[] TEST_BODY =
+      "{\"temperature\":\"72\"}".getBytes(StandardCharsets.UTF_8);
+
+  private LastValueStore store = new LastValueStore();
+
+  @Test
+  public void testSeconds() {
+    assertEquals("max-stale seconds not parsed", 30,
+        LastValueStore.seconds("no-cache, max-stale=30", "max-stale"));
+    assertEquals("max-stale without seconds not unbounded", Long.MAX_VALUE,
+        LastValueStore.seconds("max-stale", "max-stale"));
+    assertEquals("Absent directive not -1", -1,
+        LastValueStore.seconds("max-stale=30", "stale-if-error"));
+    assertEquals("Malformed directive not -1", -1,
+        LastValueStore.seconds("stale-if-error=soon", "stale-if-error"));
+  }
+
+  @Test
+  public void testServedOnlyWhenAsked() throws Exception {
+    store.record(TEST_DEVICE, TEST_COMMAND, ok(TEST_BODY), 12);
+    assertNull("Served without max-stale", store.fresh(TEST_DEVICE, TEST_COMMAND, null, null));
+    assertNull("Served on error without stale-if-error",
+        store.fallback(TEST_DEVICE, TEST_COMMAND, "max-stale=60", null));
+    ResponseEntity<byte[]> stale = store.fresh(TEST_DEVICE, TEST_COMMAND, "max-stale=60", null);
+    assertNotNull("Not served within max-stale", stale);
+    assertArrayEquals("Wrong value served", TEST_BODY, stale.getBody());
+    assertEquals("Age not set", "0", stale.getHeaders().getFirst(HttpHeaders.AGE));
+    assertEquals("Latency not set", "12",
+        stale.getHeaders().getFirst(LastValueStore.LATENCY_HEADER));
+    assertNotNull("Not served within stale-if-error",
+        store.fallback(TEST_DEVICE, TEST_COMMAND, "stale-if-error=60", null));
+  }
+
+  @Test
+  public void testFailuresNotRecorded() throws Exception {
+    store.record(TEST_DEVICE, TEST_COMMAND,
+        new ResponseEntity<>(TEST_BODY, HttpStatus.INTERNAL_SERVER_ERROR), 1);
+    assertNull("Failed result recorded",
+        store.fresh(TEST_DEVICE, TEST_COMMAND, "max-stale", null));
+  }
+
+  @Test
+  public void testCompressedValueDecompressedForClient() throws Exception {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    headers.set(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+    store.record(TEST_DEVICE, TEST_COMMAND, new ResponseEntity<>(
+        Compression.compress(TEST_BODY, Compression.GZIP), headers, HttpStatus.OK), 1);
+    ResponseEntity<byte[]> plain = store.fresh(TEST_DEVICE, TEST_COMMAND, "max-stale", null);
+    assertArrayEquals("Value not decompressed", TEST_BODY, plain.getBody());
+    ResponseEntity<byte[]> gzip = store.fresh(TEST_DEVICE, TEST_COMMAND, "max-stale", "gzip");
+    assertEquals("Compressed value not passed through", Compression.GZIP,
+        gzip.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+  }
+
+  @Test
+  public void testLeastRecentlyUsedDropped() throws Exception {
+    store.setCapacity(2);
+    store.record(TEST_DEVICE, "a", ok(TEST_BODY), 1);
+    store.record(TEST_DEVICE, "b", ok(TEST_BODY), 1);
+    store.fresh(TEST_DEVICE, "a", "max-stale", null);
+    store.record(TEST_DEVICE, "c", ok(TEST_BODY), 1);
+    assertEquals("Store not bounded", 2, store.size());
+    assertNull("Least recently used not dropped",
+        store.fresh(TEST_DEVICE, "b", "max-stale", null));
+    assertNotNull("Recently used dropped", store.fresh(TEST_DEVICE, "a", "max-stale", null));
+  }
+
+  @Test
+  public void testOff() {
+    store.setCapacity(0);
+    store.record(TEST_DEVICE, TEST_COMMAND, ok(TEST_BODY), 1);
+    assertEquals("Value recorded with capacity 0", 0, store.size());
+  }
+
+  private static ResponseEntity<byte[]> ok(byte[] body) {
+    return new ResponseEntity<>(body, HttpStatus.OK);
+  }
+
+}
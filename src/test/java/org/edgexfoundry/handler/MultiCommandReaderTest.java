@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.edgexfoundry.domain.CommandReading;
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+@Category(RequiresNone.class)
+public class MultiCommandReaderTest {
+
+  private static final String TEST_JSON = "{\"temperature\":\"72\"}";
+
+  private MultiCommandReader reader = new MultiCommandReader();
+
+  @Before
+  public void setup() {
+    reader.init();
+  }
+
+  @After
+  public void cleanup() {
+    reader.shutdown();
+  }
+
+  @Test
+  public void testReadingsInOrder() throws Exception {
+    Map<String, Command> commands = new LinkedHashMap<>();
+    commands.put("json", named("json"));
+    commands.put("text", named("text"));
+    commands.put("limited", named("limited"));
+    commands.put("failed", named("failed"));
+    List<CommandReading> readings = reader.read(commands, command -> body -> {
+      switch (command.getName()) {
+        case "json":
+          return ok(TEST_JSON);
+        case "text":
+          return ok("72 degrees");
+        case "limited":
+          throw new RateLimitedException("too fast", 1);
+        default:
+          throw new java.io.IOException("unreachable");
+      }
+    });
+    assertEquals("Not one reading per command", 4, readings.size());
+    assertEquals("JSON reading not embedded", TEST_JSON, readings.get(0).getValue().toString());
+    assertEquals("Text reading not given as text", "72 degrees", readings.get(1).getText());
+    assertNull("Text reading embedded as JSON", readings.get(1).getValue());
+    assertEquals("Rate limited command not reported as 429",
+        HttpStatus.TOO_MANY_REQUESTS.value(), readings.get(2).getStatus());
+    assertEquals("Failed command not reported as 503", HttpStatus.SERVICE_UNAVAILABLE.value(),
+        readings.get(3).getStatus());
+    JsonNode json = new ObjectMapper().readTree(new ObjectMapper().writeValueAsString(readings));
+    assertEquals("JSON reading not embedded raw", "72",
+        json.get(0).get("value").get("temperature").asText());
+    ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+    assertEquals("JSON reading not embedded in CBOR", "72", cbor
+        .readTree(cbor.writeValueAsBytes(readings)).get(0).get("value").get("temperature")
+        .asText());
+  }
+
+  private static Command named(String name) {
+    Command command = CommandData.newTestInstance();
+    command.setName(name);
+    return command;
+  }
+
+  private static ResponseEntity<byte[]> ok(String body) {
+    return new ResponseEntity<>(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+  }
+
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.DeviceData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+@Category(RequiresNone.class)
+public class MultiDeviceReaderTest {
+
+  private static final String TEST_ID = "123";
+  private static final String TEST_ID2 = "456";
+
+  @InjectMocks
+  private MultiDeviceReader reader;
+
+  @Mock
+  DeviceClient deviceClient;
+
+  @Spy
+  DeviceCache deviceCache = new DeviceCache();
+
+  private Device device;
+  private Device other;
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    reader.init();
+    device = newDevice(TEST_ID, DeviceData.TEST_NAME);
+    other = newDevice(TEST_ID2, "other");
+  }
+
+  @After
+  public void cleanup() {
+    reader.shutdown();
+  }
+
+  @Test
+  public void testCachedServedFromCache() throws Exception {
+    deviceCache.put(device);
+    List<Device> devices = reader.read(Arrays.asList(TEST_ID), null);
+    assertEquals("Cached device not returned", Arrays.asList(device), devices);
+    verify(deviceClient, never()).device(TEST_ID);
+  }
+
+  @Test
+  public void testMissesReadFromMetadata() throws Exception {
+    deviceCache.put(device);
+    when(deviceClient.deviceForName("other")).thenReturn(other);
+    when(deviceClient.device("unknown")).thenThrow(new javax.ws.rs.NotFoundException());
+    List<Device> devices = reader.read(Arrays.asList(TEST_ID, "unknown"),
+        Arrays.asList("other", DeviceData.TEST_NAME));
+    assertEquals("Devices not returned once each in order", Arrays.asList(device, other),
+        devices);
+    assertEquals("Read device not cached", other, deviceCache.device(TEST_ID2));
+  }
+
+  @Test
+  public void testManyMissesReadAsCatalog() throws Exception {
+    reader.setCatalogThreshold(2);
+    when(deviceClient.devices()).thenReturn(Arrays.asList(device, other));
+    List<Device> devices = reader.read(Arrays.asList(TEST_ID, TEST_ID2), null);
+    assertEquals("Devices not returned", Arrays.asList(device, other), devices);
+    verify(deviceClient, times(1)).devices();
+    verify(deviceClient, never()).device(TEST_ID);
+  }
+
+  @Test
+  public void testNothingAsked() throws Exception {
+    assertEquals("Devices returned for no ids", Collections.emptyList(),
+        reader.read(null, null));
+  }
+
+  private static Device newDevice(String id, String name) {
+    Device device = DeviceData.newTestInstance();
+    device.setId(id);
+    device.setName(name);
+    return device;
+  }
+
+}
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+
+import org.edgexfoundry.domain.serializer.BinaryJacksonHttpMessageConverter;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+@Category(RequiresNone.class)
+public class PayloadTranscoderTest {
+
+  private static final String TEST_JSON = "{\"temperature\":\"72\",\"readings\":[1,2.5,true,null]}";
+
+  private PayloadTranscoder transcoder = new PayloadTranscoder();
+
+  @Test
+  public void testNegotiate() {
+    assertEquals("CBOR not chosen", BinaryJacksonHttpMessageConverter.APPLICATION_CBOR,
+        transcoder.negotiate("application/cbor, application/json;q=0.5"));
+    assertEquals("Smile not chosen", BinaryJacksonHttpMessageConverter.APPLICATION_SMILE,
+        transcoder.negotiate("application/x-jackson-smile"));
+    assertNull("Binary chosen over preferred JSON",
+        transcoder.negotiate("application/json, application/cbor;q=0.5"));
+    assertNull("Binary chosen for wildcard", transcoder.negotiate("*/*"));
+    assertNull("Binary chosen without Accept", transcoder.negotiate(null));
+  }
+
+  @Test
+  public void testTranscodeToCbor() throws Exception {
+    ResponseEntity<byte[]> response = transcoder.transcode(json(TEST_JSON),
+        BinaryJacksonHttpMessageConverter.APPLICATION_CBOR);
+    assertEquals("Content type not set", BinaryJacksonHttpMessageConverter.APPLICATION_CBOR,
+        response.getHeaders().getContentType());
+    assertEquals("CBOR does not match JSON", new ObjectMapper().readTree(TEST_JSON),
+        new ObjectMapper(new CBORFactory()).readTree(response.getBody()));
+  }
+
+  @Test
+  public void testTranscodeCompressedToSmile() throws Exception {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    headers.set(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+    byte[] compressed =
+        Compression.compress(TEST_JSON.getBytes(StandardCharsets.UTF_8), Compression.GZIP);
+    ResponseEntity<byte[]> response =
+        transcoder.transcode(new ResponseEntity<>(compressed, headers, HttpStatus.OK),
+            BinaryJacksonHttpMessageConverter.APPLICATION_SMILE);
+    assertNull("Content coding kept after transcoding",
+        response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertEquals("Smile does not match JSON", new ObjectMapper().readTree(TEST_JSON),
+        new ObjectMapper(new SmileFactory()).readTree(response.getBody()));
+  }
+
+  @Test
+  public void testNonJsonPassedThrough() throws Exception {
+    ResponseEntity<byte[]> original = json("not json");
+    assertSame("Non JSON result transcoded", original,
+        transcoder.transcode(original, BinaryJacksonHttpMessageConverter.APPLICATION_CBOR));
+  }
+
+  private static ResponseEntity<byte[]> json(String body) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    return new ResponseEntity<>(body.getBytes(StandardCharsets.UTF_8), headers, HttpStatus.OK);
+  }
+
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+@Category(RequiresNone.class)
+public class PutCoalescerTest {
+
+  private static final String TEST_DEV_ID = "123";
+
+  @InjectMocks
+  private PutCoalescer coalescer;
+
+  @Spy
+  CommandMetrics metrics = new CommandMetrics();
+
+  private Command command;
+  private ExecutorService executor;
+  private List<String> sent;
+  private CountDownLatch release;
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    command = CommandData.newTestInstance();
+    coalescer.init();
+    coalescer.setCommands(new String[] {command.getName()});
+    executor = Executors.newCachedThreadPool();
+    sent = new CopyOnWriteArrayList<>();
+    release = new CountDownLatch(1);
+  }
+
+  @After
+  public void cleanup() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testNotCoalescedCommand() throws Exception {
+    coalescer.setCommands(new String[0]);
+    assertEquals("Put not sent straight through", HttpStatus.OK,
+        coalescer.submit(TEST_DEV_ID, command, "1", this::send).getStatusCode());
+  }
+
+  @Test
+  public void testLastWriterWins() throws Exception {
+    Future<ResponseEntity<byte[]>> first = submit("1");
+    waitFor(() -> sent.size() == 1);
+    Future<ResponseEntity<byte[]>> second = submit("2");
+    waitFor(() -> gauge("coalesce.waiting") == 1);
+    Future<ResponseEntity<byte[]>> third = submit("3");
+    assertEquals("Superseded put not reported as coalesced", HttpStatus.ACCEPTED,
+        second.get(5, TimeUnit.SECONDS).getStatusCode());
+    assertEquals("Superseded put not marked coalesced", "true",
+        second.get().getHeaders().getFirst(PutCoalescer.COALESCED_HEADER));
+    release.countDown();
+    assertEquals("In flight put not completed", HttpStatus.OK,
+        first.get(5, TimeUnit.SECONDS).getStatusCode());
+    assertEquals("Latest put not sent", HttpStatus.OK,
+        third.get(5, TimeUnit.SECONDS).getStatusCode());
+    assertEquals("Only the in flight and latest puts should reach the device", "[1, 3]",
+        sent.toString());
+    assertEquals("Superseded put not counted", 1, metrics.count("coalesce.superseded"));
+    assertEquals("Put still reported waiting", 0, gauge("coalesce.waiting"));
+    assertEquals("Slot kept after its puts completed", 0, gauge("coalesce.inflight"));
+  }
+
+  @Test
+  public void testSlotFreedAfterPut() throws Exception {
+    release.countDown();
+    assertEquals("Put not sent", HttpStatus.OK,
+        coalescer.submit(TEST_DEV_ID, command, "1", this::send).getStatusCode());
+    assertEquals("Slot kept after its put completed", 0, gauge("coalesce.inflight"));
+    assertEquals("Put after a completed put not sent", HttpStatus.OK,
+        coalescer.submit(TEST_DEV_ID, command, "2", this::send).getStatusCode());
+    assertEquals("Both puts should reach the device", "[1, 2]", sent.toString());
+  }
+
+  private Future<ResponseEntity<byte[]>> submit(String body) {
+    return executor.submit(() -> coalescer.submit(TEST_DEV_ID, command, body, this::send));
+  }
+
+  private ResponseEntity<byte[]> send(String body) {
+    sent.add(body);
+    try {
+      release.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return new ResponseEntity<>(body.getBytes(StandardCharsets.UTF_8), HttpStatus.OK);
+  }
+
+  private int gauge(String name) {
+    return metrics.snapshot().get(name).intValue();
+  }
+
+  private void waitFor(BooleanSupplier condition) throws InterruptedException {
+    for (int i = 0; i < 500 && !condition.getAsBoolean(); i++) {
+      Thread.sleep(10);
+    }
+  }
+
+}
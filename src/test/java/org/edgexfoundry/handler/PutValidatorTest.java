@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+
+import org.edgexfoundry.domain.meta.Command;
+import org.edgexfoundry.domain.meta.Put;
+import org.edgexfoundry.domain.meta.Response;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.CommandData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(RequiresNone.class)
+public class PutValidatorTest {
+
+  private PutValidator validator;
+  private Command command;
+
+  @Before
+  public void setup() {
+    validator = new PutValidator();
+    validator.setEnabled(true);
+    command = CommandData.newTestInstance();
+    Put put = new Put();
+    put.setParameterNames(Arrays.asList("temperature", "unit"));
+    command.setPut(put);
+  }
+
+  @Test
+  public void testValidBody() {
+    assertNull("Valid body rejected",
+        validator.validate(command, "{\"temperature\":\"72\",\"unit\":{\"scale\":\"F\"}}"));
+  }
+
+  @Test
+  public void testUnknownParameter() {
+    assertNotNull("Unknown parameter accepted",
+        validator.validate(command, "{\"humidity\":\"40\"}"));
+  }
+
+  @Test
+  public void testMalformedBody() {
+    assertNotNull("Malformed body accepted", validator.validate(command, "{\"temperature\":"));
+    assertNotNull("Non object body accepted", validator.validate(command, "[\"72\"]"));
+    assertNotNull("Trailing content accepted", validator.validate(command, "{} {}"));
+    assertNotNull("Missing body accepted", validator.validate(command, ""));
+  }
+
+  @Test
+  public void testExpectedValuesWithoutParameterNames() {
+    Response response = new Response();
+    response.setExpectedValues(Arrays.asList("temperature"));
+    Put put = new Put();
+    put.setResponses(Arrays.asList(response));
+    command.setPut(put);
+    command.setId("other");
+    assertNull("Expected value rejected", validator.validate(command, "{\"temperature\":\"72\"}"));
+    assertNotNull("Unexpected value accepted", validator.validate(command, "{\"unit\":\"F\"}"));
+  }
+
+  @Test
+  public void testDisabled() {
+    validator.setEnabled(false);
+    assertNull("Disabled validator rejected a body", validator.validate(command, "not json"));
+  }
+
+}
@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.DeviceProfile;
+import org.edgexfoundry.handler.RateLimitProperties.Limit;
+import org.edgexfoundry.metrics.CommandMetrics;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.DeviceData;
+import org.edgexfoundry.test.data.ProfileData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InjectMocks;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+@Category(RequiresNone.class)
+public class RateLimiterTest {
+
+  @InjectMocks
+  private RateLimiter limiter;
+
+  @Spy
+  RateLimitProperties properties = new RateLimitProperties();
+
+  @Spy
+  CommandMetrics metrics = new CommandMetrics();
+
+  @Spy
+  DeviceCache deviceCache = new DeviceCache();
+
+  private Device device;
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    limiter.init();
+    DeviceProfile profile = ProfileData.newTestInstance();
+    device = DeviceData.newTestInstance();
+    device.setProfile(profile);
+    Limit limit = new Limit();
+    limit.setRate(0.5);
+    limit.setBurst(1);
+    properties.getProfiles().put(profile.getName(), limit);
+    properties.setQueueSize(0);
+  }
+
+  @Test
+  public void testTokenBucket() {
+    TokenBucket bucket = new TokenBucket(1, 2);
+    assertEquals("Burst token not available", 0, bucket.reserve(1, Long.MAX_VALUE));
+    assertEquals("Burst token not available", 0, bucket.reserve(1, Long.MAX_VALUE));
+    assertTrue("Empty bucket did not reserve a token", bucket.reserve(1, Long.MAX_VALUE) > 0);
+    assertEquals("Full line was not turned away", -1, bucket.reserve(1, Long.MAX_VALUE));
+    bucket.doneWaiting();
+    assertEquals("Short max wait was not turned away", -1, bucket.reserve(1, 1));
+  }
+
+  @Test
+  public void testUnlimitedDevice() {
+    device.setProfile(null);
+    for (int i = 0; i < 10; i++) {
+      limiter.acquire(device);
+    }
+  }
+
+  @Test
+  public void testRejectedWhenLineFull() {
+    limiter.acquire(device);
+    try {
+      limiter.acquire(device);
+      fail("Command over the limit with no room to wait was not turned away");
+    } catch (RateLimitedException e) {
+      assertTrue("Retry-After not set", e.getRetryAfter() >= 1);
+    }
+    assertEquals("Rejection not counted", 1,
+        metrics.count("ratelimit.profile." + device.getProfile().getName() + ".rejected"));
+  }
+
+  @Test
+  public void testRemovedDeviceBucketDropped() {
+    device.setId("123");
+    deviceCache.put(device);
+    limiter.acquire(device);
+    deviceCache.refresh(Collections.emptyList(), System.nanoTime());
+    limiter.acquire(device);
+  }
+
+  @Test
+  public void testChangedLimitApplied() {
+    limiter.acquire(device);
+    Limit limit = new Limit();
+    limit.setRate(0.5);
+    limit.setBurst(2);
+    properties.getProfiles().put(device.getProfile().getName(), limit);
+    limiter.acquire(device);
+  }
+
+  @Test
+  public void testInterruptedWaitRefunded() {
+    properties.setQueueSize(1);
+    properties.setMaxWait(10000);
+    limiter.acquire(device);
+    Thread.currentThread().interrupt();
+    try {
+      limiter.acquire(device);
+      fail("Interrupted wait did not give up");
+    } catch (RateLimitedException e) {
+      assertTrue("Interrupt not kept", Thread.interrupted());
+    }
+    properties.setQueueSize(0);
+    try {
+      limiter.acquire(device);
+      fail("Command over the limit with no room to wait was not turned away");
+    } catch (RateLimitedException e) {
+      assertTrue("Reserved token not given back", e.getRetryAfter() <= 2);
+    }
+  }
+
+}
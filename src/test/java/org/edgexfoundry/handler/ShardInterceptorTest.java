@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.DeviceData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+@Category(RequiresNone.class)
+public class ShardInterceptorTest {
+
+  private static final String TEST_ID = "123";
+  private static final String TEST_PEER = "localhost:48083";
+
+  @InjectMocks
+  private ShardInterceptor interceptor;
+
+  @Mock
+  ShardRouter shardRouter;
+
+  @Spy
+  DeviceCache deviceCache = new DeviceCache();
+
+  @Mock
+  DeviceClient deviceClient;
+
+  private MockHttpServletRequest request;
+  private MockHttpServletResponse response = new MockHttpServletResponse();
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    when(shardRouter.isEnabled()).thenReturn(true);
+    when(shardRouter.owner(TEST_ID)).thenReturn(TEST_PEER);
+    request = new MockHttpServletRequest("GET", "/api/v1/device/" + TEST_ID + "/command/1");
+  }
+
+  @Test
+  public void testPeerDeviceRouted() throws Exception {
+    variables("id", TEST_ID);
+    assertFalse("Peer's device handled here", interceptor.preHandle(request, response, null));
+    verify(shardRouter).route(TEST_PEER, request, response);
+  }
+
+  @Test
+  public void testNameResolvedFromCache() throws Exception {
+    Device device = DeviceData.newTestInstance();
+    device.setId(TEST_ID);
+    deviceCache.put(device);
+    variables("name", DeviceData.TEST_NAME);
+    assertFalse("Peer's device handled here", interceptor.preHandle(request, response, null));
+    verify(deviceClient, never()).deviceForName(DeviceData.TEST_NAME);
+    verify(shardRouter).route(TEST_PEER, request, response);
+  }
+
+  @Test
+  public void testForwardedHandledHere() throws Exception {
+    variables("id", TEST_ID);
+    request.addHeader(ShardRouter.FORWARDED_HEADER, TEST_PEER);
+    assertTrue("Forwarded request forwarded again",
+        interceptor.preHandle(request, response, null));
+    verify(shardRouter, never()).route(any(String.class), any(HttpServletRequest.class),
+        any(HttpServletResponse.class));
+  }
+
+  @Test
+  public void testOwnDeviceHandledHere() throws Exception {
+    variables("id", "456");
+    assertTrue("Own device not handled here", interceptor.preHandle(request, response, null));
+  }
+
+  private void variables(String name, String value) {
+    Map<String, String> variables = new HashMap<>();
+    variables.put(name, value);
+    request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, variables);
+  }
+
+}
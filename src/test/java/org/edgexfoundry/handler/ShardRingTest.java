@@ -0,0 +1,81 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.edgexfoundry.test.category.RequiresNone;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(RequiresNone.class)
+public class ShardRingTest {
+
+  private static final int KEYS = 10000;
+
+  private ShardRing ring =
+      new ShardRing(Arrays.asList("localhost:48082", "localhost:48083", "localhost:48084"), 64);
+
+  @Test
+  public void testOwnerStable() {
+    ShardRing same =
+        new ShardRing(Arrays.asList("localhost:48084", "localhost:48083", "localhost:48082"), 64);
+    for (int i = 0; i < KEYS; i++) {
+      assertEquals("Same members disagree on the owner", ring.owner("device" + i),
+          same.owner("device" + i));
+    }
+  }
+
+  @Test
+  public void testKeysSpread() {
+    Map<String, Integer> owned = new HashMap<>();
+    for (int i = 0; i < KEYS; i++) {
+      owned.merge(ring.owner("device" + i), 1, Integer::sum);
+    }
+    assertEquals("Not every member owns keys", 3, owned.size());
+    for (int count : owned.values()) {
+      assertTrue("Keys badly spread: " + owned, count > KEYS / 6);
+    }
+  }
+
+  @Test
+  public void testOnlyLeaversKeysMove() {
+    ShardRing smaller = new ShardRing(Arrays.asList("localhost:48082", "localhost:48083"), 64);
+    for (int i = 0; i < KEYS; i++) {
+      String owner = ring.owner("device" + i);
+      if (!"localhost:48084".equals(owner)) {
+        assertEquals("Key of a remaining member moved", owner, smaller.owner("device" + i));
+      }
+    }
+  }
+
+  @Test
+  public void testEmpty() {
+    assertNull("Empty ring has an owner",
+        new ShardRing(Collections.<String>emptyList(), 64).owner("device"));
+  }
+
+}
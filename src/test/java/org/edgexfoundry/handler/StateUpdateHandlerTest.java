@@ -0,0 +1,178 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.controller.DeviceClient;
+import org.edgexfoundry.domain.DeviceSelector;
+import org.edgexfoundry.domain.StateUpdateResult;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.DeviceData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+
+@Category(RequiresNone.class)
+public class StateUpdateHandlerTest {
+
+  private static final String TEST_ERR_MSG = "test message";
+  private static final String TEST_ID1 = "123";
+  private static final String TEST_ID2 = "456";
+  private static final String TEST_LABEL = "MODBUS";
+
+  @InjectMocks
+  private StateUpdateHandler handler;
+
+  @Mock
+  DeviceClient deviceClient;
+
+  @Spy
+  DeviceCache deviceCache = new DeviceCache();
+
+  @Mock
+  ShardRouter shardRouter;
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    handler.init();
+  }
+
+  @After
+  public void cleanup() {
+    handler.shutdown();
+  }
+
+  @Test
+  public void testUpdateAdminStates() {
+    String locked = AdminState.LOCKED.toString();
+    when(deviceClient.updateAdminState(TEST_ID1, locked)).thenReturn(true);
+    when(deviceClient.updateAdminState(TEST_ID2, locked))
+        .thenThrow(new javax.ws.rs.NotFoundException(TEST_ERR_MSG));
+    when(deviceClient.updateAdminStateByName(DeviceData.TEST_NAME, locked))
+        .thenThrow(new RuntimeException(TEST_ERR_MSG));
+    DeviceSelector selector = new DeviceSelector(Arrays.asList(TEST_ID1, TEST_ID2),
+        Arrays.asList(DeviceData.TEST_NAME), null);
+    List<StateUpdateResult> results = handler.updateAdminStates(selector, AdminState.LOCKED, false);
+    assertEquals("Bulk update did not return one result per device", 3, results.size());
+    assertEquals("Updated device not reported as ok", 200, results.get(0).getStatus());
+    assertEquals("Unknown device not reported as not found", 404, results.get(1).getStatus());
+    assertEquals("Failed device not reported as unavailable", 503, results.get(2).getStatus());
+    assertEquals("Results not in selection order", DeviceData.TEST_NAME,
+        results.get(2).getDevice());
+  }
+
+  @Test
+  public void testUpdateOpStatesByLabel() {
+    String disabled = OperatingState.DISABLED.toString();
+    Device device = DeviceData.newTestInstance();
+    device.setId(TEST_ID2);
+    List<Device> devices = new ArrayList<>();
+    devices.add(device);
+    when(deviceClient.devicesByLabel(TEST_LABEL)).thenReturn(devices);
+    when(deviceClient.updateOpState(TEST_ID1, disabled)).thenReturn(true);
+    when(deviceClient.updateOpState(TEST_ID2, disabled)).thenReturn(true);
+    DeviceSelector selector = new DeviceSelector(Arrays.asList(TEST_ID1, TEST_ID2), null,
+        TEST_LABEL);
+    List<StateUpdateResult> results =
+        handler.updateOpStates(selector, OperatingState.DISABLED, false);
+    assertEquals("Label selection not merged with the selected ids", 2, results.size());
+    assertEquals("Updated device not reported as ok", 200, results.get(1).getStatus());
+  }
+
+  @Test
+  public void testPeerDevicesSentToOwner() throws Exception {
+    String locked = AdminState.LOCKED.toString();
+    String peer = "peer:48082";
+    String path = "/api/v1/device/adminstate/" + locked;
+    when(shardRouter.isEnabled()).thenReturn(true);
+    when(shardRouter.owner(TEST_ID2)).thenReturn(peer);
+    when(deviceClient.updateAdminState(TEST_ID1, locked)).thenReturn(true);
+    DeviceSelector selector = new DeviceSelector(Arrays.asList(TEST_ID2, TEST_ID1), null, null);
+    List<StateUpdateResult> forwarded =
+        Collections.singletonList(new StateUpdateResult(TEST_ID2, 200, null));
+    when(shardRouter.forwardStates(eq(peer), eq(path), any(DeviceSelector.class)))
+        .thenReturn(forwarded);
+    List<StateUpdateResult> results = handler.updateAdminStates(selector, AdminState.LOCKED,
+        false);
+    verify(deviceClient, never()).updateAdminState(TEST_ID2, locked);
+    assertEquals("Not one result per device", 2, results.size());
+    assertEquals("Owner's result not returned in selection order", TEST_ID2,
+        results.get(0).getDevice());
+    assertEquals("Owner's result not returned", 200, results.get(0).getStatus());
+    assertEquals("Own device not updated here", 200, results.get(1).getStatus());
+  }
+
+  @Test
+  public void testForwardDoesNotHoldLocalUpdates() throws Exception {
+    // with one metadata update at a time, a forward on the same pool would starve the local one
+    String locked = AdminState.LOCKED.toString();
+    String peer = "peer:48082";
+    CountDownLatch updated = new CountDownLatch(1);
+    when(shardRouter.isEnabled()).thenReturn(true);
+    when(shardRouter.owner(TEST_ID2)).thenReturn(peer);
+    when(deviceClient.updateAdminState(TEST_ID1, locked)).thenAnswer(invocation -> {
+      updated.countDown();
+      return true;
+    });
+    when(shardRouter.forwardStates(eq(peer), anyString(), any(DeviceSelector.class)))
+        .thenAnswer(invocation -> Collections.singletonList(new StateUpdateResult(TEST_ID2,
+            updated.await(5, TimeUnit.SECONDS) ? 200 : 503, null)));
+    List<StateUpdateResult> results = handler.updateAdminStates(
+        new DeviceSelector(Arrays.asList(TEST_ID2, TEST_ID1), null, null), AdminState.LOCKED,
+        false);
+    assertEquals("Local update held up by the forward", 200, results.get(0).getStatus());
+    assertEquals("Own device not updated here", 200, results.get(1).getStatus());
+  }
+
+  @Test
+  public void testForwardedUpdateAppliedHere() {
+    String locked = AdminState.LOCKED.toString();
+    when(shardRouter.isEnabled()).thenReturn(true);
+    when(shardRouter.owner(anyString())).thenReturn("peer:48082");
+    when(deviceClient.updateAdminState(TEST_ID1, locked)).thenReturn(true);
+    List<StateUpdateResult> results = handler.updateAdminStates(
+        new DeviceSelector(Arrays.asList(TEST_ID1), null, null), AdminState.LOCKED, true);
+    assertEquals("Forwarded update not applied here", 200, results.get(0).getStatus());
+  }
+
+}
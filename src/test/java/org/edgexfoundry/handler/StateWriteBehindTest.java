@@ -0,0 +1,163 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.edgexfoundry.cache.DeviceCache;
+import org.edgexfoundry.domain.DeviceSelector;
+import org.edgexfoundry.domain.StateUpdateResult;
+import org.edgexfoundry.domain.meta.AdminState;
+import org.edgexfoundry.domain.meta.Device;
+import org.edgexfoundry.domain.meta.OperatingState;
+import org.edgexfoundry.test.category.RequiresNone;
+import org.edgexfoundry.test.data.DeviceData;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
+import org.springframework.http.HttpStatus;
+
+@Category(RequiresNone.class)
+public class StateWriteBehindTest {
+
+  private static final String TEST_ID = "123";
+  private static final String TEST_ID2 = "456";
+  private static final String TEST_NAME2 = "other";
+
+  @InjectMocks
+  private StateWriteBehind writeBehind;
+
+  @Mock
+  StateUpdateHandler stateUpdateHandler;
+
+  @Spy
+  DeviceCache deviceCache = new DeviceCache();
+
+  @Before
+  public void setup() {
+    MockitoAnnotations.initMocks(this);
+    deviceCache.put(newDevice(TEST_ID, DeviceData.TEST_NAME));
+    deviceCache.put(newDevice(TEST_ID2, TEST_NAME2));
+    writeBehind.setEnabled(true);
+  }
+
+  @Test
+  public void testDisabledTurnsAway() {
+    writeBehind.setEnabled(false);
+    assertFalse("Change queued while disabled",
+        writeBehind.offerAdminState(TEST_ID, false, AdminState.LOCKED));
+  }
+
+  @Test
+  public void testRepeatedChangesCollapse() {
+    when(stateUpdateHandler.writeAdminStates(any(DeviceSelector.class), any(AdminState.class)))
+        .thenReturn(Arrays.asList(ok(TEST_ID), ok(TEST_ID2)));
+    writeBehind.offerAdminState(TEST_ID, false, AdminState.UNLOCKED);
+    writeBehind.offerAdminState(TEST_ID, false, AdminState.LOCKED);
+    writeBehind.offerAdminState(TEST_ID2, false, AdminState.LOCKED);
+    assertEquals("Repeated change not collapsed", 2, writeBehind.size());
+    writeBehind.flush();
+    ArgumentCaptor<DeviceSelector> selector = ArgumentCaptor.forClass(DeviceSelector.class);
+    verify(stateUpdateHandler, times(1)).writeAdminStates(selector.capture(),
+        any(AdminState.class));
+    verify(stateUpdateHandler, never()).writeAdminStates(any(DeviceSelector.class),
+        eq(AdminState.UNLOCKED));
+    assertEquals("Changes not batched", Arrays.asList(TEST_ID, TEST_ID2),
+        selector.getValue().getIds());
+    assertEquals("Written changes still queued", 0, writeBehind.size());
+    assertNull("Written changes still pending", writeBehind.pendingSince());
+  }
+
+  @Test
+  public void testChangesByIdAndNameCollapse() {
+    when(stateUpdateHandler.writeAdminStates(any(DeviceSelector.class), any(AdminState.class)))
+        .thenReturn(Arrays.asList(ok(TEST_ID)));
+    writeBehind.offerAdminState(TEST_ID, false, AdminState.LOCKED);
+    writeBehind.offerAdminState(DeviceData.TEST_NAME, true, AdminState.UNLOCKED);
+    assertEquals("Changes by id and name not collapsed", 1, writeBehind.size());
+    writeBehind.flush();
+    ArgumentCaptor<DeviceSelector> selector = ArgumentCaptor.forClass(DeviceSelector.class);
+    verify(stateUpdateHandler, times(1)).writeAdminStates(selector.capture(),
+        eq(AdminState.UNLOCKED));
+    verify(stateUpdateHandler, never()).writeAdminStates(any(DeviceSelector.class),
+        eq(AdminState.LOCKED));
+    assertEquals("Change not written by id", Collections.singletonList(TEST_ID),
+        selector.getValue().getIds());
+    assertTrue("Change written by name", selector.getValue().getNames().isEmpty());
+  }
+
+  @Test
+  public void testUnknownDeviceTurnedAway() {
+    assertFalse("Change of an unknown device queued",
+        writeBehind.offerAdminState("unknown", true, AdminState.LOCKED));
+  }
+
+  @Test
+  public void testFailedChangeRetried() {
+    writeBehind.setRetries(1);
+    when(stateUpdateHandler.writeOpStates(any(DeviceSelector.class), any(OperatingState.class)))
+        .thenReturn(Arrays.asList(new StateUpdateResult(TEST_ID,
+            HttpStatus.SERVICE_UNAVAILABLE.value(), "down")));
+    writeBehind.offerOpState(TEST_ID, false, OperatingState.DISABLED);
+    writeBehind.flush();
+    assertEquals("Failed change not queued again", 1, writeBehind.size());
+    writeBehind.flush();
+    assertEquals("Change retried beyond the limit", 0, writeBehind.size());
+  }
+
+  @Test
+  public void testQueueBounded() {
+    writeBehind.setQueueSize(1);
+    assertTrue("Change turned away",
+        writeBehind.offerAdminState(TEST_ID, false, AdminState.LOCKED));
+    assertFalse("Queue grew beyond its size",
+        writeBehind.offerAdminState(TEST_ID2, false, AdminState.LOCKED));
+    assertTrue("Queued change not replaced",
+        writeBehind.offerAdminState(TEST_ID, false, AdminState.UNLOCKED));
+  }
+
+  private static Device newDevice(String id, String name) {
+    Device device = DeviceData.newTestInstance();
+    device.setId(id);
+    device.setName(name);
+    return device;
+  }
+
+  private static StateUpdateResult ok(String id) {
+    return new StateUpdateResult(id, HttpStatus.OK.value(), null);
+  }
+
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.edgexfoundry.test.category.RequiresNone;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Used in development only. Remove @Ignore to compare serving many concurrent slow device commands
+ * with the default thread-per-request model (a bounded pool, like Tomcat's 200 request threads),
+ * an unbounded platform thread per command, and a virtual thread per command (Java 21+ only). Each
+ * command is a blocking HttpURLConnection get, as issued by the command controller, to a local
+ * device service stand-in that answers after a fixed delay. Reports elapsed time, throughput, peak
+ * live threads and heap growth for each model.
+ */
+@Ignore
+@Category(RequiresNone.class)
+public class VirtualThreadBenchmark {
+
+  private static final int PORT = 48999;
+  private static final int COMMANDS = 2000;
+  private static final int REQUEST_THREADS = 200;
+  private static final long DEVICE_DELAY_MILLIS = 250;
+
+  @Test
+  public void benchmark() throws Exception {
+    ScheduledExecutorService responder = Executors.newSingleThreadScheduledExecutor();
+    HttpServer server = HttpServer.create(new InetSocketAddress(PORT), COMMANDS);
+    // answer later from the scheduler so the device stand-in holds no thread per command
+    server.createContext("/", exchange -> responder.schedule(() -> respond(exchange),
+        DEVICE_DELAY_MILLIS, TimeUnit.MILLISECONDS));
+    server.setExecutor(Executors.newFixedThreadPool(4));
+    server.start();
+    try {
+      run("bounded platform pool", () -> Executors.newFixedThreadPool(REQUEST_THREADS));
+      run("platform thread per command", Executors::newCachedThreadPool);
+      if (VirtualThreads.isAvailable()) {
+        run("virtual thread per command", VirtualThreads::newExecutor);
+      } else {
+        System.out.println("virtual threads not supported by this runtime; skipped");
+      }
+    } finally {
+      server.stop(0);
+      responder.shutdownNow();
+    }
+  }
+
+  private void run(String model, Supplier<ExecutorService> executors) throws Exception {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    Runtime runtime = Runtime.getRuntime();
+    System.gc();
+    long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+    threads.resetPeakThreadCount();
+    ExecutorService executor = executors.get();
+    long start = System.nanoTime();
+    List<Future<Integer>> results = new ArrayList<>(COMMANDS);
+    for (int i = 0; i < COMMANDS; i++) {
+      results.add(executor.submit(VirtualThreadBenchmark::command));
+    }
+    long heapPeak = 0;
+    int failed = 0;
+    for (Future<Integer> result : results) {
+      heapPeak = Math.max(heapPeak, runtime.totalMemory() - runtime.freeMemory());
+      try {
+        if (result.get() != 200) {
+          failed++;
+        }
+      } catch (Exception e) {
+        failed++;
+      }
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    executor.shutdown();
+    executor.awaitTermination(1, TimeUnit.MINUTES);
+    System.out.println(String.format(
+        "%-28s %6d ms  %8.1f cmd/s  peak threads %5d  heap growth %6d KB  failed %d", model,
+        elapsed, COMMANDS * 1000.0 / Math.max(1, elapsed), threads.getPeakThreadCount(),
+        Math.max(0, heapPeak - heapBefore) / 1024, failed));
+  }
+
+  private static int command() throws IOException {
+    HttpURLConnection con =
+        (HttpURLConnection) new URL("http://localhost:" + PORT + "/command").openConnection();
+    try (InputStream in = con.getInputStream()) {
+      while (in.read() >= 0) {
+        // drain so the connection can be reused
+      }
+      return con.getResponseCode();
+    }
+  }
+
+  private static void respond(HttpExchange exchange) {
+    try {
+      byte[] body = "{\"temperature\":\"72\"}".getBytes("UTF-8");
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+    } catch (IOException e) {
+      // client gave up; nothing to do
+    } finally {
+      exchange.close();
+    }
+  }
+
+}
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2016-2017 Dell Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ *
+ * @microservice: core-command
+ * @author: Jim White, Dell
+ * @version: 1.0.0
+ *******************************************************************************/
+
+package org.edgexfoundry.handler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.edgexfoundry.test.category.RequiresNone;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(RequiresNone.class)
+public class VirtualThreadsTest {
+
+  @Test
+  public void testFallsBackOnOlderRuntimes() {
+    if (VirtualThreads.isAvailable()) {
+      return;
+    }
+    assertNull("Executor offered without virtual threads", VirtualThreads.newExecutor());
+    assertNull("Factory offered without virtual threads", VirtualThreads.factory());
+  }
+
+  @Test
+  public void testExecutorRunsTasks() throws Exception {
+    ExecutorService executor = VirtualThreads.newExecutor();
+    if (executor == null) {
+      return;
+    }
+    try {
+      assertEquals("Task not run", "done", executor.submit(() -> "done").get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+}
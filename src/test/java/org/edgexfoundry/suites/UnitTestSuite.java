@@ -18,10 +18,33 @@
 
 package org.edgexfoundry.suites;
 
+import org.edgexfoundry.cache.CatalogInternerTest;
+import org.edgexfoundry.cache.CatalogSnapshotTest;
+import org.edgexfoundry.cache.DeviceCacheTest;
+import org.edgexfoundry.cache.DeviceStateTableTest;
+import org.edgexfoundry.cache.StateChangeLogTest;
 import org.edgexfoundry.controller.CommandControllerTest;
 import org.edgexfoundry.controller.LocalErrorControllerTest;
 import org.edgexfoundry.controller.PingControllerTest;
 import org.edgexfoundry.domain.serializer.CommandResponseSerializerTest;
+import org.edgexfoundry.handler.AppliedValuesTest;
+import org.edgexfoundry.handler.CatalogEncoderTest;
+import org.edgexfoundry.handler.CommandIndexTest;
+import org.edgexfoundry.handler.CommandSubscriptionsTest;
+import org.edgexfoundry.handler.ExecutionLaneTest;
+import org.edgexfoundry.handler.IdempotencyTableTest;
+import org.edgexfoundry.handler.LastValueStoreTest;
+import org.edgexfoundry.handler.MultiCommandReaderTest;
+import org.edgexfoundry.handler.MultiDeviceReaderTest;
+import org.edgexfoundry.handler.PayloadTranscoderTest;
+import org.edgexfoundry.handler.PutCoalescerTest;
+import org.edgexfoundry.handler.PutValidatorTest;
+import org.edgexfoundry.handler.RateLimiterTest;
+import org.edgexfoundry.handler.ShardInterceptorTest;
+import org.edgexfoundry.handler.ShardRingTest;
+import org.edgexfoundry.handler.StateUpdateHandlerTest;
+import org.edgexfoundry.handler.StateWriteBehindTest;
+import org.edgexfoundry.handler.VirtualThreadsTest;
 import org.junit.Ignore;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
@@ -35,8 +58,15 @@ import org.junit.runners.Suite;
  */
 @Ignore
 @RunWith(Suite.class)
-@Suite.SuiteClasses({CommandControllerTest.class, LocalErrorControllerTest.class,
-    PingControllerTest.class, CommandResponseSerializerTest.class})
+@Suite.SuiteClasses({CatalogInternerTest.class, CatalogSnapshotTest.class, DeviceCacheTest.class,
+    DeviceStateTableTest.class, StateChangeLogTest.class, CommandControllerTest.class,
+    LocalErrorControllerTest.class, PingControllerTest.class, CommandResponseSerializerTest.class,
+    AppliedValuesTest.class, CatalogEncoderTest.class, CommandIndexTest.class,
+    CommandSubscriptionsTest.class, ExecutionLaneTest.class, IdempotencyTableTest.class,
+    LastValueStoreTest.class, MultiCommandReaderTest.class, MultiDeviceReaderTest.class,
+    PayloadTranscoderTest.class, PutCoalescerTest.class, PutValidatorTest.class,
+    RateLimiterTest.class, ShardInterceptorTest.class, ShardRingTest.class,
+    StateUpdateHandlerTest.class, StateWriteBehindTest.class, VirtualThreadsTest.class})
 public class UnitTestSuite {
 
 }
@@ -34,7 +34,7 @@ import org.edgexfoundry.domain.CommandResponse;
 public interface CommandResponseData {
 
   static final String TEST_HOST = "localhost";
-  static final String TEST_PARAMS = "{abc}";
+  static final String TEST_PARAMS = "{\"temperature\":\"72\"}";
 
   static void checkTestData(CommandResponse response) {
     assertEquals("Command response Host does not match expected", TEST_HOST, response.getHost());